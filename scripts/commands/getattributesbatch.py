@@ -1,4 +1,5 @@
 import sys
+from java.util import Vector
 
 def setup():
 	return
@@ -6,12 +7,15 @@ def setup():
 def run(core, actor, target, commandString):
 	
 	parsedMsg = commandString.split(' ')
+	objects = Vector()
 	for i in parsedMsg:
 		if len(i) == 0 or i == '-255':
 			continue
 		object = core.objectService.getObject(long(i))
 		if object:
-			core.attributeService.handleGetAttributes(object, actor)
+			objects.add(object)
+	
+	core.attributeService.handleGetAttributesBatch(objects, actor)
 			
 	return
 	
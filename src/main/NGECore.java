@@ -40,7 +40,9 @@ import org.apache.mina.core.session.IoSession;
 import protocol.swg.ChatSystemMessage;
 import net.engio.mbassy.bus.config.BusConfiguration;
 import resources.common.RadialOptions;
+import resources.common.StartupReport;
 import resources.common.ThreadMonitor;
+import resources.datatables.DatatableCache;
 import resources.objects.creature.CreatureObject;
 import services.AttributeService;
 import services.BuffService;
@@ -71,9 +73,12 @@ import services.guild.GuildService;
 import services.LoginService;
 import services.map.MapService;
 import services.object.ObjectService;
+import services.object.PersistenceService;
 import services.object.UpdateService;
 import services.spawn.SpawnService;
 import services.sui.SUIService;
+import services.tick.TickService;
+import services.tick.TimerService;
 import services.trade.TradeService;
 import services.travel.TravelService;
 import engine.clientdata.ClientFileManager;
@@ -130,6 +135,9 @@ public class NGECore {
 	public ObjectService objectService;
 	public MapService mapService;
 	public UpdateService updateService;
+	public PersistenceService persistenceService;
+	public TickService tickService;
+	public TimerService timerService;
 	public TerrainService terrainService;
 	public SimulationService simulationService;
 	public ScriptService scriptService;
@@ -184,6 +192,8 @@ public class NGECore {
 		
 		instance = this;
 		
+		StartupReport startupReport = new StartupReport();
+		
 		final ThreadMonitor deadlockDetector = new ThreadMonitor();
 		Thread deadlockMonitor = new Thread(new Runnable() {
 			@Override
@@ -219,6 +229,14 @@ public class NGECore {
 		buildingODB = new ObjectDatabase("building", true, false, true);
 		mailODB = new ObjectDatabase("mails", true, false, true);
 		guildODB = new ObjectDatabase("guild", true, false, true);
+		persistenceService = new PersistenceService(this);
+		startupReport.mark("Databases");
+		// Datatables
+		DatatableCache.preload("datatables/buff/buff.iff", 0);
+		DatatableCache.preload("datatables/combat/combat_data.iff", 0);
+		DatatableCache.preload("datatables/command/command_table.iff", 0);
+		DatatableCache.preload("datatables/collection/collection.iff");
+		startupReport.mark("Datatables");
 		// Services
 		loginService = new LoginService(this);
 		connectionService = new ConnectionService(this);
@@ -230,6 +248,8 @@ public class NGECore {
 		objectService = new ObjectService(this);
 		terrainService = new TerrainService(this);
 		updateService = new UpdateService(this);
+		tickService = new TickService(this);
+		timerService = new TimerService(this);
 		scriptService = new ScriptService(this);
 		commandService = new CommandService(this);
 		chatService = new ChatService(this);
@@ -293,6 +313,7 @@ public class NGECore {
 		zoneServer = new MINAServer(zoneDispatch, config.getInt("ZONE.PORT"));
 		zoneServer.start();
 		staticService = new StaticService(this);
+		startupReport.mark("Services");
 		
 		// Planets
 		terrainService.addPlanet(1, "tatooine", "terrain/tatooine.trn", true);
@@ -308,14 +329,19 @@ public class NGECore {
 		terrainService.addPlanet(11, "mustafar", "terrain/mustafar.trn", true);
 		terrainService.addPlanet(12, "kashyyyk_main", "terrain/kashyyyk_main.trn", true);
 		spawnService = new SpawnService(this);
+		startupReport.mark("Planets");
 		terrainService.loadClientPois();
 		// Travel Points
 		travelService.loadTravelPoints();
 		simulationService = new SimulationService(this);
+		startupReport.mark("POIs and travel points");
 		
 		objectService.loadBuildings();
+		startupReport.mark("Player buildings");
 		terrainService.loadSnapShotObjects();
+		startupReport.mark("Snapshots and buildouts");
 		simulationService.insertSnapShotObjects();
+		startupReport.mark("Simulation insert");
 		
 		// Zone services that need to be loaded after the above
 		zoneDispatch.addService(simulationService);
@@ -323,6 +349,7 @@ public class NGECore {
 		
 		// Static Spawns
 		staticService.spawnStatics();
+		startupReport.mark("Static spawns");
 		
 		guildService = new GuildService(this);
 		zoneDispatch.addService(guildService);
@@ -347,6 +374,9 @@ public class NGECore {
 	//	spawnService.loadLairGroups();
 	//	spawnService.loadSpawnAreas();
 		
+		startupReport.mark("Late services");
+		startupReport.print();
+		
 		didServerCrash = false;
 		System.out.println("Started Server.");
 		setGalaxyStatus(2);
@@ -25,7 +25,6 @@ import java.nio.ByteOrder;
 
 import org.apache.mina.core.buffer.IoBuffer;
 
-
 import protocol.swg.objectControllerObjects.CommandEnqueue;
 import protocol.swg.objectControllerObjects.DataTransform;
 import protocol.swg.objectControllerObjects.DataTransformWithParent;
@@ -72,15 +71,15 @@ public class ObjControllerMessage extends SWGMessage {
 	}
 	
 	public IoBuffer serialize() {
-		IoBuffer buffer = IoBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+		IoBuffer data = objControllerObject.serialize();
+		IoBuffer buffer = IoBuffer.allocate(10 + data.remaining()).order(ByteOrder.LITTLE_ENDIAN);
 		
 		buffer.putShort((short)5);
 		buffer.putInt(0x80CE5E46);
 		buffer.putInt(update);
-		buffer.put(objControllerObject.serialize());
+		buffer.put(data);
 		//System.out.println("OBJMSG: " + buffer.flip().getHexDump());
-		int size = buffer.position();
-		return IoBuffer.allocate(size).put(buffer.array(), 0, size).flip();
+		return buffer.flip();
 	}
 	
 	private ObjControllerObject getControllerObject(int objType) {
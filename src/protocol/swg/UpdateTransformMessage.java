@@ -52,7 +52,7 @@ public class UpdateTransformMessage extends SWGMessage {
 	}
 	
 	public IoBuffer serialize() {
-		IoBuffer result = IoBuffer.allocate(42).order(ByteOrder.LITTLE_ENDIAN);
+		IoBuffer result = IoBuffer.allocate(28).order(ByteOrder.LITTLE_ENDIAN);
 		
 		result.putShort((short) 0x0A);
 		result.putInt(0x1B24F808);
@@ -54,7 +54,7 @@ public class UpdateTransformWithParentMessage extends SWGMessage {
 	}
 	
 	public IoBuffer serialize() {
-		IoBuffer result = IoBuffer.allocate(42).order(ByteOrder.LITTLE_ENDIAN);
+		IoBuffer result = IoBuffer.allocate(36).order(ByteOrder.LITTLE_ENDIAN);
 		
 		result.putShort((short) 0x0A);
 		result.putInt(0xC867AB5A);
@@ -59,5 +59,7 @@ public class Opcodes {
 	public static int FactionRequestMessage = CRC.StringtoCRC("FactionRequestMessage");
 	public static int FactionResponseMessage = CRC.StringtoCRC("FactionResponseMessage");
 	public static int SetWaypointColor = CRC.StringtoCRC("SetWaypointColor");
+	public static int UpdateTransformMessage = 0x1B24F808;
+	public static int UpdateTransformWithParentMessage = 0xC867AB5A;
 	
 }
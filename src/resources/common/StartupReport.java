@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package resources.common;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records how long each startup phase took and how much heap was in use after it.
+ */
+public class StartupReport {
+	
+	private final long startTime = System.currentTimeMillis();
+	private long lastMark = startTime;
+	private final List<Phase> phases = new ArrayList<Phase>();
+	
+	/**
+	 * Ends the current phase. Its duration is the time since the previous mark.
+	 */
+	public synchronized void mark(String name) {
+		long now = System.currentTimeMillis();
+		Runtime runtime = Runtime.getRuntime();
+		phases.add(new Phase(name, now - lastMark, runtime.totalMemory() - runtime.freeMemory()));
+		lastMark = now;
+	}
+	
+	public synchronized long getTotalTime() {
+		return lastMark - startTime;
+	}
+	
+	public synchronized void print() {
+		System.out.println("Startup report:");
+		
+		for(Phase phase : phases)
+			System.out.println(String.format("  %-24s %8d ms %8d MB heap", phase.name, phase.duration, phase.usedMemory / (1024 * 1024)));
+		
+		System.out.println(String.format("  %-24s %8d ms", "Total", getTotalTime()));
+	}
+	
+	private static class Phase {
+		
+		private final String name;
+		private final long duration;
+		private final long usedMemory;
+		
+		public Phase(String name, long duration, long usedMemory) {
+			this.name = name;
+			this.duration = duration;
+			this.usedMemory = usedMemory;
+		}
+		
+	}
+	
+}
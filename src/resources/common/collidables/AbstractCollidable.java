@@ -21,7 +21,9 @@
  ******************************************************************************/
 package resources.common.collidables;
 
-import java.util.Vector;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import main.NGECore;
 import net.engio.mbassy.bus.SyncMessageBus;
@@ -37,12 +39,18 @@ import engine.resources.scene.Point3D;
 public abstract class AbstractCollidable {
 	
 	private PyObject callback;
-	public Vector<SWGObject> collidedObjects = new Vector<SWGObject>();
+	public Set<SWGObject> collidedObjects = Collections.newSetFromMap(new ConcurrentHashMap<SWGObject, Boolean>());
 	private Planet planet;
 	private SyncMessageBus<Event> eventBus = new SyncMessageBus<Event>(NGECore.getInstance().getEventBusConfig());
 
 	public abstract boolean doesCollide(SWGObject obj);
 	public abstract boolean doesCollide(Point3D position);
+	
+	// 2d bounds used to index the area, see services.simulation.CollidableIndex
+	public abstract float getMinX();
+	public abstract float getMinZ();
+	public abstract float getMaxX();
+	public abstract float getMaxZ();
 
 	public PyObject getCallback() {
 		return callback;
@@ -77,11 +85,18 @@ public abstract class AbstractCollidable {
 		} else if(isInCollisionList(obj) && !doesCollide(obj)) {
 			removeCollidedObject(obj);
 		} else if(doesCollide(obj) && !isInCollisionList(obj)) {
-			addCollidedObject(obj);
-			if(getCallback() != null)
-				getCallback().__call__(Py.java2py(NGECore.getInstance()), Py.java2py(obj), Py.java2py(this));
+			enter(obj);
 		}
 	}
+	
+	/**
+	 * Adds the object and runs the area's callback, use this when the caller already checked doesCollide.
+	 */
+	public void enter(SWGObject obj) {
+		addCollidedObject(obj);
+		if(getCallback() != null)
+			getCallback().__call__(Py.java2py(NGECore.getInstance()), Py.java2py(obj), Py.java2py(this));
+	}
 
 	public Planet getPlanet() {
 		return planet;
@@ -64,6 +64,26 @@ public class CollidableCircle extends AbstractCollidable {
 		this.useYAxis = useYAxis;
 	}
 
+	@Override
+	public float getMinX() {
+		return center.x - radius;
+	}
+	
+	@Override
+	public float getMinZ() {
+		return center.z - radius;
+	}
+	
+	@Override
+	public float getMaxX() {
+		return center.x + radius;
+	}
+	
+	@Override
+	public float getMaxZ() {
+		return center.z + radius;
+	}
+
 	@Override
 	public boolean doesCollide(SWGObject obj) {
 		Point3D objectPos = obj.getWorldPosition();
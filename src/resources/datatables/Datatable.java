@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package resources.datatables;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import engine.clientdata.visitors.DatatableVisitor;
+
+public class Datatable {
+	
+	private String path;
+	private DatatableVisitor visitor;
+	private List<DatatableRow> rows;
+	private Map<Integer, Map<String, DatatableRow>> indexes = new ConcurrentHashMap<Integer, Map<String, DatatableRow>>();
+	
+	public Datatable(String path, DatatableVisitor visitor) {
+		this.path = path;
+		this.visitor = visitor;
+		
+		List<DatatableRow> rows = new ArrayList<DatatableRow>(visitor.getRowCount());
+		
+		for (int i = 0; i < visitor.getRowCount(); i++) {
+			rows.add(new DatatableRow(visitor, i));
+		}
+		
+		this.rows = Collections.unmodifiableList(rows);
+	}
+	
+	public String getPath() {
+		return path;
+	}
+	
+	public int getRowCount() {
+		return rows.size();
+	}
+	
+	public DatatableRow getRow(int row) {
+		return rows.get(row);
+	}
+	
+	public List<DatatableRow> getRows() {
+		return rows;
+	}
+	
+	public Object getObject(int row, int column) {
+		return visitor.getObject(row, column);
+	}
+	
+	public DatatableRow getRow(int keyColumn, String key) {
+		if (key == null) {
+			return null;
+		}
+		
+		return getIndex(keyColumn).get(key.toLowerCase());
+	}
+	
+	public boolean containsKey(int keyColumn, String key) {
+		return getRow(keyColumn, key) != null;
+	}
+	
+	/**
+	 * Builds the index of a key column on first use, rows without a string key are left out.
+	 */
+	public Map<String, DatatableRow> getIndex(int keyColumn) {
+		Map<String, DatatableRow> index = indexes.get(keyColumn);
+		
+		if (index != null) {
+			return index;
+		}
+		
+		index = new HashMap<String, DatatableRow>();
+		
+		for (DatatableRow row : rows) {
+			Object key = row.getObject(keyColumn);
+			
+			if (key instanceof String && !((String) key).isEmpty()) {
+				index.put(((String) key).toLowerCase(), row);
+			}
+		}
+		
+		index = Collections.unmodifiableMap(index);
+		indexes.put(keyColumn, index);
+		
+		return index;
+	}
+	
+}
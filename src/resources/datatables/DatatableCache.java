@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package resources.datatables;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import engine.clientdata.ClientFileManager;
+import engine.clientdata.visitors.DatatableVisitor;
+
+/**
+ * Keeps client datatables in memory once they have been loaded, so code that looks up rows at runtime
+ * (buffs, combat commands, collections) doesn't reload and scan the .iff on every call.
+ */
+public class DatatableCache {
+	
+	private static Map<String, Datatable> tables = new ConcurrentHashMap<String, Datatable>();
+	
+	/**
+	 * Loads a datatable at startup and builds the indexes for the given key columns.
+	 */
+	public static void preload(String path, int... keyColumns) {
+		Datatable table = getTable(path);
+		
+		if (table == null) {
+			return;
+		}
+		
+		for (int keyColumn : keyColumns) {
+			table.getIndex(keyColumn);
+		}
+	}
+	
+	/**
+	 * @return The cached datatable or null if it couldn't be loaded.
+	 */
+	public static Datatable getTable(String path) {
+		Datatable table = tables.get(path);
+		
+		if (table != null) {
+			return table;
+		}
+		
+		synchronized(tables) {
+			table = tables.get(path);
+			
+			if (table != null) {
+				return table;
+			}
+			
+			try {
+				DatatableVisitor visitor = ClientFileManager.loadFile(path, DatatableVisitor.class);
+				
+				if (visitor == null) {
+					return null;
+				}
+				
+				table = new Datatable(path, visitor);
+				tables.put(path, table);
+			} catch (InstantiationException | IllegalAccessException e) {
+				e.printStackTrace();
+			}
+		}
+		
+		return table;
+	}
+	
+	/**
+	 * Looks up a row by a case insensitive key.  If several rows have the same key, the last one is returned.
+	 * 
+	 * @return The row or null if the table or key doesn't exist.
+	 */
+	public static DatatableRow getRow(String path, int keyColumn, String key) {
+		Datatable table = getTable(path);
+		
+		if (table == null) {
+			return null;
+		}
+		
+		return table.getRow(keyColumn, key);
+	}
+	
+	public static void clear() {
+		tables.clear();
+	}
+	
+}
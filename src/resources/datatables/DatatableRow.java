@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package resources.datatables;
+
+import engine.clientdata.visitors.DatatableVisitor;
+
+/**
+ * A read-only view of a single row of a cached datatable.
+ */
+public class DatatableRow {
+	
+	private final DatatableVisitor visitor;
+	private final int row;
+	
+	public DatatableRow(DatatableVisitor visitor, int row) {
+		this.visitor = visitor;
+		this.row = row;
+	}
+	
+	public int getRowIndex() {
+		return row;
+	}
+	
+	public Object getObject(int column) {
+		return visitor.getObject(row, column);
+	}
+	
+	public String getString(int column) {
+		return (String) visitor.getObject(row, column);
+	}
+	
+	public int getInt(int column) {
+		return (Integer) visitor.getObject(row, column);
+	}
+	
+	public float getFloat(int column) {
+		return (Float) visitor.getObject(row, column);
+	}
+	
+	public boolean getBoolean(int column) {
+		return (Boolean) visitor.getObject(row, column);
+	}
+	
+}
@@ -22,8 +22,6 @@
 package resources.objects;
 
 import java.nio.ByteOrder;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import main.NGECore;
@@ -31,13 +29,14 @@ import main.NGECore;
 import org.apache.mina.core.buffer.IoBuffer;
 import org.apache.mina.core.buffer.SimpleBufferAllocator;
 
+import resources.datatables.DatatableCache;
+import resources.datatables.DatatableRow;
 import resources.objects.creature.CreatureObject;
+import services.tick.GameTimer;
 
 import com.sleepycat.persist.model.NotPersistent;
 import com.sleepycat.persist.model.Persistent;
 
-import engine.clientdata.ClientFileManager;
-import engine.clientdata.visitors.DatatableVisitor;
 import engine.resources.common.CRC;
 
 @Persistent(version=8)
@@ -66,7 +65,7 @@ public class Buff implements IDelta {
 	private int totalPlayTime;
 	private byte decayCounter = 0;
 	@NotPersistent
-	private ScheduledFuture<?> removalTask;
+	private GameTimer removalTask;
 	private int stacks = 1;
 	private long groupBufferId;
 	
@@ -75,51 +74,36 @@ public class Buff implements IDelta {
 		this.buffName = buffName;
 		this.ownerId = ownerId;
 		
-		DatatableVisitor visitor;
+		DatatableRow row = DatatableCache.getRow("datatables/buff/buff.iff", 0, buffName);
 		
-		try {
+		if(row != null) {
 			
-			visitor = ClientFileManager.loadFile("datatables/buff/buff.iff", DatatableVisitor.class);
-			for(int i = 0; i < visitor.getRowCount(); i++) {
+			group1 = row.getString(1);
+			priority = row.getInt(4);
+			duration = row.getFloat(6);
+			effect1Name = row.getString(7);
+			effect1Value = row.getFloat(8);
+			effect2Name = row.getString(9);
+			effect2Value = row.getFloat(10);
+			effect3Name = row.getString(11);
+			effect3Value = row.getFloat(12);
+			effect4Name = row.getString(13);
+			effect4Value = row.getFloat(14);
+			effect5Name = row.getString(15);
+			effect5Value = row.getFloat(16);
+			callback = row.getString(18);
+			particleEffect = row.getString(19);
+			isDebuff = row.getBoolean(22);
+			removeOnDeath = row.getInt(25) != 0;
+			isRemovableByPlayer = row.getInt(26) != 0;
+			maxStacks = row.getInt(28);
+			isPersistent = row.getInt(29) != 0;
+			removeOnRespec = row.getInt(31) != 0;
+			aiRemoveOnEndCombat = row.getInt(32) != 0;
+			decayOnPvPDeath = row.getInt(33) != 0;
 			
-			if(visitor.getObject(i, 0) != null)
-				if(((String) visitor.getObject(i, 0)).equalsIgnoreCase(buffName)) {
-					
-					group1 = (String) visitor.getObject(i, 1);
-					priority = (int) visitor.getObject(i, 4);
-					duration = (Float) visitor.getObject(i, 6);
-					effect1Name = (String) visitor.getObject(i, 7);
-					effect1Value = (Float) visitor.getObject(i, 8);
-					effect2Name = (String) visitor.getObject(i, 9);
-					effect2Value = (Float) visitor.getObject(i, 10);
-					effect3Name = (String) visitor.getObject(i, 11);
-					effect3Value = (Float) visitor.getObject(i, 12);
-					effect4Name = (String) visitor.getObject(i, 13);
-					effect4Value = (Float) visitor.getObject(i, 14);
-					effect5Name = (String) visitor.getObject(i, 15);
-					effect5Value = (Float) visitor.getObject(i, 16);
-					callback = (String) visitor.getObject(i, 18);
-					particleEffect = (String) visitor.getObject(i, 19);
-					isDebuff = (Boolean) visitor.getObject(i, 22);
-					removeOnDeath = (Integer) visitor.getObject(i, 25) != 0;
-					isRemovableByPlayer = (Integer) visitor.getObject(i, 26) != 0;
-					maxStacks = (Integer) visitor.getObject(i, 28);
-					isPersistent = (Integer) visitor.getObject(i, 29) != 0;
-					removeOnRespec = (Integer) visitor.getObject(i, 31) != 0;
-					aiRemoveOnEndCombat = (Integer) visitor.getObject(i, 32) != 0;
-					decayOnPvPDeath = (Integer) visitor.getObject(i, 33) != 0;
-					
-				}
-			
-			}
-			
-		} catch (InstantiationException | IllegalAccessException e) {
-			e.printStackTrace();
 		}
 		
-		
-
-		
 	}
 	
 	public Buff() { }
@@ -384,11 +368,11 @@ public class Buff implements IDelta {
 		this.decayCounter++;
 	}
 
-	public ScheduledFuture<?> getRemovalTask() {
+	public GameTimer getRemovalTask() {
 		return removalTask;
 	}
 
-	public void setRemovalTask(ScheduledFuture<?> removalTask) {
+	public void setRemovalTask(GameTimer removalTask) {
 		this.removalTask = removalTask;
 	}
 	
@@ -397,7 +381,7 @@ public class Buff implements IDelta {
 		if(removalTask == null)
 			return;
 		
-		removalTask.cancel(true);
+		removalTask.cancel();
 		
 		final NGECore core = NGECore.getInstance();
 		final CreatureObject owner = (CreatureObject) core.objectService.getObject(getOwnerId());
@@ -405,7 +389,7 @@ public class Buff implements IDelta {
 		if(owner == null)
 			return;
 		
-		ScheduledFuture<?> task = Executors.newScheduledThreadPool(1).schedule(new Runnable() {
+		GameTimer task = core.timerService.schedule(new Runnable() {
 			
 			@Override
 			public void run() {
@@ -21,7 +21,7 @@
  ******************************************************************************/
 package resources.objects;
 
-import java.util.concurrent.ScheduledFuture;
+import services.tick.GameTimer;
 
 import com.sleepycat.persist.model.NotPersistent;
 import com.sleepycat.persist.model.Persistent;
@@ -34,7 +34,7 @@ public class DamageOverTime {
 	private int duration;
 	private int intensity;
 	@NotPersistent
-	private ScheduledFuture<?> task;
+	private GameTimer task;
 	private long startTime;
 	private String commandName;
 
@@ -80,11 +80,11 @@ public class DamageOverTime {
 		this.intensity = intensity;
 	}
 
-	public ScheduledFuture<?> getTask() {
+	public GameTimer getTask() {
 		return task;
 	}
 
-	public void setTask(ScheduledFuture<?> task) {
+	public void setTask(GameTimer task) {
 		this.task = task;
 	}
 
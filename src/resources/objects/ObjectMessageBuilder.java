@@ -31,6 +31,8 @@ import org.apache.mina.core.buffer.SimpleBufferAllocator;
 import com.sleepycat.persist.model.NotPersistent;
 import com.sleepycat.persist.model.Persistent;
 
+import main.NGECore;
+
 import resources.common.Opcodes;
 
 import engine.resources.objects.SWGObject;
@@ -117,6 +119,12 @@ public abstract class ObjectMessageBuilder {
 	
 	public abstract void sendListDelta(byte viewType, short updateType, IoBuffer buffer);
 	
+	// every list, map and set change of an object goes through its builder, so this is where persisted objects are marked changed
+	public void markChanged() {
+		if(NGECore.getInstance() != null && NGECore.getInstance().persistenceService != null)
+			NGECore.getInstance().persistenceService.markChanged(object);
+	}
+	
 	public abstract void sendBaselines();
 	
 	private String reverse(String reverseString) {
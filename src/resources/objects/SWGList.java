@@ -367,6 +367,7 @@ public class SWGList<E> implements List<E> {
 		buffer.putInt(1);
 		buffer.putInt(updateCounter);
 		buffer.put(data);
+		messageBuilder.markChanged();
 		messageBuilder.sendListDelta(viewType, updateType, buffer);
 	}
 	
@@ -382,6 +383,7 @@ public class SWGList<E> implements List<E> {
 		buffer.putInt(updateCounter);
 		for (byte[] queued : data) buffer.put(queued);
 		
+		messageBuilder.markChanged();
 		messageBuilder.sendListDelta(viewType, updateType, buffer);
 	}
 	
@@ -238,6 +238,7 @@ public class SWGMap<K, V> implements Map<K, V> {
 		buffer.putInt(1);
 		buffer.putInt(updateCounter);
 		buffer.put(data);
+		messageBuilder.markChanged();
 		messageBuilder.sendListDelta(viewType, updateType, buffer);
 	}
 	
@@ -253,6 +254,7 @@ public class SWGMap<K, V> implements Map<K, V> {
 		buffer.putInt(updateCounter);
 		for (byte[] queued : data) buffer.put(queued);
 		
+		messageBuilder.markChanged();
 		messageBuilder.sendListDelta(viewType, updateType, buffer);
 	}
 	
@@ -327,6 +327,7 @@ public class SWGMultiMap<K, V> implements Multimap<K, V> {
 		buffer.putInt(1);
 		buffer.putInt(updateCounter);
 		buffer.put(data);
+		messageBuilder.markChanged();
 		messageBuilder.sendListDelta(viewType, updateType, buffer);
 	}
 	
@@ -342,6 +343,7 @@ public class SWGMultiMap<K, V> implements Multimap<K, V> {
 		buffer.putInt(updateCounter);
 		for (byte[] queued : data) buffer.put(queued);
 		
+		messageBuilder.markChanged();
 		messageBuilder.sendListDelta(viewType, updateType, buffer);
 	}
 	
@@ -43,6 +43,7 @@ import com.sleepycat.persist.model.Entity;
 import com.sleepycat.persist.model.NotPersistent;
 
 import engine.clients.Client;
+import main.NGECore;
 import resources.objects.Buff;
 import resources.objects.DamageOverTime;
 import resources.objects.SWGList;
@@ -55,6 +56,7 @@ import engine.resources.scene.Point3D;
 import engine.resources.scene.Quaternion;
 import resources.objects.tangible.TangibleObject;
 import resources.objects.weapon.WeaponObject;
+import services.object.UpdateService;
 
 @Entity(version=0)
 public class CreatureObject extends TangibleObject implements IPersistent {
@@ -183,7 +185,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 	public void setCustomName2(String customName) {
 		setCustomName(customName);
 		
-		notifyObservers(messageBuilder.buildCustomNameDelta(customName), true);
+		queueDelta(messageBuilder.buildCustomNameDelta(customName), true);
 	}
 	
 	public Transaction getTransaction() { return txn; }
@@ -203,6 +205,8 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 	}
 
 	public void setBankCredits(int bankCredits) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.bankCredits = bankCredits;
 		}
@@ -218,6 +222,8 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 	}
 
 	public void setCashCredits(int cashCredits) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.cashCredits = cashCredits;
 		}
@@ -255,6 +261,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 	}
 	
 	public void addSkill(String skill) {
+		markChanged();
 		
 		if(skills.contains(skill))
 			return;
@@ -269,6 +276,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 	}
 	
 	public void removeSkill(String skill) {
+		markChanged();
 		
 		if(!skills.contains(skill))
 			return;
@@ -297,7 +305,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 		
 		IoBuffer optionDelta = messageBuilder.buildOptionMaskDelta(optionBitmask);
 		
-		notifyObservers(optionDelta, true);
+		queueDelta(optionDelta, true);
 
 	}
 	
@@ -340,8 +348,8 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 		Posture postureUpdate = new Posture(getObjectID(), posture);
 		ObjControllerMessage objController = new ObjControllerMessage(0x1B, postureUpdate);
 		
-		notifyObservers(postureDelta, true);
-		notifyObservers(objController, true);
+		queueDelta(postureDelta, true);
+		queueMessage(objController.serialize(), true);
 		
 		if (needsStopPerformance) {
 			stopPerformance();
@@ -422,7 +430,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 			this.faction = faction;
 		}
 		
-		notifyObservers(messageBuilder.buildFactionDelta(faction), true);
+		queueDelta(messageBuilder.buildFactionDelta(faction), true);
 		setPvpStatus(0, true);
 	}
 
@@ -437,7 +445,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 			this.factionStatus = factionStatus;
 		}
 		
-		notifyObservers(messageBuilder.buildFactionStatusDelta(factionStatus), true);
+		queueDelta(messageBuilder.buildFactionStatusDelta(factionStatus), true);
 	}
 
 	public float getHeight() {
@@ -453,7 +461,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 		
 		IoBuffer heightDelta = messageBuilder.buildHeightDelta(height);
 		
-		notifyObservers(heightDelta, true);
+		queueDelta(heightDelta, true);
 
 	}
 
@@ -482,7 +490,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 		
 		IoBuffer stateDelta = messageBuilder.buildStateDelta(stateBitmask);
 		
-		notifyObservers(stateDelta, true);
+		queueDelta(stateDelta, true);
 
 	}
 
@@ -543,6 +551,8 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 	}
 	
 	public void addSkillMod(String name, int base) {
+		markChanged();
+		
 		if(getSkillMod(name) == null) {
 			SkillMod skillMod = new SkillMod();
 			skillMod.setBase(base);
@@ -561,6 +571,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 	}
 	
 	public void deductSkillMod(String name, int base) {
+		markChanged();
 		
 		if(getSkillMod(name) == null)
 			return;
@@ -580,6 +591,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 	}
 
 	public void removeSkillMod(SkillMod mod) {
+		markChanged();
 		
 		skillMods.remove(mod);
 		
@@ -616,7 +628,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 		}
 		IoBuffer speedDelta = messageBuilder.buildSpeedModBaseDelta(speedMultiplierBase);
 		
-		notifyObservers(speedDelta, true);
+		queueDelta(speedDelta, true);
 
 	}
 
@@ -632,7 +644,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 		}
 		IoBuffer speedDelta = messageBuilder.buildSpeedModDelta(speedMultiplierMod);
 		
-		notifyObservers(speedDelta, true);
+		queueDelta(speedDelta, true);
 	}
 
 	public long getListenToId() {
@@ -695,7 +707,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 		}
 		IoBuffer turnDelta = messageBuilder.buildTurnRadiusDelta(turnRadius);
 		
-		notifyObservers(turnDelta, true);
+		queueDelta(turnDelta, true);
 
 	}
 
@@ -751,6 +763,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 	
 	
 	public void addAbility(String abilityName) {
+		markChanged();
 		
 		if(abilities.contains(abilityName))
 			return;
@@ -765,6 +778,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 	}
 	
 	public void removeAbility(String abilityName) {
+		markChanged();
 		
 		if(!abilities.contains(abilityName))
 			return;
@@ -795,7 +809,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 		}
 		IoBuffer combatDelta = messageBuilder.buildCombatFlagDelta(combatFlag);
 		
-		notifyObservers(combatDelta, true);
+		queueDelta(combatDelta, true);
 	}
 
 	public short getLevel() {
@@ -811,7 +825,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 		
 		IoBuffer levelDelta = messageBuilder.buildLevelDelta(level);
 		
-		notifyObservers(levelDelta, true);
+		queueDelta(levelDelta, true);
 
 	}
 	
@@ -826,7 +840,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 			this.grantedHealth = grantedHealth;
 		}
 		
-		notifyObservers(messageBuilder.buildGrantedHealthDelta(grantedHealth), true);
+		queueDelta(messageBuilder.buildGrantedHealthDelta(grantedHealth), true);
 	}
 
 	public String getCurrentAnimation() {
@@ -842,9 +856,9 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 		Animation animation = new Animation(getObjectId(), currentAnimation);
 		ObjControllerMessage objController = new ObjControllerMessage(0x1B, animation);
 		
-		notifyObservers(objController, true);
+		queueMessage(objController.serialize(), true);
 		
-		notifyObservers(messageBuilder.buildCurrentAnimationDelta(currentAnimation), true);
+		queueDelta(messageBuilder.buildCurrentAnimationDelta(currentAnimation), true);
 
 	}
 	
@@ -852,7 +866,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 		Animation animation = new Animation(getObjectId(), skillAnimation);
 		ObjControllerMessage objController = new ObjControllerMessage(0x1B, animation);
 		
-		notifyObservers(objController, true);
+		queueMessage(objController.serialize(), true);
 		
 	}
 
@@ -867,7 +881,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 			this.moodAnimation = moodAnimation;
 		}
 		IoBuffer moodAnimationDelta = messageBuilder.buildMoodAnimationDelta(moodAnimation);
-		notifyObservers(moodAnimationDelta, true);
+		queueDelta(moodAnimationDelta, true);
 	}
 
 	public long getWeaponId() {
@@ -883,7 +897,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 		
 		IoBuffer weaponIdDelta = messageBuilder.buildWeaponIdDelta(weaponId);
 		
-		notifyObservers(weaponIdDelta, true);
+		queueDelta(weaponIdDelta, true);
 
 	}
 
@@ -900,7 +914,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 		
 		IoBuffer groupIdDelta = messageBuilder.buildGroupIdDelta(groupId);
 		
-		notifyObservers(groupIdDelta, true);
+		queueDelta(groupIdDelta, true);
 
 	}
 
@@ -935,6 +949,8 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 	}
 
 	public void setGuildId(int guildId) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.guildId = guildId;
 		}
@@ -952,7 +968,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 		}
 		IoBuffer targetDelta = messageBuilder.buildTargetDelta(targetId);
 		
-		notifyObservers(targetDelta, false);
+		queueDelta(targetDelta, false);
 
 	}
 
@@ -1040,14 +1056,14 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 		if(object instanceof TangibleObject) {
 			equipmentList.get().add(object);
 			setEquipmentListUpdateCounter(getEquipmentListUpdateCounter() + 1);
-			notifyObservers(messageBuilder.buildAddEquipmentDelta((TangibleObject) object), true);
+			queueMessage(messageBuilder.buildAddEquipmentDelta((TangibleObject) object), true);
 		}
 	}
 	
 	public void removeObjectFromEquipList(SWGObject object) {
 		if(object instanceof TangibleObject) {
 			setEquipmentListUpdateCounter(getEquipmentListUpdateCounter() + 1);
-			notifyObservers(messageBuilder.buildRemoveEquipmentDelta((TangibleObject) object), true);
+			queueMessage(messageBuilder.buildRemoveEquipmentDelta((TangibleObject) object), true);
 			equipmentList.get().remove(object);
 		}
 	}
@@ -1056,14 +1072,14 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 		if(object instanceof TangibleObject) {
 			appearanceEquipmentList.get().add(object);
 			setAppearanceEquipmentListUpdateCounter(getAppearanceEquipmentListUpdateCounter() + 1);
-			notifyObservers(messageBuilder.buildAddAppearanceEquipmentDelta((TangibleObject) object), true);
+			queueMessage(messageBuilder.buildAddAppearanceEquipmentDelta((TangibleObject) object), true);
 		}
 	}
 	
 	public void removeObjectFromAppearanceEquipList(SWGObject object) {
 		if(object instanceof TangibleObject) {
 			setAppearanceEquipmentListUpdateCounter(getAppearanceEquipmentListUpdateCounter() + 1);
-			notifyObservers(messageBuilder.buildRemoveAppearanceEquipmentDelta((TangibleObject) object), true);
+			queueMessage(messageBuilder.buildRemoveAppearanceEquipmentDelta((TangibleObject) object), true);
 			appearanceEquipmentList.get().remove(object);
 		}
 	}
@@ -1186,6 +1202,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 	}
 
 	public void setHealth(int health) {
+		markChanged();
 		
 		synchronized(objectMutex) {
 			if(getPosture() == 13) {
@@ -1194,7 +1211,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 					stopIncapTask();
 					setIncapTask(null);
 					this.health = health;
-					notifyObservers(messageBuilder.buildUpdateHAMListDelta(), true);
+					queueMessage(messageBuilder.buildUpdateHAMListDelta(), true);
 					setPosture((byte) 0);
 					setTurnRadius(1);
 					setSpeedMultiplierBase(1);
@@ -1209,7 +1226,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 			setHamListCounter(getHamListCounter() + 1);
 			delta = messageBuilder.buildHealthDelta(health);
 			
-			notifyObservers(delta, true);
+			queueMessage(delta, true);
 			this.health = health;
 		}
 
@@ -1222,13 +1239,15 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 	}
 
 	public void setAction(int action) {
+		markChanged();
+		
 		IoBuffer delta;
 		synchronized(objectMutex) {
 			if(action > maxAction)
 				action = maxAction;
 			setHamListCounter(getHamListCounter() + 1);
 			delta = messageBuilder.buildActionDelta(action);
-			notifyObservers(delta, true);
+			queueMessage(delta, true);
 			this.action = action;
 		}
 	}
@@ -1252,12 +1271,14 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 	}
 
 	public void setMaxHealth(int maxHealth) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.maxHealth = maxHealth;
 			setMaxHAMListCounter(getMaxHAMListCounter() + 1);
 			if(maxHealth < getHealth())
 				setHealth(maxHealth);
-			notifyObservers(messageBuilder.buildMaxHealthDelta(maxHealth), true);
+			queueMessage(messageBuilder.buildMaxHealthDelta(maxHealth), true);
 		}
 	}
 
@@ -1268,12 +1289,14 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 	}
 
 	public void setMaxAction(int maxAction) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.maxAction = maxAction;
 			setMaxHAMListCounter(getMaxHAMListCounter() + 1);
 			if(maxAction < getAction())
 				setAction(maxAction);
-			notifyObservers(messageBuilder.buildMaxActionDelta(maxAction), true);
+			queueMessage(messageBuilder.buildMaxActionDelta(maxAction), true);
 		}
 	}
 
@@ -1290,28 +1313,34 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 	}
 	
 	public void addBuff(Buff buff) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			buffList.get().add(buff);
 			setBuffListCounter(getBuffListCounter() + 1);
 			
 		}
 		buff.setStartTime();
-		notifyObservers(messageBuilder.buildAddBuffDelta(buff), true);
+		queueMessage(messageBuilder.buildAddBuffDelta(buff), true);
 	}
 	
 	public void removeBuff(Buff buff) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			buffList.get().remove(buff);
 			setBuffListCounter(getBuffListCounter() + 1);
 		}
-		notifyObservers(messageBuilder.buildRemoveBuffDelta(buff), true);
+		queueMessage(messageBuilder.buildRemoveBuffDelta(buff), true);
 	}
 	
 	public void updateBuff(Buff buff) {
+		markChanged();
+		
 		buff.updateRemovalTask();
 		synchronized(objectMutex) {
 			setBuffListCounter(getBuffListCounter() + 1);
-			notifyObservers(messageBuilder.buildUpdateBuffDelta(buff), true);
+			queueMessage(messageBuilder.buildUpdateBuffDelta(buff), true);
 		}
 	}	
 
@@ -1361,14 +1390,14 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 	public void resetHAMList() {
 		synchronized(objectMutex) {
 			setHamListCounter(getHamListCounter() + 1);
-			notifyObservers(messageBuilder.buildResetHAMListDelta(), true);
+			queueMessage(messageBuilder.buildResetHAMListDelta(), true);
 		}
 	}
 	
 	public void updateHAMList() {
 		synchronized(objectMutex) {
 			setHamListCounter(getHamListCounter() + 1);
-			notifyObservers(messageBuilder.buildUpdateHAMListDelta(), true);
+			queueMessage(messageBuilder.buildUpdateHAMListDelta(), true);
 		}
 	}
 	
@@ -1526,13 +1555,13 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 	@Override
 	public void setPvPBitmask(int pvpBitmask) {
 		super.setPvPBitmask(pvpBitmask);
-		notifyObservers(new UpdatePVPStatusMessage(getObjectID(), getPvPBitmask(), getFaction()), false);
+		queueMessage(new UpdatePVPStatusMessage(getObjectID(), getPvPBitmask(), getFaction()).serialize(), false);
 	}
 	
 	@Override
 	public void setPvpStatus(int pvpBitmask, boolean add) {
 		super.setPvpStatus(pvpBitmask, add);
-		notifyObservers(new UpdatePVPStatusMessage(getObjectID(), getPvPBitmask(), getFaction()), false);
+		queueMessage(new UpdatePVPStatusMessage(getObjectID(), getPvPBitmask(), getFaction()).serialize(), false);
 	}
 	
 	public byte getDifficulty() {
@@ -1546,7 +1575,7 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 			this.difficulty = difficulty;
 		}
 		
-		notifyObservers(messageBuilder.buildDifficultyDelta(difficulty), true);
+		queueDelta(messageBuilder.buildDifficultyDelta(difficulty), true);
 	}
 
 	public void setPerformanceType(boolean isDance) {
@@ -1603,4 +1632,32 @@ public class CreatureObject extends TangibleObject implements IPersistent {
 		}
 	}
 	
+	/*
+	 * Deltas go out on the next update tick, a delta of a single variable replaces an older
+	 * one of the same variable that hasn't been sent yet.
+	 */
+	private void queueDelta(IoBuffer delta, boolean notifySelf) {
+		markChanged();
+		
+		UpdateService updateService = (NGECore.getInstance() == null) ? null : NGECore.getInstance().updateService;
+		if(updateService == null)
+			notifyObservers(delta, notifySelf);
+		else
+			updateService.notifyObservers(this, delta, notifySelf, true);
+	}
+	
+	// the character is written on the next save pass only if something marked it changed
+	private void markChanged() {
+		if(NGECore.getInstance() != null && NGECore.getInstance().persistenceService != null)
+			NGECore.getInstance().persistenceService.markChanged(this);
+	}
+	
+	private void queueMessage(IoBuffer buffer, boolean notifySelf) {
+		UpdateService updateService = (NGECore.getInstance() == null) ? null : NGECore.getInstance().updateService;
+		if(updateService == null)
+			notifyObservers(buffer, notifySelf);
+		else
+			updateService.notifyObservers(this, buffer, notifySelf);
+	}
+	
 }
@@ -274,6 +274,7 @@ public class GuildObject extends UniverseObject implements IPersistent {
 		synchronized(objectMutex) {
 			if (!serverFirst.containsKey(collectionName)) {
 				serverFirst.put(collectionName, player);
+				markChanged();
 				return true;
 			}
 			
@@ -288,6 +289,8 @@ public class GuildObject extends UniverseObject implements IPersistent {
 	}
 	
 	private void notifyAll(IoBuffer buffer) {
+		markChanged();
+		
 		synchronized(core.getActiveConnectionsMap()) {
 			for (Client client : core.getActiveConnectionsMap().values()) {
 				client.getSession().write(buffer);
@@ -295,6 +298,12 @@ public class GuildObject extends UniverseObject implements IPersistent {
 		}
 	}
 	
+	// the guild object is written on the next save pass only if something marked it changed
+	private void markChanged() {
+		if(NGECore.getInstance() != null && NGECore.getInstance().persistenceService != null)
+			NGECore.getInstance().persistenceService.markChanged(this);
+	}
+	
 	public Transaction getTransaction() {
 		return txn;
 	}
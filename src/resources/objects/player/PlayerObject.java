@@ -24,10 +24,14 @@ package resources.objects.player;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 
+import main.NGECore;
+
 import resources.objects.intangible.IntangibleObject;
 import resources.objects.waypoint.WaypointObject;
 
@@ -103,6 +107,8 @@ public class PlayerObject extends IntangibleObject {
 	private List<String> ignoreList = new ArrayList<String>();
 	@NotPersistent
 	private int ignoreListUpdateCounter = 0;
+	@NotPersistent
+	private Set<String> ignoreSet;
 	
 	private int languageId = 0;			// unused in NGE
 	private int currentStomach = 0;		// unused in NGE
@@ -141,6 +147,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 
 	public void setTitle(String title) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			if(!getTitleList().isEmpty() && getTitleList().contains(title)) {
 				this.title = title;
@@ -160,6 +168,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 
 	public void setProfession(String profession) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.profession = profession;
 		}
@@ -180,6 +190,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 
 	public void setBornDate(int bornDate) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.bornDate = bornDate;
 		}
@@ -205,6 +217,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 
 	public void setHome(String home) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.home = home;
 		}
@@ -222,6 +236,8 @@ public class PlayerObject extends IntangibleObject {
 	
 	// Temporary
 	public void setXp(String type, int amount) {
+		markChanged();
+		
 		boolean xpExists;
 		
 		synchronized(objectMutex) {
@@ -263,12 +279,16 @@ public class PlayerObject extends IntangibleObject {
 	}
 	
 	public void waypointUpdate(WaypointObject waypoint) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			getContainer().getClient().getSession().write(messageBuilder.buildWaypointUpdateDelta(waypoint));
 		}
 	}
 	
 	public void waypointRemove(WaypointObject waypoint) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			getContainer().getClient().getSession().write(messageBuilder.buildWaypointRemoveDelta(waypoint));
 			getWaypoints().remove(waypoint);
@@ -276,6 +296,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 	
 	public void waypointAdd(WaypointObject waypoint) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			getContainer().getClient().getSession().write(messageBuilder.buildWaypointAddDelta(waypoint));
 			getWaypoints().add(waypoint);
@@ -302,6 +324,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 
 	public void setCurrentForcePower(int currentForcePower) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.currentForcePower = currentForcePower;
 		}
@@ -314,6 +338,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 
 	public void setMaxForcePower(int maxForcePower) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.maxForcePower = maxForcePower;
 		}
@@ -338,6 +364,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 
 	public void setProfessionWheelPosition(String professionWheelPosition) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.professionWheelPosition = professionWheelPosition;
 		}
@@ -350,6 +378,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 
 	public void setExperimentationFlag(int experimentationFlag) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.experimentationFlag = experimentationFlag;
 		}
@@ -390,6 +420,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 
 	public void setExperimentationPoints(int experimentationPoints) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.experimentationPoints = experimentationPoints;
 		}
@@ -402,6 +434,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 
 	public void setAccomplishmentCounter(int accomplishmentCounter) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.accomplishmentCounter = accomplishmentCounter;
 		}
@@ -424,6 +458,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 
 	public void friendAdd(String friend) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			setFriendListUpdateCounter(getFriendListUpdateCounter() + 1);
 			friendList.add(friend);
@@ -432,6 +468,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 	
 	public void friendRemove(String friend) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			setFriendListUpdateCounter(getFriendListUpdateCounter() + 1);
 			friendList.remove(friend);
@@ -443,6 +481,15 @@ public class PlayerObject extends IntangibleObject {
 		return ignoreList;
 	}
 
+	public boolean isIgnoring(String name) {
+		synchronized(objectMutex) {
+			// built lazily since the persisted list is filled in after construction
+			if(ignoreSet == null)
+				ignoreSet = new HashSet<String>(ignoreList);
+			return ignoreSet.contains(name);
+		}
+	}
+
 	public int getIgnoreListUpdateCounter() {
 		synchronized(objectMutex) {
 			return ignoreListUpdateCounter;
@@ -450,17 +497,25 @@ public class PlayerObject extends IntangibleObject {
 	}
 	
 	public void ignoreAdd(String ignoreName) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			setIgnoreListUpdateCounter(getIgnoreListUpdateCounter() + 1);
 			ignoreList.add(ignoreName);
+			if(ignoreSet != null)
+				ignoreSet.add(ignoreName);
 			getContainer().getClient().getSession().write(messageBuilder.buildIgnoreAddDelta(getIgnoreList()));
 		}
 	}
 	
 	public void ignoreRemove(String removeName) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			setIgnoreListUpdateCounter(getIgnoreListUpdateCounter() + 1);
 			ignoreList.remove(removeName);
+			if(ignoreSet != null)
+				ignoreSet.remove(removeName);
 			getContainer().getClient().getSession().write(messageBuilder.buildIgnoreRemoveDelta(getIgnoreList()));
 		}
 	}
@@ -479,6 +534,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 
 	public void setLanguageId(int languageId) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.languageId = languageId;
 		}
@@ -491,6 +548,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 
 	public void setCurrentStomach(int currentStomach) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.currentStomach = currentStomach;
 		}
@@ -503,6 +562,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 
 	public void setMaxStomach(int maxStomach) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.maxStomach = maxStomach;
 		}
@@ -515,6 +576,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 
 	public void setCurrentDrink(int currentDrink) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.currentDrink = currentDrink;
 		}
@@ -527,6 +590,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 
 	public void setMaxDrink(int maxDrink) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.maxDrink = maxDrink;
 		}
@@ -539,6 +604,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 
 	public void setCurrentConsumable(int currentConsumable) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.currentConsumable = currentConsumable;
 		}
@@ -551,6 +618,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 
 	public void setMaxConsumable(int maxConsumable) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.maxConsumable = maxConsumable;
 		}
@@ -563,6 +632,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 
 	public void setJediState(int jediState) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.jediState = jediState;
 		}
@@ -573,12 +644,16 @@ public class PlayerObject extends IntangibleObject {
 	}
 	
 	public void setFactionStanding(String faction, int factionStanding) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			factionStandingMap.put(faction, ((factionStanding < -5000) ? -5000 : ((factionStanding > 5000) ? 5000 : factionStanding)));
 		}
 	}
 	
 	public void modifyFactionStanding(String faction, int modifier) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			int factionStanding = (((factionStandingMap.containsKey(faction)) ? factionStandingMap.get(faction) : 0) + modifier);
 			factionStandingMap.put(faction, ((factionStanding < -5000) ? -5000 : ((factionStanding > 5000) ? 5000 : factionStanding)));
@@ -624,10 +699,14 @@ public class PlayerObject extends IntangibleObject {
 	}
 	
 	public void setTitleList(List<String> titleList) {
+		markChanged();
+		
 		this.titleList = titleList;
 	}
 	
 	public void setCollections(byte[] collections) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.collections = collections;
 			this.highestSetBit = BitSet.valueOf(collections).length();
@@ -655,6 +734,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 	
 	public void setProfessionIcon(int professionIcon) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.professionIcon = professionIcon;
 		}
@@ -671,6 +752,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 
 	public void setFlagBitmask(int flagBitmask) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			this.flagBitmask |= flagBitmask;
 		}
@@ -680,6 +763,8 @@ public class PlayerObject extends IntangibleObject {
 		}
 	}
 	public void clearFlagBitmask(int flagBitmask) {
+		markChanged();
+		
 		synchronized(objectMutex) {
 			// set flag bitmask to 0
 			this.flagBitmask &= ~flagBitmask;
@@ -691,6 +776,8 @@ public class PlayerObject extends IntangibleObject {
 	}
 	
 	public void toggleFlag(int flag) {
+		markChanged();
+		
 		if ((this.flagBitmask & flag) == flag) {
 			clearFlagBitmask(flag);
 		} else {
@@ -707,4 +794,10 @@ public class PlayerObject extends IntangibleObject {
 		}
 	}
 	
+	// the character is written on the next save pass only if something marked it changed
+	private void markChanged() {
+		if(NGECore.getInstance() != null && NGECore.getInstance().persistenceService != null)
+			NGECore.getInstance().persistenceService.markChanged(this);
+	}
+
 }
@@ -26,8 +26,11 @@ import java.util.List;
 import java.util.Set;
 import java.util.Vector;
 
+import main.NGECore;
+
 import protocol.swg.ObjControllerMessage;
 import protocol.swg.PlayClientEffectObjectMessage;
+import protocol.swg.SWGMessage;
 import protocol.swg.StopClientEffectObjectByLabel;
 import protocol.swg.UpdatePVPStatusMessage;
 import protocol.swg.objectControllerObjects.ShowFlyText;
@@ -315,11 +318,19 @@ public class TangibleObject extends SWGObject {
 	}
 	
 	public void playEffectObject(String effectFile, String commandString) {
-		notifyObservers(new PlayClientEffectObjectMessage(effectFile, getObjectID(), commandString), true);
+		multicast(new PlayClientEffectObjectMessage(effectFile, getObjectID(), commandString), true);
 	}
 	
 	public void stopEffectObject(String commandString) {
-		notifyObservers(new StopClientEffectObjectByLabel(getObjectID(), commandString), true);
+		multicast(new StopClientEffectObjectByLabel(getObjectID(), commandString), true);
+	}
+	
+	// serialized once for all observers instead of once per observer
+	private void multicast(SWGMessage message, boolean notifySelf) {
+		if(NGECore.getInstance() == null || NGECore.getInstance().updateService == null)
+			notifyObservers(message.serialize(), notifySelf);
+		else
+			NGECore.getInstance().updateService.notifyObservers(this, message, notifySelf);
 	}
 	
 	public int getRespawnTime() {
@@ -62,6 +62,8 @@ public class Baseline implements List<Object> {
 	private Map<Integer, Builder> baselineBuilders;
 	@NotPersistent
 	private Map<Integer, Builder> deltaBuilders;
+	@NotPersistent
+	private byte[] typeCode;
 	
 	public Baseline() { }
 	
@@ -142,46 +144,55 @@ public class Baseline implements List<Object> {
 	}
 	
 	public IoBuffer createBaseline() {
-		byte[] objects = { };
+		byte[][] objects = new byte[list.size()][];
 		int size = 0;
 		
-		for (Object o : list) {
-			byte[] object;
-			
-			if (baselineBuilders != null && baselineBuilders.containsKey(o)) {
-				object = baselineBuilders.get(o).build();
+		for (int i = 0; i < objects.length; i++) {
+			if (baselineBuilders != null && baselineBuilders.containsKey(i)) {
+				objects[i] = baselineBuilders.get(i).build();
 			} else {
-				object = toBytes(o);
+				objects[i] = toBytes(list.get(i));
 			}
 			
-			size += object.length;
-			
-			IoBuffer buffer = createBuffer(size);
-			buffer.put(objects);
-			buffer.put(object);
-			buffer.flip();
-			
-			objects = buffer.array();
+			size += objects[i].length;
 		}
 		
 		IoBuffer buffer = createBuffer(25 + size);
+		writeHeader(buffer, Opcodes.BaselinesMessage);
+		buffer.putInt(size);
+		buffer.putShort((short) objects.length);
+		for (byte[] object : objects) buffer.put(object);
+		buffer.flip();
+		
+		return buffer;
+	}
+	
+	private void writeHeader(IoBuffer buffer, int opcode) {
 		buffer.putShort((short) 5);
-		buffer.putInt(Opcodes.BaselinesMessage);
+		buffer.putInt(opcode);
 		buffer.putLong(object.getObjectID());
-		try {
-			buffer.put(reverse(getShortTemplate()).getBytes("US-ASCII"));
-		} catch (UnsupportedEncodingException e) {
-			e.printStackTrace();
-		} catch (Exception e) {
-			e.printStackTrace();
+		
+		byte[] typeCode = getTypeCode();
+		
+		if (typeCode != null) {
+			buffer.put(typeCode);
 		}
+		
 		buffer.put(viewType);
-		buffer.putInt(size);
-		buffer.putShort((short) list.size());
-		buffer.put(objects);
-		buffer.flip();
+	}
+	
+	private byte[] getTypeCode() {
+		if (typeCode == null) {
+			try {
+				typeCode = reverse(getShortTemplate()).getBytes("US-ASCII");
+			} catch (UnsupportedEncodingException e) {
+				e.printStackTrace();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
 		
-		return buffer;
+		return typeCode;
 	}
 	
 	public static IoBuffer createBuffer(int size) {
@@ -213,46 +224,33 @@ public class Baseline implements List<Object> {
 	}
 	
 	public IoBuffer createDelta(List<Integer> objectQueue, byte[] data) {
-		byte[] objects = { };
+		byte[][] objects = new byte[objectQueue.size()][];
 		int size = 0;
 		
-		for (Integer o : objectQueue) {
-			byte[] object;
+		for (int i = 0; i < objects.length; i++) {
+			Integer o = objectQueue.get(i);
 			
 			if (deltaBuilders != null && deltaBuilders.containsKey(o)) {
-				object = deltaBuilders.get(o).build();
+				objects[i] = deltaBuilders.get(o).build();
 			} else if (data != null) {
-				object = data;
+				objects[i] = data;
 			} else {
-				object = toBytes(get(o));
+				objects[i] = toBytes(get(o));
 			}
 			
-			size += 2 + object.length;
-			
-			IoBuffer buffer = createBuffer(size);
-			buffer.put(objects);
-			buffer.putShort(o.shortValue());
-			buffer.put(object);
-			buffer.flip();
-			
-			objects = buffer.array();
+			size += 2 + objects[i].length;
 		}
 		
 		IoBuffer buffer = createBuffer(27 + size);
-		buffer.putShort((short) 5);
-		buffer.putInt(Opcodes.DeltasMessage);
-		buffer.putLong(object.getObjectID());
-		try {
-			buffer.put(reverse(getShortTemplate()).getBytes("US-ASCII"));
-		} catch (UnsupportedEncodingException e) {
-			e.printStackTrace();
- 		} catch (Exception e) {
-			e.printStackTrace();
-		}
-		buffer.put(viewType);
+		writeHeader(buffer, Opcodes.DeltasMessage);
 		buffer.putInt(size);
-		buffer.putShort((short) objectQueue.size());
-		buffer.put(objects);
+		buffer.putShort((short) objects.length);
+		
+		for (int i = 0; i < objects.length; i++) {
+			buffer.putShort(objectQueue.get(i).shortValue());
+			buffer.put(objects[i]);
+		}
+		
 		buffer.flip();
 		
 		return buffer;
@@ -286,18 +284,16 @@ public class Baseline implements List<Object> {
 	
 	public byte[] getBytes() {
 		synchronized(objectMutex) {
+			byte[][] objects = new byte[list.size()][];
 			int size = 0;
 			
-			for (Object o : list) {
-				size += toBytes(o).length;
+			for (int i = 0; i < objects.length; i++) {
+				objects[i] = toBytes(list.get(i));
+				size += objects[i].length;
 			}
 			
 			IoBuffer buffer = createBuffer(size);
-			
-			for (Object o : list) {
-				buffer.put(toBytes(o));
-			}
-			
+			for (byte[] object : objects) buffer.put(object);
 			buffer.flip();
 			
 			return buffer.array();
@@ -600,22 +596,19 @@ public class Baseline implements List<Object> {
 					return ((SWGMultiMap<?, ?>) o).getBytes();
 				} else if (o instanceof ArrayList) {
 					ArrayList<?> list = ((ArrayList<?>) o);
+					byte[][] objects = new byte[list.size()][];
 					int size = 0;
-					byte[] objects = { };
 					
-					for (int i = 0; i < list.size(); i++) {
-						byte[] object = toBytes(list.get(i));
-						size += object.length;
-						
-						IoBuffer buffer = createBuffer(size);
-						buffer.put(objects);
-						buffer.put(object);
-						buffer.flip();
-						
-						objects = buffer.array();
+					for (int i = 0; i < objects.length; i++) {
+						objects[i] = toBytes(list.get(i));
+						size += objects[i].length;
 					}
 					
-					return createBuffer(size + 4).putInt(list.size()).array();
+					IoBuffer buffer = createBuffer(size + 4);
+					buffer.putInt(objects.length);
+					for (byte[] object : objects) buffer.put(object);
+					
+					return buffer.array();
 				} else {
 					System.out.println("ERROR: Unsupported type used in Baseline: " + (o.getClass()).getSimpleName());
 					throw new Exception();
@@ -332,26 +332,24 @@ public class SWGList<E> implements List<E> {
 	
 	public byte[] getBytes() {
 		synchronized(objectMutex) {
-			byte[] objects = { };
+			byte[][] objects = new byte[list.size()][];
 			int size = 0;
+			int i = 0;
 			
 			for (Object o : list) {
-				byte[] object = Baseline.toBytes(o);
-				size += object.length;
-				
-				IoBuffer buffer = Baseline.createBuffer(size);
-				buffer.put(objects);
-				if (addByte) buffer.put((byte) 0);
-				buffer.put(object);
-				buffer.flip();
-				
-				objects = buffer.array();
+				objects[i] = Baseline.toBytes(o);
+				size += ((addByte) ? 1 : 0) + objects[i++].length;
 			}
 			
 			IoBuffer buffer = Baseline.createBuffer(8 + size);
-			buffer.putInt(list.size());
+			buffer.putInt(objects.length);
 			buffer.putInt(updateCounter);
-			buffer.put(objects);
+			
+			for (byte[] object : objects) {
+				if (addByte) buffer.put((byte) 0);
+				buffer.put(object);
+			}
+			
 			buffer.flip();
 			
 			return buffer.array();
@@ -293,28 +293,27 @@ public class SWGMultiMap<K, V> implements Multimap<K, V> {
 	
 	public byte[] getBytes() {
 		synchronized(objectMutex) {
-			byte[] objects = { };
+			List<byte[]> objects = new ArrayList<byte[]>(map.size() * 2);
 			int size = 0;
 			
 			for (Entry<?, ?> entry : map.entries()) {
 				byte[] key = Baseline.toBytes(entry.getKey());
 				byte[] value = Baseline.toBytes(entry.getValue());
 				size += ((addByte) ? 1 : 0) + key.length + value.length;
-				
-				IoBuffer buffer = Baseline.createBuffer(size);
-				buffer.put(objects);
-				if (addByte) buffer.put((byte) 0);
-				buffer.put(key);
-				buffer.put(value);
-				buffer.flip();
-				
-				objects = buffer.array();
+				objects.add(key);
+				objects.add(value);
 			}
 			
 			IoBuffer buffer = Baseline.createBuffer(8 + size);
 			buffer.putInt(map.size());
 			buffer.putInt(updateCounter);
-			buffer.put(objects);
+			
+			for (int i = 0; i < objects.size(); i += 2) {
+				if (addByte) buffer.put((byte) 0);
+				buffer.put(objects.get(i));
+				buffer.put(objects.get(i + 1));
+			}
+			
 			buffer.flip();
 			
 			return buffer.array();
@@ -198,26 +198,24 @@ public class SWGSet<E> implements Set<E> {
 	
 	public byte[] getBytes() {
 		synchronized(objectMutex) {
-			byte[] objects = { };
+			byte[][] objects = new byte[set.size()][];
 			int size = 0;
+			int i = 0;
 			
 			for (Object o : set) {
-				byte[] object = Baseline.toBytes(o);
-				size += object.length;
-				
-				IoBuffer buffer = Baseline.createBuffer(size);
-				buffer.put(objects);
-				if (addByte) buffer.put((byte) 0);
-				buffer.put(object);
-				buffer.flip();
-				
-				objects = buffer.array();
+				objects[i] = Baseline.toBytes(o);
+				size += ((addByte) ? 1 : 0) + objects[i++].length;
 			}
 			
 			IoBuffer buffer = Baseline.createBuffer(8 + size);
-			buffer.putInt(set.size());
+			buffer.putInt(objects.length);
 			buffer.putInt(updateCounter);
-			buffer.put(objects);
+			
+			for (byte[] object : objects) {
+				if (addByte) buffer.put((byte) 0);
+				buffer.put(object);
+			}
+			
 			buffer.flip();
 			
 			return buffer.array();
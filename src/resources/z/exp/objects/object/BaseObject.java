@@ -27,6 +27,8 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import main.NGECore;
+
 import org.apache.mina.core.buffer.IoBuffer;
 
 import resources.common.Stf;
@@ -498,7 +500,11 @@ public class BaseObject extends SWGObject {
 	 different method (ie. ITNO and PLAY).
 	 */
 	public void notifyClients(IoBuffer buffer, boolean notifySelf) {
-		notifyObservers(buffer, notifySelf);
+		if (NGECore.getInstance() != null && NGECore.getInstance().updateService != null) {
+			NGECore.getInstance().updateService.notifyObservers(this, buffer, notifySelf);
+		} else {
+			notifyObservers(buffer, notifySelf);
+		}
 	}
 	
 	public ObjectMessageBuilder getMessageBuilder() {
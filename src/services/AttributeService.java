@@ -21,16 +21,21 @@
  ******************************************************************************/
 package services;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.mina.core.buffer.IoBuffer;
 import org.apache.mina.core.buffer.SimpleBufferAllocator;
 
 import main.NGECore;
 
 import protocol.swg.AttributeListMessage;
 
+import engine.clients.Client;
 import engine.resources.objects.SWGObject;
 import engine.resources.service.INetworkDispatch;
 import engine.resources.service.INetworkRemoteEvent;
@@ -38,9 +43,17 @@ import engine.resources.service.INetworkRemoteEvent;
 @SuppressWarnings("unused")
 
 public class AttributeService implements INetworkDispatch {
+	
+	private static final int CACHE_LIMIT = 50000;
 
 	private NGECore core;
 	public SimpleBufferAllocator bufferPool = new SimpleBufferAllocator();
+	
+	// serialized AttributeListMessages by object id, reused until the object's attributes change
+	private final Map<Long, CachedAttributes> cache = new ConcurrentHashMap<Long, CachedAttributes>();
+	
+	private AtomicLong hits = new AtomicLong();
+	private AtomicLong misses = new AtomicLong();
 
 	public AttributeService(NGECore core) {
 		this.core = core;
@@ -65,8 +78,87 @@ public class AttributeService implements INetworkDispatch {
 		if(requester.getClient() == null || requester.getClient().getSession() == null)
 			return;
 		
-		AttributeListMessage message = new AttributeListMessage(target, bufferPool);
-		requester.getClient().getSession().write(message.serialize());
+		requester.getClient().getSession().write(IoBuffer.wrap(getAttributeList(target)));
+	}
+	
+	/**
+	 * Sends the attributes of all targets, the messages go out together on the next update tick.
+	 */
+	public void handleGetAttributesBatch(Collection<SWGObject> targets, SWGObject requester) {
+		
+		Client client = requester.getClient();
+		
+		if(client == null || client.getSession() == null)
+			return;
+		
+		for(SWGObject target : targets) {
+			if(target == null || target.getAttributes().size() == 0)
+				continue;
+			
+			core.updateService.queue(client, IoBuffer.wrap(getAttributeList(target)));
+		}
+	}
+	
+	/**
+	 * @return The serialized AttributeListMessage of the object, built again only if its attributes changed since the last request.
+	 */
+	public byte[] getAttributeList(SWGObject target) {
+		
+		synchronized(target.getMutex()) {
+			// SWGObject lives in the engine and has no attribute version, so the cached copy of the attributes is compared instead
+			Map<String, String> attributes = target.getAttributes();
+			CachedAttributes cached = cache.get(target.getObjectID());
+			
+			if(cached != null && cached.attributes.equals(attributes)) {
+				hits.incrementAndGet();
+				return cached.message;
+			}
+			
+			misses.incrementAndGet();
+			
+			IoBuffer buffer = new AttributeListMessage(target, bufferPool).serialize();
+			byte[] message = new byte[buffer.remaining()];
+			buffer.get(message);
+			
+			if(cache.size() >= CACHE_LIMIT)
+				cache.clear();
+			
+			cache.put(target.getObjectID(), new CachedAttributes(new HashMap<String, String>(attributes), message));
+			return message;
+		}
+	}
+	
+	public void invalidate(SWGObject object) {
+		cache.remove(object.getObjectID());
+	}
+	
+	public long getHits() {
+		return hits.get();
+	}
+	
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	public float getHitRate() {
+		long requests = getHits() + getMisses();
+		return (requests == 0) ? 0 : (getHits() * 100f / requests);
+	}
+	
+	public String getStatistics() {
+		return "Attributes: " + cache.size() + " cached, " + getHits() + " hits, " + getMisses() + " misses (" + String.format("%.1f", getHitRate()) + "% hit rate)";
+	}
+	
+	private static class CachedAttributes {
+		
+		private final Map<String, String> attributes;
+		private final byte[] message;
+		
+		public CachedAttributes(Map<String, String> attributes, byte[] message) {
+			this.attributes = attributes;
+			this.message = message;
+		}
+		
 	}
 
 }
@@ -24,7 +24,6 @@ package services;
 import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.python.core.Py;
@@ -36,6 +35,7 @@ import resources.objects.DamageOverTime;
 import resources.objects.creature.CreatureObject;
 import resources.objects.group.GroupObject;
 import resources.objects.player.PlayerObject;
+import services.tick.GameTimer;
 import main.NGECore;
 import engine.resources.objects.SWGObject;
 import engine.resources.service.INetworkDispatch;
@@ -116,7 +116,7 @@ public class BuffService implements INetworkDispatch {
 		
 		if(buff.getDuration() > 0) {
 			
-			ScheduledFuture<?> task = scheduler.schedule(new Runnable() {
+			GameTimer task = core.timerService.schedule(new Runnable() {
 	
 				@Override
 				public void run() {
@@ -162,9 +162,11 @@ public class BuffService implements INetworkDispatch {
 		
 		 if(!creature.getBuffList().contains(buff))
              return;
+		 if(buff.getRemovalTask() != null)
+			 buff.getRemovalTask().cancel();
 		 DamageOverTime dot = creature.getDotByBuff(buff);
          if(dot != null) {
-        	 dot.getTask().cancel(true);
+        	 dot.getTask().cancel();
         	 creature.removeDot(dot);
          }
          if(FileUtilities.doesFileExist("scripts/buffs/" + buff.getBuffName() + ".py"))
@@ -192,7 +194,7 @@ public class BuffService implements INetworkDispatch {
 			}
 
 			if(buff.getRemainingDuration() > 0 && buff.getDuration() > 0) {
-				ScheduledFuture<?> task = scheduler.schedule(new Runnable() {
+				GameTimer task = core.timerService.schedule(new Runnable() {
 
 					@Override
 					public void run() {
@@ -250,8 +250,6 @@ public class CharacterService implements INetworkDispatch {
 				if (stamina >= 1) core.skillModService.addSkillMod(object, "stamina", (int) stamina);
 				if (agility >= 1) core.skillModService.addSkillMod(object, "agility", (int) agility);
 
-				object.createTransaction(core.getCreatureODB().getEnvironment());
-				
 				PlayerObject player = (PlayerObject) core.objectService.createObject("object/player/shared_player.iff", object.getPlanet());
 				object._add(player);
 				core.skillService.addSkill(object, "species_" + object.getStfName());
@@ -310,9 +308,7 @@ public class CharacterService implements INetworkDispatch {
 				core.scriptService.callScript("scripts/", "starterclothing", "CreateStarterClothing", core, object, clientCreateCharacter.getStarterProfession(), clientCreateCharacter.getRaceTemplate());
 				core.scriptService.callScript("scripts/", "CreateStartingCharacter", "demo", core, object);
 				
-				core.getCreatureODB().put(object, Long.class, CreatureObject.class, object.getTransaction());
-				// might not need to commit transaction but better safe than sorry
-				object.getTransaction().commitSync();
+				core.persistenceService.save(object);
 
 				PreparedStatement ps = databaseConnection.preparedStatement("INSERT INTO characters (id, \"firstName\", \"lastName\", \"accountId\", \"galaxyId\", \"statusId\", appearance, gmflag) VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
 				ps.setLong(1, object.getObjectID());
@@ -27,7 +27,6 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -48,11 +47,9 @@ import protocol.swg.HeartBeatMessage;
 
 import engine.clients.Client;
 import engine.resources.database.DatabaseConnection;
-import engine.resources.scene.Point3D;
 import engine.resources.service.INetworkDispatch;
 import engine.resources.service.INetworkRemoteEvent;
 import resources.common.*;
-import resources.common.collidables.AbstractCollidable;
 import resources.datatables.PlayerFlags;
 import resources.objects.creature.CreatureObject;
 import resources.objects.player.PlayerObject;
@@ -186,6 +183,10 @@ public class ConnectionService implements INetworkDispatch {
 			return;
 		
 		CreatureObject object = (CreatureObject) client.getParent();
+		core.tickService.cancel(object);
+		core.combatService.cancelDelayedAttacks(object);
+		core.commandService.removeQueue(object);
+		core.gcwService.removePlayer(object);
 		object.setInviteCounter(0);
 		object.setInviteSenderId(0);
 		object.setInviteSenderName("");
@@ -199,13 +200,7 @@ public class ConnectionService implements INetworkDispatch {
 		if(object.getGroupId() != 0)
 			core.groupService.handleGroupDisband(object);
 		
-		Point3D objectPos = object.getWorldPosition();
-		
-		List<AbstractCollidable> collidables = core.simulationService.getCollidables(object.getPlanet(), objectPos.x, objectPos.z, 512);
-
-		for(AbstractCollidable collidable : collidables) {
-			collidables.remove(object);
-		}
+		core.simulationService.removeFromCollidables(object);
 		
 		
 		if (ghost != null) {
@@ -218,6 +213,8 @@ public class ConnectionService implements INetworkDispatch {
 			
 			core.chatService.playerStatusChange(objectShortName, (byte) 0);
 		}
+		
+		core.chatService.playerOffline(object);
 				
 		long parentId = object.getParentId();
 		
@@ -242,9 +239,7 @@ public class ConnectionService implements INetworkDispatch {
 		
 		object.setAttachment("disconnectTask", null);
 		object.setAttachment("buffWorkshop", null);
-		object.createTransaction(core.getCreatureODB().getEnvironment());
-		core.getCreatureODB().put(object, Long.class, CreatureObject.class, object.getTransaction());
-		object.getTransaction().commitSync();
+		core.persistenceService.save(object);
 		core.objectService.destroyObject(object);
 		
 	}
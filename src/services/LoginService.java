@@ -206,6 +206,7 @@ public class LoginService implements INetworkDispatch{
                 				core.objectService.destroyObject(object);
                 			}
                 			
+                			core.persistenceService.discard(core.getCreatureODB(), packet.getcharId());
                 			core.getCreatureODB().delete(new Long(packet.getcharId()), Long.class, CreatureObject.class);
                 			DeleteCharacterReplyMessage reply = new DeleteCharacterReplyMessage(0);
                 			session.write(reply.serialize());
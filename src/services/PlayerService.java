@@ -30,9 +30,6 @@ import java.util.Map.Entry;
 import java.util.Random;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.mina.core.buffer.IoBuffer;
 import org.apache.mina.core.session.IoSession;
@@ -59,6 +56,7 @@ import resources.objects.player.PlayerMessageBuilder;
 import resources.objects.player.PlayerObject;
 import resources.objects.waypoint.WaypointObject;
 import services.sui.SUIService.ListBoxType;
+import services.tick.TickTask;
 import services.sui.SUIWindow;
 import services.sui.SUIWindow.Trigger;
 import services.sui.SUIWindow.SUICallback;
@@ -80,7 +78,6 @@ import engine.resources.service.INetworkRemoteEvent;
 public class PlayerService implements INetworkDispatch {
 	
 	private NGECore core;
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
     
     protected final Object objectMutex = new Object();
     
@@ -91,59 +88,57 @@ public class PlayerService implements INetworkDispatch {
 	
 	public void postZoneIn(final CreatureObject creature) {
 		
-		scheduler.scheduleAtFixedRate(new Runnable() {
-
+		// drop tasks from an earlier zone in of the same creature
+		core.tickService.cancel(creature);
+		
+		core.tickService.register(creature, new TickTask(45000) {
+			
 			@Override
-			public void run() {
+			public void run(long now) {
+				if(creature.getClient() == null || creature.getClient().getSession() == null)
+					return;
+				
 				ServerTimeMessage time = new ServerTimeMessage(core.getGalacticTime() / 1000);
 				IoBuffer packet = time.serialize();
 				creature.getClient().getSession().write(packet);
 			}
 			
-		}, 0, 45, TimeUnit.SECONDS);
-
+		});
 		
-		scheduler.scheduleAtFixedRate(new Runnable() {
-
+		core.tickService.register(creature, new TickTask(30000, 30000) {
+			
 			@Override
-			public void run() {
+			public void run(long now) {
 				
 				PlayerObject player = (PlayerObject) creature.getSlottedObject("ghost");
-				player.setTotalPlayTime((int) (player.getTotalPlayTime() + ((System.currentTimeMillis() - player.getLastPlayTimeUpdate()) / 1000)));
-				player.setLastPlayTimeUpdate(System.currentTimeMillis());
+				
+				if(player == null)
+					return;
+				
+				player.setTotalPlayTime((int) (player.getTotalPlayTime() + ((now - player.getLastPlayTimeUpdate()) / 1000)));
+				player.setLastPlayTimeUpdate(now);
 				core.collectionService.checkExplorationRegions(creature);
 				
 			}
 			
-		}, 30, 30, TimeUnit.SECONDS);
+		});
 		
-		scheduler.scheduleAtFixedRate(new Runnable() {
-
+		core.tickService.register(creature, new TickTask(1000) {
+			
 			@Override
-			public void run() {
+			public void run(long now) {
 				
 				synchronized(creature.getMutex()) {
 					if(creature.getAction() < creature.getMaxAction() && creature.getPosture() != 14)
 						creature.setAction(creature.getAction() + 200);
-				}
-			}
-			
-		}, 0, 1000, TimeUnit.MILLISECONDS);
-		
-
-		scheduler.scheduleAtFixedRate(new Runnable() {
-
-			@Override
-			public void run() {
-				
-				synchronized(creature.getMutex()) {
+					
 					if(creature.getHealth() < creature.getMaxHealth() && creature.getCombatFlag() == 0 && creature.getPosture() != 13 && creature.getPosture() != 14)
 						creature.setHealth(creature.getHealth() + 300);
 				}
 				
 			}
 			
-		}, 0, 1000, TimeUnit.MILLISECONDS);
+		});
 		
 		PlayerObject ghost = (PlayerObject) creature.getSlottedObject("ghost");
 
@@ -354,35 +349,41 @@ public class PlayerService implements INetworkDispatch {
 		
 	}
 	
-	public void handleCloneRequest(CreatureObject creature, BuildingObject cloner, SpawnPoint spawnPoint, boolean pvpDeath) {
+	public void handleCloneRequest(final CreatureObject creature, BuildingObject cloner, SpawnPoint spawnPoint, final boolean pvpDeath) {
 		
 		CellObject cell = cloner.getCellByCellNumber(spawnPoint.getCellNumber());
 		
 		if(cell == null)
 			return;
 		
-		core.simulationService.transferToPlanet(creature, cloner.getPlanet(), spawnPoint.getPosition(), spawnPoint.getOrientation(), cell);
-		
-		creature.setHealth(creature.getMaxHealth());
-		creature.setAction(creature.getMaxAction());
-		
-		creature.setPosture((byte) 0);
-		creature.setSpeedMultiplierBase(1);
-		creature.setTurnRadius(1);
-		
-		if(pvpDeath) {
-			List<Buff> buffs = new ArrayList<Buff>(creature.getBuffList().get());
+		// the clone is healed once it's on the target shard, otherwise the deltas race the zone in
+		core.simulationService.transferToPlanet(creature, cloner.getPlanet(), spawnPoint.getPosition(), spawnPoint.getOrientation(), cell, new Runnable() {
 			
-			for(Buff buff : buffs) {
-				if(buff.isDecayOnPvPDeath())
-					buff.incDecayCounter();
+			@Override
+			public void run() {
+				creature.setHealth(creature.getMaxHealth());
+				creature.setAction(creature.getMaxAction());
+				
+				creature.setPosture((byte) 0);
+				creature.setSpeedMultiplierBase(1);
+				creature.setTurnRadius(1);
+				
+				if(pvpDeath) {
+					List<Buff> buffs = new ArrayList<Buff>(creature.getBuffList().get());
+					
+					for(Buff buff : buffs) {
+						if(buff.isDecayOnPvPDeath())
+							buff.incDecayCounter();
+					}
+					
+					creature.updateAllBuffs();
+				}
+				
+				creature.setFactionStatus(0);
+				core.buffService.addBuffToCreature(creature, "cloning_sickness");
 			}
 			
-			creature.updateAllBuffs();
-		}
-		
-		creature.setFactionStatus(0);
-		core.buffService.addBuffToCreature(creature, "cloning_sickness");
+		});
 		
 	}
 	
@@ -21,6 +21,11 @@
  ******************************************************************************/
 package services;
 
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.python.core.Py;
 import org.python.core.PyObject;
 import org.python.util.PythonInterpreter;
@@ -33,78 +38,159 @@ public class ScriptService {
 
 	private NGECore core;
 	private PythonInterpreter interpreter;
+	
+	// scripts are only checked for changes on disk once per interval
+	private static final long MODIFICATION_CHECK_INTERVAL = 2000;
+	
+	private Map<String, ScriptModule> scripts = new ConcurrentHashMap<String, ScriptModule>();
+	
+	private AtomicLong hits = new AtomicLong();
+	private AtomicLong misses = new AtomicLong();
+	private AtomicLong reloads = new AtomicLong();
+	private AtomicLong calls = new AtomicLong();
+	private AtomicLong callTime = new AtomicLong();
+	private AtomicLong maxCallTime = new AtomicLong();
 
 	public ScriptService(NGECore core) {
 		this.core = core;
 	}
 	
 	public PyObject callScript(String path, String module, String method) {
-		/*PythonInterpreter interpreter = new PythonInterpreter();
-		interpreter.cleanup();
-		interpreter.exec("import sys\nsys.path.append('" + path + "')\nfrom " + module + " import " + method);	
-		PyObject func = interpreter.get(method);
-		func.__call__(Py.java2py(core));*/
-		PythonInterpreter python = new PythonInterpreter();
-		python.cleanup();
-		python.execfile(path + module + ".py");
-		return python.get(method).__call__();
+		return call(path, module, method);
 	}
 	
 	public PyObject callScript(String path, String module, String method, Object arg1) {
-		/*PythonInterpreter interpreter = new PythonInterpreter();
-		interpreter.cleanup();
-		interpreter.exec("import sys\nsys.path.append('" + path + "')\nfrom " + module + " import " + method);	
-		PyObject func = interpreter.get(method);
-		func.__call__(Py.java2py(core), Py.java2py(arg1));*/
-		PythonInterpreter python = new PythonInterpreter();
-		python.cleanup();
-		python.execfile(path + module + ".py");
-		return python.get(method).__call__(Py.java2py(arg1));
+		return call(path, module, method, Py.java2py(arg1));
 	}
 	
 	public PyObject callScript(String path, String method, String module, Object arg1, Object arg2) {
-		/*PythonInterpreter interpreter = new PythonInterpreter();
-		interpreter.cleanup();
-		interpreter.exec("import sys\nsys.path.append('" + path + "')\nfrom " + module + " import " + method);	
-		PyObject func = interpreter.get(method);
-		func.__call__(Py.java2py(arg1), Py.java2py(arg2));*/
-		PythonInterpreter python = new PythonInterpreter();
-		python.cleanup();
-		python.execfile(path + module + ".py");
-		return python.get(method).__call__(Py.java2py(arg1), Py.java2py(arg2));
+		return call(path, module, method, Py.java2py(arg1), Py.java2py(arg2));
 	}
 	
 	public PyObject callScript(String path, String method, String module, Object arg1, Object arg2, Object arg3) {
-		/*PythonInterpreter interpreter = new PythonInterpreter();
-		interpreter.cleanup();
-		interpreter.exec("import sys\nsys.path.append('" + path + "')\nfrom " + module + " import " + method);	
-		PyObject func = interpreter.get(method);
-		func.__call__(Py.java2py(arg1), Py.java2py(arg2), Py.java2py(arg3));*/
-		PythonInterpreter python = new PythonInterpreter();
-		python.cleanup();
-		python.execfile(path + module + ".py");
-		return python.get(method).__call__(Py.java2py(arg1), Py.java2py(arg2), Py.java2py(arg3));
-
+		return call(path, module, method, Py.java2py(arg1), Py.java2py(arg2), Py.java2py(arg3));
 	}
 
 	public PyObject callScript(String path, String module, String method, Object arg1, Object arg2, Object arg3, Object arg4) {
-		/*PythonInterpreter interpreter = new PythonInterpreter();
-		interpreter.cleanup();
-		interpreter.exec("import sys\nsys.path.append('" + path + "')\nfrom " + module + " import " + method);	
-		PyObject func = interpreter.get(method);
-		func.__call__(Py.java2py(arg1), Py.java2py(arg2), Py.java2py(arg3), Py.java2py(arg4));*/
-		PythonInterpreter python = new PythonInterpreter();
-		python.cleanup();
-		python.execfile(path + module + ".py");
-		return python.get(method).__call__(Py.java2py(arg1), Py.java2py(arg2), Py.java2py(arg3), Py.java2py(arg4));
+		return call(path, module, method, Py.java2py(arg1), Py.java2py(arg2), Py.java2py(arg3), Py.java2py(arg4));
 	}
 	
 	public PyObject getMethod(String path, String module, String method) {
+		return getModule(path, module).getMethod(method);
+	}
+	
+	private PyObject call(String path, String module, String method, PyObject... args) {
+		PyObject func = getMethod(path, module, method);
+		long startTime = System.nanoTime();
+		
+		try {
+			return func.__call__(args);
+		} finally {
+			long time = System.nanoTime() - startTime;
+			calls.incrementAndGet();
+			callTime.addAndGet(time);
+			
+			long max = maxCallTime.get();
+			while(time > max && !maxCallTime.compareAndSet(max, time))
+				max = maxCallTime.get();
+		}
+	}
+	
+	private ScriptModule getModule(String path, String module) {
+		String fileName = path + module + ".py";
+		ScriptModule script = scripts.get(fileName);
+		long now = System.currentTimeMillis();
+		
+		if(script != null) {
+			if(now - script.lastChecked < MODIFICATION_CHECK_INTERVAL) {
+				hits.incrementAndGet();
+				return script;
+			}
+			
+			script.lastChecked = now;
+			
+			if(new File(fileName).lastModified() == script.lastModified) {
+				hits.incrementAndGet();
+				return script;
+			}
+			
+			reloads.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		
 		PythonInterpreter python = new PythonInterpreter();
 		python.cleanup();
-		python.execfile(path + module + ".py");
-		PyObject func = python.get(method);
-		return func;
+		python.execfile(fileName);
+		
+		script = new ScriptModule(python, new File(fileName).lastModified(), now);
+		scripts.put(fileName, script);
+		
+		return script;
+	}
+	
+	public void clearCache() {
+		scripts.clear();
+		
+		if(core.commandService != null)
+			core.commandService.rescanScripts();
+	}
+	
+	public long getHits() {
+		return hits.get();
+	}
+	
+	public long getMisses() {
+		return misses.get();
+	}
+	
+	public long getReloads() {
+		return reloads.get();
+	}
+	
+	public long getCalls() {
+		return calls.get();
+	}
+	
+	public double getAverageCallTime() {
+		long callCount = calls.get();
+		return (callCount == 0) ? 0 : (double) callTime.get() / callCount / 1000000;
+	}
+	
+	public double getMaxCallTime() {
+		return (double) maxCallTime.get() / 1000000;
+	}
+	
+	public String getStatistics() {
+		return "Scripts cached: " + scripts.size() + " Hits: " + hits.get() + " Misses: " + misses.get() + " Reloads: " + reloads.get()
+				+ " Calls: " + calls.get() + " Avg: " + String.format("%.3f", getAverageCallTime()) + "ms Max: " + String.format("%.3f", getMaxCallTime()) + "ms";
+	}
+	
+	private static class ScriptModule {
+		
+		private PythonInterpreter python;
+		private long lastModified;
+		private volatile long lastChecked;
+		private Map<String, PyObject> methods = new ConcurrentHashMap<String, PyObject>();
+		
+		public ScriptModule(PythonInterpreter python, long lastModified, long lastChecked) {
+			this.python = python;
+			this.lastModified = lastModified;
+			this.lastChecked = lastChecked;
+		}
+		
+		public PyObject getMethod(String method) {
+			PyObject func = methods.get(method);
+			
+			if(func == null) {
+				func = python.get(method);
+				if(func != null)
+					methods.put(method, func);
+			}
+			
+			return func;
+		}
+		
 	}
 
 }
@@ -24,10 +24,12 @@ package services;
 import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
@@ -42,20 +44,17 @@ import org.apache.commons.math3.geometry.euclidean.threed.Vector3D;
 import org.apache.mina.core.buffer.IoBuffer;
 import org.apache.mina.core.session.IoSession;
 
-import engine.clientdata.ClientFileManager;
 import engine.clientdata.visitors.MeshVisitor;
 import engine.clientdata.visitors.PortalVisitor;
 import engine.clientdata.visitors.PortalVisitor.Cell;
 import engine.clients.Client;
 import engine.resources.common.Event;
-import engine.resources.common.Mesh3DTriangle;
 import engine.resources.common.Ray;
 import engine.resources.container.Traverser;
 import engine.resources.objects.SWGObject;
 import engine.resources.scene.Planet;
 import engine.resources.scene.Point3D;
 import engine.resources.scene.Quaternion;
-import engine.resources.scene.quadtree.QuadTree;
 import engine.resources.service.INetworkDispatch;
 import engine.resources.service.INetworkRemoteEvent;
 
@@ -81,6 +80,14 @@ import resources.common.*;
 import resources.common.collidables.AbstractCollidable;
 import resources.datatables.PlayerFlags;
 import services.ai.LairActor;
+import services.simulation.CollidableIndex;
+import services.simulation.CollisionCache;
+import services.simulation.CollisionMesh;
+import services.simulation.GridIndex;
+import services.simulation.InterestManager;
+import services.simulation.PlanetShard;
+import services.simulation.QuadTreeIndex;
+import services.simulation.SpatialIndex;
 import toxi.geom.Line3D;
 import toxi.geom.Ray3D;
 import toxi.geom.Vec3D;
@@ -102,21 +109,39 @@ import wblut.math.WB_M44;
 
 public class SimulationService implements INetworkDispatch {
 	
-	Map<String, QuadTree<SWGObject>> quadTrees;
-	Map<String, QuadTree<AbstractCollidable>> collidableQuadTrees;
+	Map<String, SpatialIndex<SWGObject>> quadTrees;
+	Map<String, CollidableIndex> collidableIndexes;
+	// areas each object is in by object id, so leaving an area is found without searching the areas around the object
+	private Map<Long, Set<AbstractCollidable>> collidedAreas = new ConcurrentHashMap<Long, Set<AbstractCollidable>>();
+	private Map<String, PlanetShard> shards;
 	private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);	
 	private NGECore core;
-	private Map<String, MeshVisitor> cellMeshes = new ConcurrentHashMap<String, MeshVisitor>(); 
+	private InterestManager interestManager;
+	private CollisionCache collisionCache = new CollisionCache();
 	
 	public SimulationService(NGECore core) {
 		this.core = core;
+		interestManager = new InterestManager(this);
 		TerrainService terrainService = core.terrainService;
-		quadTrees = new ConcurrentHashMap<String, QuadTree<SWGObject>>();
-		collidableQuadTrees = new ConcurrentHashMap<String, QuadTree<AbstractCollidable>>();
+		quadTrees = new ConcurrentHashMap<String, SpatialIndex<SWGObject>>();
+		collidableIndexes = new ConcurrentHashMap<String, CollidableIndex>();
+		
+		// SIMULATION.SPATIAL_INDEX=grid switches moving objects from the engine quadtree to the lock striped grid
+		boolean useGridIndex = core.getConfig().keyExists("SIMULATION.SPATIAL_INDEX") && core.getConfig().getString("SIMULATION.SPATIAL_INDEX").equalsIgnoreCase("grid");
+		System.out.println("Using " + (useGridIndex ? "grid" : "quadtree") + " spatial index.");
+		
+		// SIMULATION.SHARDS=1 runs movement for each planet on its own thread instead of the network threads
+		boolean threadedShards = core.getConfig().keyExists("SIMULATION.SHARDS") && core.getConfig().getInt("SIMULATION.SHARDS") > 0;
+		shards = new ConcurrentHashMap<String, PlanetShard>();
 		
 		for (int i = 0; i < core.terrainService.getPlanetList().size(); i++) {
-			quadTrees.put(terrainService.getPlanetList().get(i).getName(), new QuadTree<SWGObject>(-8192, -8192, 8192, 8192));
-			collidableQuadTrees.put(terrainService.getPlanetList().get(i).getName(), new QuadTree<AbstractCollidable>(-8192, -8192, 8192, 8192));
+			Planet planet = terrainService.getPlanetList().get(i);
+			if(useGridIndex)
+				quadTrees.put(planet.getName(), new GridIndex<SWGObject>(-8192, -8192, 8192, 8192, 64));
+			else
+				quadTrees.put(planet.getName(), new QuadTreeIndex<SWGObject>(-8192, -8192, 8192, 8192));
+			collidableIndexes.put(planet.getName(), new CollidableIndex(256));
+			shards.put(planet.getName(), new PlanetShard(planet, quadTrees.get(planet.getName()), collidableIndexes.get(planet.getName()), threadedShards));
 		}
 		
 		core.commandService.registerCommand("opencontainer");
@@ -170,16 +195,48 @@ public class SimulationService implements INetworkDispatch {
 		}
 	}
 	
+	public PlanetShard getShard(Planet planet) {
+		return (planet == null) ? null : shards.get(planet.getName());
+	}
+	
+	/**
+	 * Runs a task on the shard of the planet the object is on, or inline if it isn't on a planet.
+	 */
+	public void execute(SWGObject object, Runnable task) {
+		PlanetShard shard = getShard(object.getPlanet());
+		
+		if(shard == null)
+			task.run();
+		else
+			shard.execute(task);
+	}
+	
+	public Collection<PlanetShard> getShards() {
+		return shards.values();
+	}
+	
+	public String getStatistics() {
+		StringBuilder statistics = new StringBuilder("Simulation:");
+		
+		for(PlanetShard shard : shards.values()) {
+			if(shard.getTasksRun() > 0 || shard.getQueueDepth() > 0)
+				statistics.append("\n  ").append(shard.getStatistics());
+		}
+		
+		return statistics.toString();
+	}
+	
+	// the area is indexed by its own bounds, x and y are kept for the callers
 	public void addCollidable(AbstractCollidable collidable, float x, float y) {
-		collidableQuadTrees.get(collidable.getPlanet().getName()).put(x, y, collidable);
+		collidableIndexes.get(collidable.getPlanet().getName()).add(collidable);
 	}
 	
 	public void removeCollidable(AbstractCollidable collidable, float x, float y) {
-		collidableQuadTrees.get(collidable.getPlanet().getName()).remove(x, y, collidable);
+		collidableIndexes.get(collidable.getPlanet().getName()).remove(collidable);
 	}
 	
 	public List<AbstractCollidable> getCollidables(Planet planet, float x, float y, float range) {
-		return collidableQuadTrees.get(planet.getName()).get(x, y, range);
+		return collidableIndexes.get(planet.getName()).get(x, y, range);
 	}
 	
 	public boolean add(SWGObject object, float x, float y) {
@@ -195,21 +252,8 @@ public class SimulationService implements INetworkDispatch {
 				addChildObjects(object, childObjects);
 				object.setAttachment("childObjects", null);
 			}
-			if(notifyObservers) {
-				Point3D pos = new Point3D(x, 0, y);
-				Collection<SWGObject> newAwareObjects = get(object.getPlanet(), x, y, 512);
-				for(Iterator<SWGObject> it = newAwareObjects.iterator(); it.hasNext();) {
-					SWGObject obj = it.next();
-					if((obj.getAttachment("bigSpawnRange") == null && obj.getWorldPosition().getDistance2D(pos) > 200) || obj == object)
-						continue;
-					//if(!obj.isInSnapshot())
-					//	System.out.println(obj.getTemplate());
-					if(object.getClient() != null)
-						object.makeAware(obj);
-					if(obj.getClient() != null)
-						obj.makeAware(object);
-				}
-			}
+			if(notifyObservers)
+				interestManager.refresh(object, new Point3D(x, 0, y));
 		}
 		return success;
 	}
@@ -232,25 +276,18 @@ public class SimulationService implements INetworkDispatch {
 	}
 		
 	public boolean move(SWGObject object, int oldX, int oldY, int newX, int newY) {
-		if(quadTrees.get(object.getPlanet().getName()).remove(oldX, oldY, object)) {
-			return quadTrees.get(object.getPlanet().getName()).put(newX, newY, object);
-		}
-			
-		return false;
+		return quadTrees.get(object.getPlanet().getName()).move(object, oldX, oldY, newX, newY);
 	}
 	
 	public boolean move(SWGObject object, float oldX, float oldY, float newX, float newY) {
-		long startTime = System.nanoTime();
-		if(quadTrees.get(object.getPlanet().getName()).remove(oldX, oldY, object)) {
-			boolean success = quadTrees.get(object.getPlanet().getName()).put(newX, newY, object);
-			return success;
-		}
+		if(quadTrees.get(object.getPlanet().getName()).move(object, oldX, oldY, newX, newY))
+			return true;
 		System.out.println("Move failed.");
 		return false;
 	}
 		
 	public List<SWGObject> get(Planet planet, float x, float y, int range) {
-		List<SWGObject> list = quadTrees.get(planet.getName()).get((int)x, (int)y, range);
+		List<SWGObject> list = quadTrees.get(planet.getName()).get(x, y, range);
 		return list;
 	}
 	
@@ -261,6 +298,8 @@ public class SimulationService implements INetworkDispatch {
 	public boolean remove(SWGObject object, float x, float y, boolean notifyObservers) {
 		boolean success = quadTrees.get(object.getPlanet().getName()).remove(x, y, object);
 		object.setIsInQuadtree(success);
+		interestManager.remove(object);
+		collisionCache.remove(object);
 		if(success && notifyObservers) {
 			HashSet<Client> oldObservers = new HashSet<Client>(object.getObservers());
 			for(Iterator<Client> it = oldObservers.iterator(); it.hasNext();) {
@@ -298,70 +337,20 @@ public class SimulationService implements INetworkDispatch {
 					return;
 				}
 				
-				CreatureObject object = (CreatureObject) client.getParent();
-				Point3D newPos;
-				Point3D oldPos;
-				synchronized(object.getMutex()) {
-					newPos = new Point3D(dataTransform.getXPosition(), dataTransform.getYPosition(), dataTransform.getZPosition());
-					oldPos = object.getPosition();
-					//Collection<Client> oldObservers = object.getObservers();
-					//Collection<Client> newObservers = new HashSet<Client>();
-					if(object.getContainer() == null)
-						move(object, oldPos.x, oldPos.z, newPos.x, newPos.z);
-					Quaternion newOrientation = new Quaternion(dataTransform.getWOrientation(), dataTransform.getXOrientation(), dataTransform.getYOrientation(), dataTransform.getZOrientation());
-					object.setPosition(newPos);
-					object.setOrientation(newOrientation);
-					object.setMovementCounter(dataTransform.getMovementCounter());
-				}
-				if(object.getContainer() != null) {
-					object.getContainer()._remove(object);
-					add(object, newPos.x, newPos.z);
-				} 
-				
+				final CreatureObject object = (CreatureObject) client.getParent();
+				final DataTransform transform = dataTransform;
+				final Planet planet = object.getPlanet();
 				
-
-				
-				//object.setParentId(0);
-				//object.setParent(null);
-			//	System.out.println("Parsed Height: " + core.terrainService.getHeight(object.getPlanetId(), dataTransform.getXPosition(), dataTransform.getZPosition())
-				//		 + " should be: " + dataTransform.getYPosition());
-				UpdateTransformMessage utm = new UpdateTransformMessage(object.getObjectID(), dataTransform.getTransformedX(), dataTransform.getTransformedY(), dataTransform.getTransformedZ(), dataTransform.getMovementCounter(), (byte) dataTransform.getMovementAngle(), dataTransform.getSpeed());
-	
-				List<SWGObject> newAwareObjects = get(object.getPlanet(), newPos.x, newPos.z, 512);
-				ArrayList<SWGObject> oldAwareObjects = new ArrayList<SWGObject>(object.getAwareObjects());
-				Collection<SWGObject> updateAwareObjects = CollectionUtils.intersection(oldAwareObjects, newAwareObjects);
-				object.notifyObservers(utm, false);
-
-				for(int i = 0; i < oldAwareObjects.size(); i++) {
-					SWGObject obj = oldAwareObjects.get(i);
-					if(!updateAwareObjects.contains(obj) && obj != object && obj.getWorldPosition().getDistance2D(newPos) > 200 && obj.isInQuadtree() /*&& obj.getParentId() == 0*/) {
-						if(obj.getAttachment("bigSpawnRange") != null && obj.getWorldPosition().getDistance2D(newPos) < 512)
-							continue;
-						object.makeUnaware(obj);
-						if(obj.getClient() != null)
-							obj.makeUnaware(object);
-					} else if(obj != object && obj.getWorldPosition().getDistance2D(newPos) > 200 && obj.isInQuadtree() && obj.getAttachment("bigSpawnRange") == null) {
-						object.makeUnaware(obj);
-						if(obj.getClient() != null)
-							obj.makeUnaware(object);
-					}
-				}
-				for(int i = 0; i < newAwareObjects.size(); i++) {
-					SWGObject obj = newAwareObjects.get(i);
-					//System.out.println(obj.getTemplate());
-					if(!updateAwareObjects.contains(obj) && obj != object && !object.getAwareObjects().contains(obj) &&  obj.getContainer() != object && obj.isInQuadtree()) {						
-						if(obj.getAttachment("bigSpawnRange") == null && obj.getWorldPosition().getDistance2D(newPos) > 200)
-							continue;						
-						object.makeAware(obj);
-						if(obj.getClient() != null)
-							obj.makeAware(object);
+				execute(object, new Runnable() {
+					
+					@Override
+					public void run() {
+						// the transform was sent before a planet transfer, drop it rather than apply it on the new planet
+						if(object.getPlanet() == planet)
+							handleDataTransform(object, transform);
 					}
-				}
-				
-				checkForCollidables(object);
-				MoveEvent event = new MoveEvent();
-				event.object = object;
-				object.getEventBus().publish(event);
+					
+				});
 				
 			}
 				
@@ -382,7 +371,7 @@ public class SimulationService implements INetworkDispatch {
 				if(core.objectService.getObject(dataTransform.getCellId()) == null)
 					return;
 
-				SWGObject parent = core.objectService.getObject(dataTransform.getCellId());
+				final SWGObject parent = core.objectService.getObject(dataTransform.getCellId());
 				
 				if(client == null) {
 					System.out.println("NULL Client");
@@ -393,27 +382,20 @@ public class SimulationService implements INetworkDispatch {
 					System.out.println("NULL Object");
 					return;
 				}
-				CreatureObject object = (CreatureObject) client.getParent();
-				
-				Point3D newPos = new Point3D(dataTransform.getXPosition(), dataTransform.getYPosition(), dataTransform.getZPosition());
-				Point3D oldPos = object.getPosition();
-				Quaternion newOrientation = new Quaternion(dataTransform.getWOrientation(), dataTransform.getXOrientation(), dataTransform.getYOrientation(), dataTransform.getZOrientation());
-
-				UpdateTransformWithParentMessage utm = new UpdateTransformWithParentMessage(object.getObjectID(), dataTransform.getCellId(), dataTransform.getTransformedX(), dataTransform.getTransformedY(), dataTransform.getTransformedZ(), dataTransform.getMovementCounter(), (byte) dataTransform.getMovementAngle(), dataTransform.getSpeed());
-
 				
-				if(object.getContainer() != parent) {
-					remove(object, oldPos.x, oldPos.z);
-					if(object.getContainer() != null)
-						object.getContainer()._remove(object);
-					parent._add(object);
-				}
-				object.setPosition(newPos);
-				object.setOrientation(newOrientation);
-				object.setMovementCounter(dataTransform.getMovementCounter());
-				object.notifyObservers(utm, false);
+				final CreatureObject object = (CreatureObject) client.getParent();
+				final DataTransformWithParent transform = dataTransform;
+				final Planet planet = object.getPlanet();
 				
-				checkForCollidables(object);
+				execute(object, new Runnable() {
+					
+					@Override
+					public void run() {
+						if(object.getPlanet() == planet)
+							handleDataTransformWithParent(object, parent, transform);
+					}
+					
+				});
 
 			}
 				
@@ -470,10 +452,78 @@ public class SimulationService implements INetworkDispatch {
 		
 	}
 
+	private void handleDataTransform(CreatureObject object, DataTransform dataTransform) {
+		
+		Point3D newPos;
+		Point3D oldPos;
+		boolean leftContainer = false;
+		synchronized(object.getMutex()) {
+			newPos = new Point3D(dataTransform.getXPosition(), dataTransform.getYPosition(), dataTransform.getZPosition());
+			oldPos = object.getPosition();
+			//Collection<Client> oldObservers = object.getObservers();
+			//Collection<Client> newObservers = new HashSet<Client>();
+			if(object.getContainer() == null)
+				move(object, oldPos.x, oldPos.z, newPos.x, newPos.z);
+			Quaternion newOrientation = new Quaternion(dataTransform.getWOrientation(), dataTransform.getXOrientation(), dataTransform.getYOrientation(), dataTransform.getZOrientation());
+			object.setPosition(newPos);
+			object.setOrientation(newOrientation);
+			object.setMovementCounter(dataTransform.getMovementCounter());
+		}
+		if(object.getContainer() != null) {
+			object.getContainer()._remove(object);
+			add(object, newPos.x, newPos.z);
+			leftContainer = true;
+		} 
+		
+		
+
+		
+		//object.setParentId(0);
+		//object.setParent(null);
+	//	System.out.println("Parsed Height: " + core.terrainService.getHeight(object.getPlanetId(), dataTransform.getXPosition(), dataTransform.getZPosition())
+		//		 + " should be: " + dataTransform.getYPosition());
+		UpdateTransformMessage utm = new UpdateTransformMessage(object.getObjectID(), dataTransform.getTransformedX(), dataTransform.getTransformedY(), dataTransform.getTransformedZ(), dataTransform.getMovementCounter(), (byte) dataTransform.getMovementAngle(), dataTransform.getSpeed());
+
+		core.updateService.notifyObservers(object, utm.serialize(), false, true);
+
+		if(leftContainer)
+			interestManager.forceUpdate(object, newPos);
+		else
+			interestManager.update(object, newPos);
+		
+		checkForCollidables(object);
+		MoveEvent event = new MoveEvent();
+		event.object = object;
+		object.getEventBus().publish(event);
+	}
+	
+	private void handleDataTransformWithParent(CreatureObject object, SWGObject parent, DataTransformWithParent dataTransform) {
+		
+		Point3D newPos = new Point3D(dataTransform.getXPosition(), dataTransform.getYPosition(), dataTransform.getZPosition());
+		Point3D oldPos = object.getPosition();
+		Quaternion newOrientation = new Quaternion(dataTransform.getWOrientation(), dataTransform.getXOrientation(), dataTransform.getYOrientation(), dataTransform.getZOrientation());
+
+		UpdateTransformWithParentMessage utm = new UpdateTransformWithParentMessage(object.getObjectID(), dataTransform.getCellId(), dataTransform.getTransformedX(), dataTransform.getTransformedY(), dataTransform.getTransformedZ(), dataTransform.getMovementCounter(), (byte) dataTransform.getMovementAngle(), dataTransform.getSpeed());
+
+		
+		if(object.getContainer() != parent) {
+			remove(object, oldPos.x, oldPos.z);
+			if(object.getContainer() != null)
+				object.getContainer()._remove(object);
+			parent._add(object);
+		}
+		object.setPosition(newPos);
+		object.setOrientation(newOrientation);
+		object.setMovementCounter(dataTransform.getMovementCounter());
+		core.updateService.notifyObservers(object, utm.serialize(), false, true);
+		
+		checkForCollidables(object);
+	}
+	
 	@Override
 	public void shutdown() {
-		// TODO Auto-generated method stub
-		
+		for(PlanetShard shard : shards.values())
+			shard.shutdown();
 	}
 	
 	/*public WB_AABBTree getAABBTree(SWGObject object, int collisionBlockFlag) {
@@ -603,16 +653,7 @@ public class SimulationService implements INetworkDispatch {
 		Point3D pos = object.getWorldPosition();
 				
 		if(object.getParentId() != 0) {
-			Collection<SWGObject> newAwareObjects = get(object.getPlanet(), pos.x, pos.z, 512);
-			for(Iterator<SWGObject> it = newAwareObjects.iterator(); it.hasNext();) {
-				SWGObject obj = it.next();
-				if(obj.getAttachment("bigSpawnRange") == null && obj.getWorldPosition().getDistance(pos) > 200)
-					continue;
-				//System.out.println(obj.getTemplate());
-				object.makeAware(obj);
-				if(obj.getClient() != null)
-					obj.makeAware(object);
-			}
+			interestManager.refresh(object, pos);
 		} else {
 			add(object, pos.x, pos.z, true);
 		}
@@ -629,18 +670,74 @@ public class SimulationService implements INetworkDispatch {
 		}		
 	}
 		
+	/**
+	 * Moves an object to another planet.
+	 * 
+	 * The object is taken out of the old planet on that planet's shard, then handed off to the new planet's shard which adds it there,
+	 * so neither shard sees the object half way through the transfer.
+	 */
 	public void transferToPlanet(SWGObject object, Planet planet, Point3D newPos, Quaternion newOrientation, SWGObject newParent) {
+		transferToPlanet(object, planet, newPos, newOrientation, newParent, null);
+	}
+	
+	/*
+	 * The transfer finishes on the target planet's shard, changes to the object that must
+	 * only be seen on the new planet belong in onComplete, which runs right after it zoned in.
+	 */
+	public void transferToPlanet(final SWGObject object, final Planet planet, final Point3D newPos, final Quaternion newOrientation, final SWGObject newParent, final Runnable onComplete) {
 		
 		Client client = object.getClient();
 		
 		if(client == null)
 			return;
 		
-		IoSession session = client.getSession();
+		final IoSession session = client.getSession();
 		
 		if(session == null)
 			return;
 		
+		final PlanetShard oldShard = getShard(object.getPlanet());
+		final PlanetShard newShard = getShard(planet);
+		
+		if(oldShard == null || newShard == null) {
+			leavePlanet(object);
+			enterPlanet(object, planet, newPos, newOrientation, newParent, session);
+			
+			if(onComplete != null)
+				onComplete.run();
+			
+			return;
+		}
+		
+		oldShard.execute(new Runnable() {
+			
+			@Override
+			public void run() {
+				leavePlanet(object);
+				
+				// set the planet before the hand off so packets for the object are routed to the new shard from here on
+				object.setPlanet(planet);
+				object.setPlanetId(planet.getID());
+				
+				oldShard.handoff(newShard, new Runnable() {
+					
+					@Override
+					public void run() {
+						enterPlanet(object, planet, newPos, newOrientation, newParent, session);
+						
+						if(onComplete != null)
+							onComplete.run();
+					}
+					
+				});
+			}
+			
+		});
+
+	}
+	
+	private void leavePlanet(SWGObject object) {
+		
 		Point3D position = object.getPosition();
 		
 		if(object.getParentId() == 0 && object.getContainer() == null) {
@@ -664,6 +761,15 @@ public class SimulationService implements INetworkDispatch {
 			
 		}
 		
+	}
+	
+	private void enterPlanet(SWGObject object, Planet planet, Point3D newPos, Quaternion newOrientation, SWGObject newParent, IoSession session) {
+		
+		Client client = object.getClient();
+		
+		if(client == null)
+			return;
+		
 		object.setPlanet(planet);
 		object.setPlanetId(planet.getID());
 		object.setPosition(newPos);
@@ -700,13 +806,13 @@ public class SimulationService implements INetworkDispatch {
 				obj.setMovementCounter(obj.getMovementCounter() + 1);
 				DataTransform dataTransform = new DataTransform(new Point3D(position.x, position.y, position.z), orientation, obj.getMovementCounter(), obj.getObjectID());
 				ObjControllerMessage objController = new ObjControllerMessage(0x1B, dataTransform);
-				obj.notifyObservers(objController, true);
+				core.updateService.notifyObservers(obj, objController, true);
 			}
 		} else {
 			obj.setMovementCounter(obj.getMovementCounter() + 1);
 			DataTransformWithParent dataTransform = new DataTransformWithParent(new Point3D(position.x, position.y, position.z), orientation, obj.getMovementCounter(), obj.getObjectID(), cellId);
 			ObjControllerMessage objController = new ObjControllerMessage(0x1B, dataTransform);
-			obj.notifyObservers(objController, true);
+			core.updateService.notifyObservers(obj, objController, true);
 		}
 			
 	}
@@ -739,9 +845,26 @@ public class SimulationService implements INetworkDispatch {
 
 		Point3D origin = new Point3D(position1.x, position1.y + heightOrigin, position1.z);
 		Point3D end = new Point3D(position2.x, position2.y + heightDirection, position2.z);
-		float distance = position1.getDistance2D(position2);
 		
-		List<SWGObject> inRangeObjects = get(obj1.getPlanet(), position1.x, position1.z, 150);
+		Boolean cached = collisionCache.getLineOfSight(obj1, obj2, origin, end);
+		
+		if(cached != null)
+			return cached;
+		
+		boolean lineOfSight = checkLineOfSight(obj1, obj2, origin, end);
+		collisionCache.putLineOfSight(obj1, obj2, origin, end, lineOfSight);
+		
+		return lineOfSight;
+		
+	}
+	
+	private boolean checkLineOfSight(SWGObject obj1, SWGObject obj2, Point3D origin, Point3D end) {
+		
+		List<SWGObject> inRangeObjects = get(obj1.getPlanet(), origin.x, origin.z, 150);
+		
+		float dx = end.x - origin.x;
+		float dy = end.y - origin.y;
+		float dz = end.z - origin.z;
 
 		for(SWGObject object : inRangeObjects) {
 			
@@ -753,26 +876,20 @@ public class SimulationService implements INetworkDispatch {
 				if(bit == (Integer) object.getTemplateData().getAttribute("collisionActionBlockFlags"))
 					continue;
 			}
-
-			Ray ray = convertRayToModelSpace(origin, end, object);
-						
-			MeshVisitor visitor = object.getMeshVisitor();
 			
-			if(visitor == null)
+			CollisionMesh mesh = collisionCache.getMesh(object);
+			
+			if(mesh == null)
 				continue;
 			
-			List<Mesh3DTriangle> tris = visitor.getTriangles();
+			float[] bounds = collisionCache.getWorldBounds(object, mesh);
 			
-			if(tris.isEmpty())
+			if(!CollisionMesh.segmentIntersectsBox(origin.x, origin.y, origin.z, dx, dy, dz, bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5]))
 				continue;
 			
-			for(Mesh3DTriangle tri : tris) {
-				
-				if(ray.intersectsTriangle(tri, distance) != null) {
-				//	System.out.println("Collided with " + object.getTemplate() + " X: " + object.getPosition().x + " Y: " + object.getPosition().y + " Z: " + object.getPosition().z);	
-					return false;
-				}
-				
+			if(intersectsInModelSpace(mesh, origin, end, object)) {
+			//	System.out.println("Collided with " + object.getTemplate() + " X: " + object.getPosition().x + " Y: " + object.getPosition().y + " Z: " + object.getPosition().z);	
+				return false;
 			}
 						
 		}
@@ -822,44 +939,15 @@ public class SimulationService implements INetworkDispatch {
 		Point3D origin = new Point3D(position1.x, position1.y + 1, position1.z);
 		Point3D end = new Point3D(position2.x, position2.y + 1, position2.z);
 		
-		Vector3D direction = new Vector3D(end.x - origin.x, end.y - origin.y, end.z - origin.z).normalize();
-		float distance = position1.getDistance2D(position2);
-		Ray ray = new Ray(origin, direction);
-		
 		for(int i = 1; i < portalVisitor.cells.size(); i++) {
 			
-			Cell cell = portalVisitor.cells.get(i);
-			try {
-				
-				MeshVisitor meshVisitor;
-				if(!cellMeshes.containsKey(cell.mesh)) {
-					meshVisitor = ClientFileManager.loadFile(cell.mesh, MeshVisitor.class);
-					cellMeshes.put(cell.mesh, meshVisitor);
-				} else {
-					meshVisitor = cellMeshes.get(cell.mesh);
-				}
-				
-				if(meshVisitor == null)
-					continue;
-				
-				List<Mesh3DTriangle> tris = meshVisitor.getTriangles();
-				
-				if(tris.isEmpty())
-					continue;
-
-				for(Mesh3DTriangle tri : tris) {
-					
-					if(ray.intersectsTriangle(tri, distance) != null) {
-					//	System.out.println("Collision with: " + cell.name);
-						return false;
-					}
-					
-				}
-
-
-			} catch (InstantiationException | IllegalAccessException e) {
-				e.printStackTrace();
-			}
+			CollisionMesh mesh = collisionCache.getCellMesh(portalVisitor.cells.get(i).mesh);
+			
+			if(mesh == null)
+				continue;
+			
+			if(mesh.intersectsSegment(origin.x, origin.y, origin.z, end.x, end.y, end.z))
+				return false;
 			
 		}
 		
@@ -894,36 +982,36 @@ public class SimulationService implements INetworkDispatch {
 		Point3D origin = new Point3D(position1.x, position1.y + heightOrigin, position1.z);
 		Point3D end = new Point3D(position2.x, position2.y + heightDirection, position2.z);
 
-		Ray ray = convertRayToModelSpace(origin, end, building);
-		
 		if(cell.getCellNumber() >= portalVisitor.cellCount)
 			return true;
 		
-		try {
-			
-			MeshVisitor meshVisitor = ClientFileManager.loadFile(portalVisitor.cells.get(cell.getCellNumber()).mesh, MeshVisitor.class);
-			
-			if(meshVisitor == null)
-				return true;
-			
-			List<Mesh3DTriangle> tris = meshVisitor.getTriangles();
-			
-			if(tris.isEmpty())
-				return true;
-
-			for(Mesh3DTriangle tri : tris) {
-				
-				if(ray.intersectsTriangle(tri) != null) {
-					return false;
-				}
-				
-			}
-
-		} catch (InstantiationException | IllegalAccessException e) {
-			e.printStackTrace();
-		}
+		CollisionMesh mesh = collisionCache.getCellMesh(portalVisitor.cells.get(cell.getCellNumber()).mesh);
+		
+		if(mesh == null)
+			return true;
 
-		return true;
+		return !intersectsInModelSpace(mesh, origin, end, building);
+	}
+	
+	/**
+	 * Tests a world space segment against a mesh placed at the object's position and rotation.
+	 */
+	private boolean intersectsInModelSpace(CollisionMesh mesh, Point3D origin, Point3D end, SWGObject object) {
+		
+		Point3D position = object.getPosition();
+		float radians = object.getRadians();
+		float sin = (float) Math.sin(radians);
+		float cos = (float) Math.cos(radians);
+		
+		float ox = origin.x - position.x, oz = origin.z - position.z;
+		float ex = end.x - position.x, ez = end.z - position.z;
+		
+		return mesh.intersectsSegment(cos * ox - sin * oz, origin.y - position.y, sin * ox + cos * oz, cos * ex - sin * ez, end.y - position.y, sin * ex + cos * ez);
+		
+	}
+	
+	public CollisionCache getCollisionCache() {
+		return collisionCache;
 	}
 	
 	public float getHeightOrigin(CreatureObject creature) {
@@ -940,45 +1028,81 @@ public class SimulationService implements INetworkDispatch {
 	}
 	
 	public void notifyPlanet(Planet planet, IoBuffer packet) {
+		core.updateService.notifyPlanet(planet, packet);
+	}
+	
+	public void notifyAllClients(IoBuffer packet) {
+		core.updateService.notifyAllClients(packet);
+	}
+	
+	public InterestManager getInterestManager() {
+		return interestManager;
+	}
+	
+	/**
+	 * Finds the areas the object entered or left, then publishes all exit events followed by all enter events.
+	 */
+	public void checkForCollidables(SWGObject object) {
+		Point3D objectPos = object.getWorldPosition();
+		CollidableIndex index = (object.getPlanet() == null) ? null : collidableIndexes.get(object.getPlanet().getName());
+		Set<AbstractCollidable> areas = collidedAreas.get(object.getObjectID());
+		List<AbstractCollidable> entered = new ArrayList<AbstractCollidable>();
+		List<AbstractCollidable> exited = new ArrayList<AbstractCollidable>();
+		
+		if(areas != null) {
+			for(AbstractCollidable collidable : areas) {
+				if(collidable.getPlanet() != object.getPlanet() || !collidable.doesCollide(object))
+					exited.add(collidable);
+			}
+		}
 		
-		ConcurrentHashMap<IoSession, Client> clients = core.getActiveConnectionsMap();
+		if(index != null) {
+			for(AbstractCollidable collidable : index.get(objectPos.x, objectPos.z)) {
+				if((areas == null || !areas.contains(collidable)) && collidable.doesCollide(object))
+					entered.add(collidable);
+			}
+		}
 		
-		for(Client client : clients.values()) {
-			
-			if(client.getParent() == null)
-				continue;
-
-			if(client.getParent().getPlanet() == null)
-				continue;
-			else if(client.getParent().getPlanet() == planet)
-				client.getSession().write(packet);
+		if(entered.isEmpty() && exited.isEmpty())
+			return;
+		
+		if(areas == null) {
+			areas = Collections.newSetFromMap(new ConcurrentHashMap<AbstractCollidable, Boolean>());
+			collidedAreas.put(object.getObjectID(), areas);
+		}
+		
+		for(AbstractCollidable collidable : exited) {
+			areas.remove(collidable);
+			collidable.removeCollidedObject(object);
+		}
+		
+		for(AbstractCollidable collidable : entered) {
+			areas.add(collidable);
 			
+			if(!collidable.isInCollisionList(object))
+				collidable.enter(object);
 		}
 		
+		if(areas.isEmpty())
+			collidedAreas.remove(object.getObjectID());
 	}
 	
-	public void notifyAllClients(IoBuffer packet) {
+	/**
+	 * Takes the object out of all areas it is in and publishes their exit events, for objects leaving the world.
+	 */
+	public void removeFromCollidables(SWGObject object) {
+		Set<AbstractCollidable> areas = collidedAreas.remove(object.getObjectID());
 		
-		ConcurrentHashMap<IoSession, Client> clients = core.getActiveConnectionsMap();
+		if(areas == null)
+			return;
 		
-		for(Client client : clients.values()) {
-			
-			if(client.getParent() == null)
-				continue;
-
-			client.getSession().write(packet);
-			
-		}
-
+		for(AbstractCollidable collidable : areas)
+			collidable.removeCollidedObject(object);
 	}
 	
-	public void checkForCollidables(SWGObject object) {
-		Point3D objectPos = object.getWorldPosition();
-		List<AbstractCollidable> collidables = getCollidables(object.getPlanet(), objectPos.x, objectPos.z, 2050);
-		
-		for(AbstractCollidable collidable : collidables) {
-			collidable.doCollisionCheck(object);
-		}
+	public Set<AbstractCollidable> getCollidedAreas(SWGObject object) {
+		Set<AbstractCollidable> areas = collidedAreas.get(object.getObjectID());
+		return (areas == null) ? Collections.<AbstractCollidable>emptySet() : areas;
 	}
 	
 	public class MoveEvent implements Event {
@@ -23,14 +23,17 @@ package services;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import resources.common.FileUtilities;
+import resources.common.collidables.AbstractCollidable;
 import resources.common.collidables.CollidableCircle;
 import resources.objects.building.BuildingObject;
+import services.simulation.CollidableIndex;
 
 import engine.clientdata.ClientFileManager;
 import engine.clientdata.visitors.DatatableVisitor;
@@ -45,7 +48,7 @@ public class TerrainService {
 	
 	private NGECore core;
 	private List<Planet> planets = Collections.synchronizedList(new ArrayList<Planet>());
-	private Map<Planet, List<CollidableCircle>> noBuildAreas = new ConcurrentHashMap<Planet, List<CollidableCircle>>();
+	private Map<Planet, CollidableIndex> noBuildAreas = new ConcurrentHashMap<Planet, CollidableIndex>();
 
 	public TerrainService(NGECore core) {
 		this.core = core;	
@@ -174,27 +177,38 @@ public class TerrainService {
 		Planet planet = new Planet(ID, name, path, loadSnapshot);
 		planets.add(planet);
 		core.mapService.addPlanet(planet);
-		noBuildAreas.put(planet, new ArrayList<CollidableCircle>());
+		noBuildAreas.put(planet, new CollidableIndex(256));
 		loadClientRegions(planet);
 	}
 
 	
 	public void loadSnapShotObjects() {
 		
-		Map<Planet, Thread> threadMap = new HashMap<Planet, Thread>();
+		Config config = new Config();
+		config.setFilePath("options.cfg");
+		boolean loaded = config.loadConfigFile();
+		final boolean loadSnapshots = loaded && config.getInt("LOAD.SNAPSHOT_OBJECTS") > 0;
+		final boolean loadBuildouts = loaded && config.getInt("LOAD.BUILDOUT_OBJECTS") > 0;
+		
+		int threads = Runtime.getRuntime().availableProcessors();
+		
+		if(loaded && config.keyExists("LOAD.THREADS") && config.getInt("LOAD.THREADS") > 0)
+			threads = config.getInt("LOAD.THREADS");
+		
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(threads, planets.size())));
+		List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+		
+		// resolve the template crc table once before the planets start creating objects
+		core.objectService.getCrcTable();
 		
 		for(final Planet planet : planets) {
 			
 			if(planet.getSnapshotVisitor() != null) {
-				Thread thread = new Thread(new Runnable() {
+				tasks.add(pool.submit(new Runnable() {
 
 					@Override
 					public void run() {
-						Config config = new Config();
-						config.setFilePath("options.cfg");
-						boolean loaded = config.loadConfigFile();
-						
-						if (loaded && config.getInt("LOAD.SNAPSHOT_OBJECTS") > 0) {
+						if (loadSnapshots) {
 							try {							
 								core.objectService.loadSnapshotObjects(planet);
 							} catch (Exception e) {
@@ -202,30 +216,27 @@ public class TerrainService {
 							}
 						}
 						
-						if (loaded && config.getInt("LOAD.BUILDOUT_OBJECTS") > 0) {
+						if (loadBuildouts) {
 							try {							
+								long startTime = System.currentTimeMillis();
 								core.objectService.loadBuildoutObjects(planet);
+								System.out.println("Finished loading buildout objects for: " + planet.getName() + " in " + (System.currentTimeMillis() - startTime) + " ms");
 							} catch (InstantiationException | IllegalAccessException e) {
 								e.printStackTrace();
 							}
 						}
 					}
 					
-				});
-				thread.start();
-				threadMap.put(planet, thread);
+				}));
 			}
 			
 		}
 		
-		// wait for threads to finish loading
-		for(Planet planet : planets) {
-			try {
-				threadMap.get(planet).join();
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		}
+		// wait for all planets to finish loading
+		for(ForkJoinTask<?> task : tasks)
+			task.join();
+		
+		pool.shutdown();
 		
 		synchronized(core.objectService.getObjectList()) {
 		
@@ -239,9 +250,7 @@ public class TerrainService {
 				if(building.getTransaction() == null)
 					continue;
 				
-				building.createTransaction(core.getBuildingODB().getEnvironment());
-				core.getBuildingODB().put(building, Long.class, BuildingObject.class, building.getTransaction());
-				building.getTransaction().commitSync();
+				core.persistenceService.save(building);
 				
 			}
 			
@@ -256,7 +265,7 @@ public class TerrainService {
 		
 		Point3D position = new Point3D(x, 0, z);
 		
-		for(CollidableCircle noBuildArea : noBuildAreas.get(object.getPlanet())) {
+		for(AbstractCollidable noBuildArea : noBuildAreas.get(object.getPlanet()).get(x, z)) {
 			if(noBuildArea.doesCollide(position)) {
 				return false;
 			}
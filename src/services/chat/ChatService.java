@@ -22,12 +22,17 @@
 package services.chat;
 
 import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.mina.core.buffer.IoBuffer;
 import org.apache.mina.core.session.IoSession;
@@ -37,15 +42,18 @@ import com.sleepycat.persist.EntityCursor;
 
 import engine.clients.Client;
 import engine.resources.config.Config;
-import engine.resources.config.DefaultConfig;
+import engine.resources.container.Traverser;
 import engine.resources.database.ObjectDatabase;
 import engine.resources.objects.SWGObject;
 import engine.resources.scene.Point3D;
 import engine.resources.service.INetworkDispatch;
 import engine.resources.service.INetworkRemoteEvent;
 import resources.common.*;
+import resources.objects.building.BuildingObject;
+import resources.objects.cell.CellObject;
 import resources.objects.creature.CreatureObject;
 import resources.objects.player.PlayerObject;
+import services.object.ObjectIdAllocator;
 import protocol.swg.AddIgnoreMessage;
 import protocol.swg.ChatOnChangeFriendStatus;
 import protocol.swg.ChatDeletePersistentMessage;
@@ -68,6 +76,24 @@ public class ChatService implements INetworkDispatch {
 	
 	private NGECore core;
 	private ObjectDatabase mailODB;
+	private ObjectIdAllocator mailIdAllocator;
+	// old mails have random ids up to Integer.MAX_VALUE, those above the stored mark are skipped when handing out new ids
+	private Set<Integer> legacyMailIds = new ConcurrentSkipListSet<Integer>();
+	
+	private static final int MAIL_HEADER_PAGE_SIZE = 50;
+	private static final int MAIL_HEADER_PAGE_DELAY = 100;
+	private static final int CHAT_RANGE = 80;
+	// ObjControllerMessage header plus the controller type
+	private static final int CHAT_DESTINATION_OFFSET = 14;
+	
+	// receiver id -> mail ids, so zone in doesn't have to scan the whole mail database
+	private ConcurrentHashMap<Long, Set<Integer>> mailboxes = new ConcurrentHashMap<Long, Set<Integer>>();
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+	
+	// lowercase first name -> online character
+	private ConcurrentHashMap<String, SWGObject> onlinePlayers = new ConcurrentHashMap<String, SWGObject>();
+	// lowercase first name -> online characters that have that name in their friend list
+	private ConcurrentHashMap<String, Set<SWGObject>> friendWatchers = new ConcurrentHashMap<String, Set<SWGObject>>();
 
 	public ChatService(NGECore core) {
 		this.core = core;
@@ -79,6 +105,49 @@ public class ChatService implements INetworkDispatch {
 		core.commandService.registerCommand("addfriend");
 		core.commandService.registerCommand("removefriend");
 		mailODB = core.getMailODB();
+		int mailIdLeaseSize = 100;
+		
+		if(core.getConfig().keyExists("MAIL.ID_LEASE") && core.getConfig().getInt("MAIL.ID_LEASE") > 0)
+			mailIdLeaseSize = core.getConfig().getInt("MAIL.ID_LEASE");
+		
+		mailIdAllocator = new ObjectIdAllocator(core.getDatabase1(), "highestmailid", mailIdLeaseSize);
+		loadMailIndex();
+	}
+	
+	private void loadMailIndex() {
+		
+		EntityCursor<Mail> cursor = mailODB.getCursor(Integer.class, Mail.class);
+		long highestMailId = mailIdAllocator.getFirstLeaseStart();
+		int count = 0;
+		
+		try {
+			for(Mail mail : cursor) {
+				getMailbox(mail.getRecieverId()).add(mail.getMailId());
+				
+				if(mail.getMailId() > highestMailId)
+					legacyMailIds.add(mail.getMailId());
+				
+				count++;
+			}
+		} finally {
+			cursor.close();
+		}
+		
+		System.out.println("Indexed " + count + " mails for " + mailboxes.size() + " receivers.");
+		
+	}
+	
+	private Set<Integer> getMailbox(long receiverId) {
+		Set<Integer> mailbox = mailboxes.get(receiverId);
+		
+		if(mailbox == null) {
+			mailbox = new ConcurrentSkipListSet<Integer>();
+			Set<Integer> existing = mailboxes.putIfAbsent(receiverId, mailbox);
+			if(existing != null)
+				mailbox = existing;
+		}
+		
+		return mailbox;
 	}
 	
 	public void handleSpatialChat(SWGObject speaker, SWGObject target, String chatMessage, short chatType, short moodId) {
@@ -97,32 +166,7 @@ public class ChatService implements INetworkDispatch {
 		SpatialChat spatialChat = new SpatialChat(speaker.getObjectID(), targetId, chatMessage, chatType, moodId);
 		ObjControllerMessage objControllerMessage = new ObjControllerMessage(0x0B, spatialChat);
 		
-		Client speakerClient = speaker.getClient();
-		
-		if(speakerClient == null || speakerClient.getSession() == null)
-			return;
-			
-		speakerClient.getSession().write(objControllerMessage.serialize());
-		
-		if(speaker.getObservers().isEmpty())
-			return;
-		
-		HashSet<Client> observers = new HashSet<Client>(speaker.getObservers());
-		
-		Point3D position = speaker.getPosition();
-		
-		for(Client client : observers) {
-			float distance = client.getParent().getPosition().getDistance2D(position);
-			if(client != null && client.getSession() != null && distance <= 80) {
-				
-				if(((PlayerObject)client.getParent().getSlottedObject("ghost")).getIgnoreList().contains(speaker.getCustomName().toLowerCase().split(" ")[0]))
-					continue;
-				
-				spatialChat.setDestinationId(client.getParent().getObjectID());
-				ObjControllerMessage objControllerMessage2 = new ObjControllerMessage(0x0B, spatialChat);
-				client.getSession().write(objControllerMessage2.serialize());
-			}
-		}
+		broadcastToListeners(speaker, objControllerMessage.serialize(), true);
 
 	}
 	
@@ -138,29 +182,111 @@ public class ChatService implements INetworkDispatch {
 		PlayerEmote emote = new PlayerEmote(speaker.getObjectID(), targetId, emoteId);
 		ObjControllerMessage objControllerMessage = new ObjControllerMessage(0x0B, emote);
 		//System.out.println("Emote ID: " + emoteId);
+		
+		broadcastToListeners(speaker, objControllerMessage.serialize(), false);
+
+	}
+	
+	private void broadcastToListeners(SWGObject speaker, IoBuffer packet, boolean checkIgnore) {
+		
 		Client speakerClient = speaker.getClient();
 		
 		if(speakerClient == null || speakerClient.getSession() == null)
 			return;
-			
-		speakerClient.getSession().write(objControllerMessage.serialize());
 		
-		if(speaker.getObservers().isEmpty())
+		// serialized once, listeners get a copy with only the destination id changed
+		byte[] payload = new byte[packet.remaining()];
+		packet.get(payload);
+		
+		speakerClient.getSession().write(IoBuffer.wrap(payload));
+		
+		List<Client> listeners = getListeners(speaker);
+		
+		if(listeners.isEmpty())
 			return;
 		
-		HashSet<Client> observers = new HashSet<Client>(speaker.getObservers());
+		String speakerName = null;
 		
-		Point3D position = speaker.getPosition();
-
-		for(Client client : observers) {
-			float distance = client.getParent().getPosition().getDistance2D(position);
-			if(client != null && client.getSession() != null && distance <= 80) {
-				emote.setDestinationId(client.getParent().getObjectID());
-				ObjControllerMessage objControllerMessage2 = new ObjControllerMessage(0x0B, emote);
-				client.getSession().write(objControllerMessage2.serialize());
+		if(checkIgnore && speaker.getCustomName() != null)
+			speakerName = getFirstName(speaker.getCustomName());
+		
+		for(Client client : listeners) {
+			
+			SWGObject listener = client.getParent();
+			
+			if(listener == null)
+				continue;
+			
+			if(speakerName != null) {
+				PlayerObject ghost = (PlayerObject) listener.getSlottedObject("ghost");
+				
+				if(ghost != null && ghost.isIgnoring(speakerName))
+					continue;
 			}
+			
+			IoBuffer buffer = IoBuffer.allocate(payload.length).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.put(payload);
+			buffer.putLong(CHAT_DESTINATION_OFFSET, listener.getObjectID());
+			client.getSession().write(buffer.flip());
 		}
-
+		
+	}
+	
+	private List<Client> getListeners(final SWGObject speaker) {
+		
+		final List<Client> listeners = new ArrayList<Client>();
+		final Point3D position = speaker.getWorldPosition();
+		
+		if(speaker.getPlanet() == null)
+			return listeners;
+		
+		List<SWGObject> objects = core.simulationService.get(speaker.getPlanet(), position.x, position.z, CHAT_RANGE);
+		
+		final Traverser cellTraverser = new Traverser() {
+			
+			@Override
+			public void process(SWGObject obj) {
+				addListener(listeners, speaker, obj, position);
+			}
+			
+		};
+		
+		for(SWGObject object : objects) {
+			
+			// players inside buildings aren't in the quadtree themselves
+			if(object instanceof BuildingObject) {
+				object.viewChildren(object, true, false, new Traverser() {
+					
+					@Override
+					public void process(SWGObject obj) {
+						if(obj instanceof CellObject)
+							obj.viewChildren(obj, true, false, cellTraverser);
+					}
+					
+				});
+				continue;
+			}
+			
+			addListener(listeners, speaker, object, position);
+		}
+		
+		return listeners;
+	}
+	
+	private void addListener(List<Client> listeners, SWGObject speaker, SWGObject object, Point3D position) {
+		
+		if(object == speaker)
+			return;
+		
+		Client client = object.getClient();
+		
+		if(client == null || client.getSession() == null)
+			return;
+		
+		if(object.getWorldPosition().getDistance2D(position) > CHAT_RANGE)
+			return;
+		
+		listeners.add(client);
 	}
 
 	@Override
@@ -336,26 +462,81 @@ public class ChatService implements INetworkDispatch {
 	public void playerStatusChange(String name, byte status) {
 		
 		String shortName = name.toLowerCase();
-		ConcurrentHashMap<IoSession, Client> clients = core.getActiveConnectionsMap();
+		Set<SWGObject> watchers = friendWatchers.get(shortName);
 		
-		for(Client client : clients.values()) {
-
-			if(client.getParent() == null)
-				continue;
+		if(watchers == null)
+			return;
+		
+		for(SWGObject watcher : watchers) {
 			
-			PlayerObject clientGhost = (PlayerObject) client.getParent().getSlottedObject("ghost");
+			Client client = watcher.getClient();
 			
-			if(clientGhost == null)
+			if(client == null || client.getSession() == null)
 				continue;
 			
-			if (clientGhost.getFriendList().contains(shortName)) {
-				// online/offline message
-				ChatFriendsListUpdate updateNotifyStatus = new ChatFriendsListUpdate(name, (byte) status);
-				client.getSession().write(updateNotifyStatus.serialize());
+			// online/offline message
+			ChatFriendsListUpdate updateNotifyStatus = new ChatFriendsListUpdate(name, (byte) status);
+			client.getSession().write(updateNotifyStatus.serialize());
+			
+		}
+	}
+	
+	public void playerOnline(SWGObject creature) {
+		
+		if(creature == null || creature.getCustomName() == null)
+			return;
+		
+		onlinePlayers.put(getFirstName(creature.getCustomName()), creature);
+		
+		PlayerObject ghost = (PlayerObject) creature.getSlottedObject("ghost");
+		
+		if(ghost == null)
+			return;
+		
+		for(String friend : ghost.getFriendList())
+			getFriendWatchers(friend).add(creature);
+	}
+	
+	public void playerOffline(SWGObject creature) {
+		
+		if(creature == null || creature.getCustomName() == null)
+			return;
+		
+		onlinePlayers.remove(getFirstName(creature.getCustomName()), creature);
+		
+		PlayerObject ghost = (PlayerObject) creature.getSlottedObject("ghost");
+		
+		if(ghost == null)
+			return;
+		
+		// addFriend and removeFriend keep the watcher sets in line with the friend list, so only those sets can hold the player
+		synchronized(ghost.getFriendList()) {
+			for(String friend : ghost.getFriendList()) {
+				Set<SWGObject> watchers = friendWatchers.get(friend);
 				
+				if(watchers != null)
+					watchers.remove(creature);
 			}
+		}
+	}
+	
+	private Set<SWGObject> getFriendWatchers(String friend) {
+		
+		Set<SWGObject> watchers = friendWatchers.get(friend);
+		
+		if(watchers == null) {
+			watchers = Collections.newSetFromMap(new ConcurrentHashMap<SWGObject, Boolean>());
+			Set<SWGObject> existing = friendWatchers.putIfAbsent(friend, watchers);
 			
+			if(existing != null)
+				watchers = existing;
 		}
+		
+		return watchers;
+	}
+	
+	private String getFirstName(String name) {
+		return name.split(" ")[0].toLowerCase();
 	}
 	
 	public void removeFriend(PlayerObject actor, String friendName) {
@@ -371,6 +552,11 @@ public class ChatService implements INetworkDispatch {
 			creature.getClient().getSession().write(removeMessage.serialize());
 			
 			actor.friendRemove(friendName);
+			
+			Set<SWGObject> watchers = friendWatchers.get(friendName);
+			
+			if(watchers != null)
+				watchers.remove(creature);
 		} else {
 			creature.sendSystemMessage(friendName + " is not a valid friend name.", (byte) 0);
 		}
@@ -412,6 +598,7 @@ public class ChatService implements INetworkDispatch {
 			}
 				
 			actor.friendAdd(friend);
+			getFriendWatchers(friend).add(creature);
 			creature.sendSystemMessage(friend + " is now your friend.", (byte) 0);
 			
 		} else {
@@ -473,11 +660,7 @@ public class ChatService implements INetworkDispatch {
 		if(client.getSession() == null)
 			return;
 		
-		Config config = new Config();
-		config.setFilePath("nge.cfg");
-		if (!(config.loadConfigFile())) {
-			config = DefaultConfig.getConfig();
-		}
+		Config config = core.getConfig();
 		
 		//System.out.println(config.getString("GALAXY_NAME"));
 		
@@ -492,11 +675,7 @@ public class ChatService implements INetworkDispatch {
 		if(client.getSession() == null)
 			return;
 		
-		Config config = new Config();
-		config.setFilePath("nge.cfg");
-		if (!(config.loadConfigFile())) {
-			config = DefaultConfig.getConfig();
-		}
+		Config config = core.getConfig();
 		
 		//System.out.println(config.getString("GALAXY_NAME"));
 		
@@ -511,12 +690,14 @@ public class ChatService implements INetworkDispatch {
 		Transaction txn = mailODB.getEnvironment().beginTransaction(null, null);
 		mailODB.put(mail, Integer.class, Mail.class, txn);
 		txn.commitSync();
+		getMailbox(mail.getRecieverId()).add(mail.getMailId());
 	}
 	
 	public void deletePersistentMessage(Mail mail) {
 		Transaction txn = mailODB.getEnvironment().beginTransaction(null, null);
 		mailODB.delete(new Integer(mail.getMailId()), Integer.class, Mail.class, txn);
 		txn.commitSync();
+		getMailbox(mail.getRecieverId()).remove(mail.getMailId());
 	}
 	
 	public void loadMailHeaders(Client client) {
@@ -526,15 +707,50 @@ public class ChatService implements INetworkDispatch {
 		if(obj == null || client.getSession() == null)
 			return;
 		
-		EntityCursor<Mail> cursor = mailODB.getCursor(Integer.class, Mail.class);
+		Set<Integer> mailbox = mailboxes.get(obj.getObjectID());
+		
+		if(mailbox == null || mailbox.isEmpty())
+			return;
+		
+		sendMailHeaderPage(client, obj, new ArrayList<Integer>(mailbox), 0);
+		
+	}
+	
+	/**
+	 * Sends one page of mail headers and schedules the next one, so a big mailbox doesn't hold up the zone in.
+	 */
+	private void sendMailHeaderPage(final Client client, final SWGObject obj, final List<Integer> mailIds, final int start) {
+		
+		if(client.getSession() == null || client.getParent() != obj)
+			return;
+		
+		int end = Math.min(start + MAIL_HEADER_PAGE_SIZE, mailIds.size());
 		
-		for(Mail mail : cursor) {
+		for(int i = start; i < end; i++) {
+			Mail mail = mailODB.get(mailIds.get(i), Integer.class, Mail.class);
 			
-			if(mail.getRecieverId() == obj.getObjectID())
+			if(mail != null && mail.getRecieverId() == obj.getObjectID())
 				sendPersistentMessageHeader(client, mail);
-			
 		}
 		
+		if(end >= mailIds.size())
+			return;
+		
+		final int next = end;
+		
+		scheduler.schedule(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					sendMailHeaderPage(client, obj, mailIds, next);
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+			
+		}, MAIL_HEADER_PAGE_DELAY, TimeUnit.MILLISECONDS);
+		
 	}
 
 	@Override
@@ -543,30 +759,22 @@ public class ChatService implements INetworkDispatch {
 	}
 	
 	public SWGObject getObjectByFirstName(String name) {
-		ConcurrentHashMap<IoSession, Client> clients = core.getActiveConnectionsMap();
 		
-		for(Client client : clients.values()) {
-			if(client.getParent() == null)
-				continue;
-			
-			String fullName = client.getParent().getCustomName();
-			String firstName = fullName.split(" ")[0];
-			
-			if(firstName.equalsIgnoreCase(name))
-				return client.getParent();
-		}
-		return null;
+		if(name == null)
+			return null;
+		
+		return onlinePlayers.get(getFirstName(name));
 	}
 	
 	public int generateMailId() {
-		Random rand = new Random();
 		
-		int id = rand.nextInt();
+		while(true) {
+			int id = (int) mailIdAllocator.nextId();
+			
+			if(!legacyMailIds.contains(id))
+				return id;
+		}
 		
-		if(mailODB.contains(new Integer(id), Integer.class, Mail.class))
-			return generateMailId();
-		else
-			return id;
 	}
 	
 	public Mail getMailById(int mailId) {
@@ -21,22 +21,24 @@
  ******************************************************************************/
 package services.collections;
 
+import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.TreeMap;
 
 import org.python.core.Py;
 import org.python.core.PyObject;
 
 import resources.common.FileUtilities;
+import resources.datatables.Datatable;
+import resources.datatables.DatatableCache;
 import resources.objects.creature.CreatureObject;
 import resources.objects.player.PlayerObject;
 
 import main.NGECore;
 
-import engine.clientdata.ClientFileManager;
-import engine.clientdata.visitors.DatatableVisitor;
 import engine.resources.scene.Point3D;
 import engine.resources.service.INetworkDispatch;
 import engine.resources.service.INetworkRemoteEvent;
@@ -45,18 +47,48 @@ public class CollectionService implements INetworkDispatch {
 	
 	private NGECore core;
 	
+	private static final int EXPLORATION_CELL_SIZE = 256;
+	
 	private Map<String, Map<String, ExplorationRegion>> explorationLocations = new TreeMap<String, Map<String, ExplorationRegion>>();
 	
+	// exploration regions by planet and grid cell, a region is in every cell its range overlaps
+	private Map<String, Map<Long, List<ExplorationRegion>>> explorationGrid = new HashMap<String, Map<Long, List<ExplorationRegion>>>();
+	
+	// slotName in collection.iff -> its row and the book, page and collection it's in, built on first use
+	private volatile Map<String, SlotRow> slotRows;
+	
+	private class SlotRow {
+		
+		public int row;
+		public String slotName;
+		public String bookName;
+		public String pageName;
+		public String collectionName;
+		public boolean titleOnComplete;
+		
+	}
+	
 	private class ExplorationRegion {
 		
+		public String badgeName;
 		public Point3D location;
 		public float range;
+		public int bit = -2;
 		
-		public ExplorationRegion(Point3D location, float range) {
+		public ExplorationRegion(String badgeName, Point3D location, float range) {
+			this.badgeName = badgeName;
 			this.location = location;
 			this.range = range;
 		}
 		
+		public int getBit() {
+			if (bit == -2) {
+				bit = getSlotBit(badgeName);
+			}
+			
+			return bit;
+		}
+		
 	}
 	
 	public CollectionService(NGECore core) {
@@ -99,317 +131,303 @@ public class CollectionService implements INetworkDispatch {
 	@SuppressWarnings("unused")
 	public boolean addCollection(CreatureObject creature, String collection) {
 		PlayerObject player = (PlayerObject) creature.getSlottedObject("ghost");
-		DatatableVisitor collectionTable;
+		Datatable collectionTable;
 		
 		if (player == null) {
 			return false;
 		}
 		
 		collection = collection.toLowerCase();
+		collectionTable = DatatableCache.getTable("datatables/collection/collection.iff");
+		
+		SlotRow slotRow = getSlotRow(collection);
+		
+		if (collectionTable == null || slotRow == null) {
+			return false;
+		}
 		
 		if (isComplete(creature, collection)) {
 			return false;
 		}
 		
 		try {
-			collectionTable = ClientFileManager.loadFile("datatables/collection/collection.iff", DatatableVisitor.class);
 			BitSet collections;
-			String bookName = "";
-			String pageName = "";
-			String collectionName = "";
-			boolean titleOnComplete = false;
+			int c = slotRow.row;
+			String slotName = slotRow.slotName;
+			String bookName = slotRow.bookName;
+			String pageName = slotRow.pageName;
+			String collectionName = slotRow.collectionName;
+			boolean titleOnComplete = slotRow.titleOnComplete;
 			
 			collections = BitSet.valueOf(player.getCollections());
 			
-			for (int c = 0; c < collectionTable.getRowCount(); c++) {
-				if (collectionTable.getObject(c, 0) != null) {
-					if (((String) collectionTable.getObject(c, 0)) != "") {
-						bookName = ((String) collectionTable.getObject(c, 0));
-						pageName = "";
-						collectionName = "";
-						titleOnComplete = false;
-					} else if (((String) collectionTable.getObject(c, 1)) != "") {
-						pageName = ((String) collectionTable.getObject(c, 1));
-						collectionName = "";
-						titleOnComplete = false;
-					} else if (((String) collectionTable.getObject(c, 2)) != "") {
-						collectionName = ((String) collectionTable.getObject(c, 2));
-						titleOnComplete = ((Boolean) collectionTable.getObject(c, 27));
-					} else if (((String) collectionTable.getObject(c, 3)) != "") {
-						String slotName = ((String) collectionTable.getObject(c, 3));
+			int bits = 0;
+			boolean noScriptOnModify = false;
+			boolean clearOnComplete = false;
+			boolean noMessage = true;
+			boolean grantIfPreReqMet = true;
+			boolean buddyCollection = false;
+			int numAltTitles = 0;
+			int beginSlotId = ((Integer) collectionTable.getObject(c, 4));
+			int endSlotId = ((Integer) collectionTable.getObject(c, 5));
+			int maxSlotValue = ((Integer) collectionTable.getObject(c, 6));
+			String music = ((String) collectionTable.getObject(c, 24));
+			boolean hidden = ((Boolean) collectionTable.getObject(c, 26));
+			boolean title = ((Boolean) collectionTable.getObject(c, 27));
+			boolean noReward = ((Boolean) collectionTable.getObject(c, 33));
+			boolean trackServerFirst = ((Boolean) collectionTable.getObject(c, 34));
+			
+			String[] categories = {
+					((String) collectionTable.getObject(c, 7)),
+					((String) collectionTable.getObject(c, 8)),
+					((String) collectionTable.getObject(c, 9)),
+					((String) collectionTable.getObject(c, 10)),
+					((String) collectionTable.getObject(c, 11)),
+					((String) collectionTable.getObject(c, 12)),
+					((String) collectionTable.getObject(c, 13)),
+					((String) collectionTable.getObject(c, 14)),
+					((String) collectionTable.getObject(c, 15)),
+					((String) collectionTable.getObject(c, 16)),
+					((String) collectionTable.getObject(c, 17))
+			};
+			
+			String[] prereqSlotNames = {
+					((String) collectionTable.getObject(c, 18)),
+					((String) collectionTable.getObject(c, 19)),
+					((String) collectionTable.getObject(c, 20)),
+					((String) collectionTable.getObject(c, 21)),
+					((String) collectionTable.getObject(c, 22))
+			};
+			
+			String[] alternateTitles = {
+					((String) collectionTable.getObject(c, 28)),
+					((String) collectionTable.getObject(c, 29)),
+					((String) collectionTable.getObject(c, 30)),
+					((String) collectionTable.getObject(c, 31)),
+					((String) collectionTable.getObject(c, 32))
+			};
+			
+			if (bookName == "") {
+				System.out.println(slotName + ", row " + c + ": slot " + slotName + " must be in a book");
+				throw new Exception();
+			}
+			
+			if (pageName == "") {
+				System.out.println(slotName + ", row " + c + ": slot " + slotName + " must be in a page");
+				throw new Exception();
+			}
+			
+			if (collectionName == "") {
+				System.out.println(slotName + ", row " + c + ": slot " + slotName + " must be in a collection");
+				throw new Exception();
+			}
+			
+			if (endSlotId != -1) {
+				if (beginSlotId >= endSlotId) {
+					System.out.println(slotName + ", row " + c + ": begin slot id " + beginSlotId + " must be < end slot id" + endSlotId);
+					throw new Exception();
+				}
+				
+				bits = (endSlotId - beginSlotId);
+				
+				if (bits > 32) {
+					System.out.println(slotName + ", row " + c + ": counter-type slot uses " + bits + " bits which exceeds the limit of 32 bits for counter-type slot");
+					throw new Exception();
+				}
+				
+				if (maxSlotValue > -1) {
+					if (!(maxSlotValue > 1)) {
+						System.out.println(slotName + ", row " + c + ": max slot value " + maxSlotValue + " must be > 1");
+						throw new Exception();
+					}
+					
+					BitSet bitValue = new BitSet(64);
+					bitValue.set(64-bits, 64);
+					
+					BitSet maxValue = new BitSet(64);
+					maxValue.set(64-maxSlotValue, 64);
+					
+					if (bitValue.toLongArray()[0] < maxValue.toLongArray()[0]) {
+						System.out.println(slotName + ", row " + c + ": counter-type slot uses " + bits + " bits, which can only hold a max value of " + bitValue.toLongArray()[0] + ", which is less than the specified max value of " + maxValue.toLongArray()[0]);
+						throw new Exception();
+					}
+				}
+			} else {
+				bits = 1;
+			}
+			
+			for (String prereqSlotName : prereqSlotNames) {
+				if (!prereqSlotName.equals("") && getCollection(creature, prereqSlotName) < 1) {
+					if (prereqSlotName.equals(slotName)) {
+						System.out.println(slotName + ", row " + c + ": slot " + slotName + " cannot have itself as a prereq");
+						throw new Exception();
+					}
+					
+					return false;
+				}
+			}
+			
+			for (String category : categories) {
+				if (category.equals("noScriptOnModify")) {
+					noScriptOnModify = true;
+				} else if (category.equals("clearOnComplete")) {
+					clearOnComplete = true;
+				} else if (category.equals("noMessage")) {
+					noMessage = true;
+				} else if (category.equals("grantIfPreReqMet")) {
+					grantIfPreReqMet = true;
+				} else if (category.equals("buddyCollection")) {
+					buddyCollection = true;
+				} else if (category.startsWith("numAltTitles")) {
+					numAltTitles = new Integer(category.split(":")[1]);
+				} else if (category.startsWith("kill")) {
+					continue;
+				} else if (category.contains("showFullInformationToOthers")) {
+					continue;
+				} else if (category.contains("collection")) {
+					continue;
+				} else if (category.startsWith("updateOnCount")) {
+					continue;
+				} else if (category.equals("rewardOnUpdate")) {
+					continue;
+				} else if (category.equals("rewardOnComplete")) {
+					continue;
+				} else if (category.contains("relic")) {
+					break;
+				} else if (!category.equals("")){
+					continue;
+				}
+			}
+			
+			if (title) {
+				player.getTitleList().add(slotName);
+				
+				if (alternateTitles.length > 0) {
+					for (String altTitle : alternateTitles) {
+						if (altTitle != "") {
+							player.getTitleList().add(altTitle);
+						}
+					}
+				}
+			} else {
+				if (numAltTitles > 0 || alternateTitles.length > 0) {
+					System.out.println(slotName + ": slot " + slotName + " cannot have any alternative titles unless it is defined as \"titleable\"");
+				}
+			}
+			
+			if (bits > 1) {
+				int nextBit = collections.get(beginSlotId, (endSlotId + 1)).previousClearBit(endSlotId);
+				
+				if (nextBit == -1) {
+					return false;
+				}
+				
+				collections.set((beginSlotId + nextBit));
+			} else {
+				collections.set(beginSlotId);
+			}
+			
+			player.setCollections(collections.toByteArray());
+			
+			if (!hidden && !noMessage) {
+				creature.sendSystemMessage("collection_n", collection, 0, 0);
+			}
+			
+			if (!music.equals("")) {
+				creature.playMusic(music);
+			}
+			
+			if (!noScriptOnModify) {
+				if (FileUtilities.doesFileExist("scripts/collections/" + slotName + ".py")) {
+					PyObject method = core.scriptService.getMethod("scripts/collections/", slotName, "modify");
+					
+					if (method != null && method.isCallable()) {
+						method.__call__(Py.java2py(core), Py.java2py(creature), Py.java2py(getCollection(creature, slotName)));
+					}
+				}
+				
+				if (FileUtilities.doesFileExist("scripts/collections/" + collectionName + ".py")) {
+					PyObject method = core.scriptService.getMethod("scripts/collections/", collectionName, "modify");
+					
+					if (method != null && method.isCallable()) {
+						method.__call__(Py.java2py(core), Py.java2py(creature), Py.java2py(getCollection(creature, collectionName)));
+					}
+				}
+			}
+			
+			if (isComplete(creature, slotName)) {
+				if (FileUtilities.doesFileExist("scripts/collections/" + slotName + ".py")) {
+					PyObject method = core.scriptService.getMethod("scripts/collections/", slotName, "complete");
+					
+					if (method != null && method.isCallable()) {
+						method.__call__(Py.java2py(core), Py.java2py(creature), Py.java2py(getCollection(creature, collectionName)));
+					}
+				}
+			}
+			
+			if (!isComplete(creature, collectionName)) {
+				if (!noReward) {
+					if (FileUtilities.doesFileExist("scripts/collections/" + collectionName + ".py")) {
+						PyObject method = core.scriptService.getMethod("scripts/collections/", collectionName, "complete");
 						
-						if (slotName.equals(collection)) {
-							int bits = 0;
-							boolean noScriptOnModify = false;
-							boolean clearOnComplete = false;
-							boolean noMessage = true;
-							boolean grantIfPreReqMet = true;
-							boolean buddyCollection = false;
-							int numAltTitles = 0;
-							int beginSlotId = ((Integer) collectionTable.getObject(c, 4));
-							int endSlotId = ((Integer) collectionTable.getObject(c, 5));
-							int maxSlotValue = ((Integer) collectionTable.getObject(c, 6));
-							String music = ((String) collectionTable.getObject(c, 24));
-							boolean hidden = ((Boolean) collectionTable.getObject(c, 26));
-							boolean title = ((Boolean) collectionTable.getObject(c, 27));
-							boolean noReward = ((Boolean) collectionTable.getObject(c, 33));
-							boolean trackServerFirst = ((Boolean) collectionTable.getObject(c, 34));
-							
-							String[] categories = {
-									((String) collectionTable.getObject(c, 7)),
-									((String) collectionTable.getObject(c, 8)),
-									((String) collectionTable.getObject(c, 9)),
-									((String) collectionTable.getObject(c, 10)),
-									((String) collectionTable.getObject(c, 11)),
-									((String) collectionTable.getObject(c, 12)),
-									((String) collectionTable.getObject(c, 13)),
-									((String) collectionTable.getObject(c, 14)),
-									((String) collectionTable.getObject(c, 15)),
-									((String) collectionTable.getObject(c, 16)),
-									((String) collectionTable.getObject(c, 17))
-							};
-							
-							String[] prereqSlotNames = {
-									((String) collectionTable.getObject(c, 18)),
-									((String) collectionTable.getObject(c, 19)),
-									((String) collectionTable.getObject(c, 20)),
-									((String) collectionTable.getObject(c, 21)),
-									((String) collectionTable.getObject(c, 22))
-							};
-							
-							String[] alternateTitles = {
-									((String) collectionTable.getObject(c, 28)),
-									((String) collectionTable.getObject(c, 29)),
-									((String) collectionTable.getObject(c, 30)),
-									((String) collectionTable.getObject(c, 31)),
-									((String) collectionTable.getObject(c, 32))
-							};
-							
-							if (bookName == "") {
-								System.out.println(slotName + ", row " + c + ": slot " + slotName + " must be in a book");
-								throw new Exception();
-							}
-							
-							if (pageName == "") {
-								System.out.println(slotName + ", row " + c + ": slot " + slotName + " must be in a page");
-								throw new Exception();
-							}
-							
-							if (collectionName == "") {
-								System.out.println(slotName + ", row " + c + ": slot " + slotName + " must be in a collection");
-								throw new Exception();
-							}
-							
-							if (endSlotId != -1) {
-								if (beginSlotId >= endSlotId) {
-									System.out.println(slotName + ", row " + c + ": begin slot id " + beginSlotId + " must be < end slot id" + endSlotId);
-									throw new Exception();
-								}
-								
-								bits = (endSlotId - beginSlotId);
-								
-								if (bits > 32) {
-									System.out.println(slotName + ", row " + c + ": counter-type slot uses " + bits + " bits which exceeds the limit of 32 bits for counter-type slot");
-									throw new Exception();
-								}
-								
-								if (maxSlotValue > -1) {
-									if (!(maxSlotValue > 1)) {
-										System.out.println(slotName + ", row " + c + ": max slot value " + maxSlotValue + " must be > 1");
-										throw new Exception();
-									}
-									
-									BitSet bitValue = new BitSet(64);
-									bitValue.set(64-bits, 64);
-									
-									BitSet maxValue = new BitSet(64);
-									maxValue.set(64-maxSlotValue, 64);
-									
-									if (bitValue.toLongArray()[0] < maxValue.toLongArray()[0]) {
-										System.out.println(slotName + ", row " + c + ": counter-type slot uses " + bits + " bits, which can only hold a max value of " + bitValue.toLongArray()[0] + ", which is less than the specified max value of " + maxValue.toLongArray()[0]);
-										throw new Exception();
-									}
-								}
-							} else {
-								bits = 1;
-							}
-							
-							for (String prereqSlotName : prereqSlotNames) {
-								if (!prereqSlotName.equals("") && getCollection(creature, prereqSlotName) < 1) {
-									if (prereqSlotName.equals(slotName)) {
-										System.out.println(slotName + ", row " + c + ": slot " + slotName + " cannot have itself as a prereq");
-										throw new Exception();
-									}
-									
-									return false;
-								}
-							}
-							
-							for (String category : categories) {
-								if (category.equals("noScriptOnModify")) {
-									noScriptOnModify = true;
-								} else if (category.equals("clearOnComplete")) {
-									clearOnComplete = true;
-								} else if (category.equals("noMessage")) {
-									noMessage = true;
-								} else if (category.equals("grantIfPreReqMet")) {
-									grantIfPreReqMet = true;
-								} else if (category.equals("buddyCollection")) {
-									buddyCollection = true;
-								} else if (category.startsWith("numAltTitles")) {
-									numAltTitles = new Integer(category.split(":")[1]);
-								} else if (category.startsWith("kill")) {
-									continue;
-								} else if (category.contains("showFullInformationToOthers")) {
-									continue;
-								} else if (category.contains("collection")) {
-									continue;
-								} else if (category.startsWith("updateOnCount")) {
-									continue;
-								} else if (category.equals("rewardOnUpdate")) {
-									continue;
-								} else if (category.equals("rewardOnComplete")) {
-									continue;
-								} else if (category.contains("relic")) {
-									break;
-								} else if (!category.equals("")){
-									continue;
-								}
-							}
-							
-							if (title) {
-								player.getTitleList().add(slotName);
-								
-								if (alternateTitles.length > 0) {
-									for (String altTitle : alternateTitles) {
-										if (altTitle != "") {
-											player.getTitleList().add(altTitle);
-										}
-									}
-								}
-							} else {
-								if (numAltTitles > 0 || alternateTitles.length > 0) {
-									System.out.println(slotName + ": slot " + slotName + " cannot have any alternative titles unless it is defined as \"titleable\"");
-								}
-							}
-							
-							if (bits > 1) {
-								int nextBit = collections.get(beginSlotId, (endSlotId + 1)).previousClearBit(endSlotId);
-								
-								if (nextBit == -1) {
-									return false;
-								}
-								
-								collections.set((beginSlotId + nextBit));
-							} else {
-								collections.set(beginSlotId);
-							}
-							
-							player.setCollections(collections.toByteArray());
-							
-							if (!hidden && !noMessage) {
-								creature.sendSystemMessage("collection_n", collection, 0, 0);
-							}
-							
-							if (!music.equals("")) {
-								creature.playMusic(music);
-							}
-							
-							if (!noScriptOnModify) {
-								if (FileUtilities.doesFileExist("scripts/collections/" + slotName + ".py")) {
-									PyObject method = core.scriptService.getMethod("scripts/collections/", slotName, "modify");
-									
-									if (method != null && method.isCallable()) {
-										method.__call__(Py.java2py(core), Py.java2py(creature), Py.java2py(getCollection(creature, slotName)));
-									}
-								}
-								
-								if (FileUtilities.doesFileExist("scripts/collections/" + collectionName + ".py")) {
-									PyObject method = core.scriptService.getMethod("scripts/collections/", collectionName, "modify");
-									
-									if (method != null && method.isCallable()) {
-										method.__call__(Py.java2py(core), Py.java2py(creature), Py.java2py(getCollection(creature, collectionName)));
-									}
-								}
-							}
-							
-							if (isComplete(creature, slotName)) {
-								if (FileUtilities.doesFileExist("scripts/collections/" + slotName + ".py")) {
-									PyObject method = core.scriptService.getMethod("scripts/collections/", slotName, "complete");
-									
-									if (method != null && method.isCallable()) {
-										method.__call__(Py.java2py(core), Py.java2py(creature), Py.java2py(getCollection(creature, collectionName)));
-									}
-								}
-							}
-							
-							if (!isComplete(creature, collectionName)) {
-								if (!noReward) {
-									if (FileUtilities.doesFileExist("scripts/collections/" + collectionName + ".py")) {
-										PyObject method = core.scriptService.getMethod("scripts/collections/", collectionName, "complete");
-										
-										if (method != null && method.isCallable()) {
-											method.__call__(Py.java2py(core), Py.java2py(creature), Py.java2py(getCollection(creature, collectionName)));
-										}
-									}
-								}
-								
-								if (titleOnComplete) {
-									player.getTitleList().add(collectionName);
-								}
-								
-								if (trackServerFirst) {
-									if (core.guildService.getGuildObject().addServerFirst(collectionName, new ServerFirst(creature.getCustomName(), System.currentTimeMillis()))) {
-										addCollection(creature, "bdg_server_first_01");
-									}
-								}
-								
-								if (clearOnComplete) {
-									if (endSlotId > -1) {
-										if (collections.get(beginSlotId, (endSlotId + 1)).cardinality() == bits) {
-											clearCollection(creature, collectionName);
-										}
-									}
-								}
-								
-								if (bookName.equals("badge_book")) {
-									int badges = getCollection(creature, "badge_book");
-									
-									switch (badges) {
-										case 5:
-											addCollection(creature, "count_5");
-										case 10:
-											addCollection(creature, "count_10");
-										default:
-											if (((badges % 25) == 0) && !(badges > 500)) {
-												addCollection(creature, "count_" + badges);
-											}
-									}
-								}
-								
-								if (pageName.equals("bdg_explore")) {
-									int badges = getCollection(creature, "bdg_explore");
-									
-									switch (badges) {
-										case 10:
-											addCollection(creature, "bdg_exp_10_badges");
-										case 20:
-											addCollection(creature, "bdg_exp_20_badges");
-										case 30:
-											addCollection(creature, "bdg_exp_30_badges");
-										case 40:
-											addCollection(creature, "bdg_exp_40_badges");
-										case 45:
-											addCollection(creature, "bdg_exp_45_badges");
-									}
-								}
-							}
-							
-							return true;
+						if (method != null && method.isCallable()) {
+							method.__call__(Py.java2py(core), Py.java2py(creature), Py.java2py(getCollection(creature, collectionName)));
 						}
 					}
 				}
+				
+				if (titleOnComplete) {
+					player.getTitleList().add(collectionName);
+				}
+				
+				if (trackServerFirst) {
+					if (core.guildService.getGuildObject().addServerFirst(collectionName, new ServerFirst(creature.getCustomName(), System.currentTimeMillis()))) {
+						addCollection(creature, "bdg_server_first_01");
+					}
+				}
+				
+				if (clearOnComplete) {
+					if (endSlotId > -1) {
+						if (collections.get(beginSlotId, (endSlotId + 1)).cardinality() == bits) {
+							clearCollection(creature, collectionName);
+						}
+					}
+				}
+				
+				if (bookName.equals("badge_book")) {
+					int badges = getCollection(creature, "badge_book");
+					
+					switch (badges) {
+						case 5:
+							addCollection(creature, "count_5");
+						case 10:
+							addCollection(creature, "count_10");
+						default:
+							if (((badges % 25) == 0) && !(badges > 500)) {
+								addCollection(creature, "count_" + badges);
+							}
+					}
+				}
+				
+				if (pageName.equals("bdg_explore")) {
+					int badges = getCollection(creature, "bdg_explore");
+					
+					switch (badges) {
+						case 10:
+							addCollection(creature, "bdg_exp_10_badges");
+						case 20:
+							addCollection(creature, "bdg_exp_20_badges");
+						case 30:
+							addCollection(creature, "bdg_exp_30_badges");
+						case 40:
+							addCollection(creature, "bdg_exp_40_badges");
+						case 45:
+							addCollection(creature, "bdg_exp_45_badges");
+					}
+				}
 			}
+			
+			return true;
 		}  catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -425,7 +443,7 @@ public class CollectionService implements INetworkDispatch {
 	 */
 	public boolean isComplete(CreatureObject creature, String collection) {
 		PlayerObject player = (PlayerObject) creature.getSlottedObject("ghost");
-		DatatableVisitor collectionTable;
+		Datatable collectionTable;
 		
 		if (player == null) {
 			return false;
@@ -434,68 +452,39 @@ public class CollectionService implements INetworkDispatch {
 		collection = collection.toLowerCase();
 		
 		try {
-			collectionTable = ClientFileManager.loadFile("datatables/collection/collection.iff", DatatableVisitor.class);
+			collectionTable = DatatableCache.getTable("datatables/collection/collection.iff");
+			SlotRow slotRow = getSlotRow(collection);
+			
+			if (slotRow == null) {
+				return false;
+			}
+			
 			BitSet collections;
-			String bookName = "";
-			String pageName = "";
-			String collectionName = "";
-			boolean found = false;
-			boolean collectionComplete = false;
+			int c = slotRow.row;
+			String slotName = slotRow.slotName;
+			String bookName = slotRow.bookName;
+			String pageName = slotRow.pageName;
+			String collectionName = slotRow.collectionName;
+			int beginSlotId = ((Integer) collectionTable.getObject(c, 4));
 			
 			collections = BitSet.valueOf(player.getCollections());
 			
-			for (int c = 0; c < collectionTable.getRowCount(); c++) {
-				if (collectionTable.getObject(c, 0) != null) {
-					if (((String) collectionTable.getObject(c, 0)) != "") {
-						bookName = ((String) collectionTable.getObject(c, 0));
-						pageName = "";
-						collectionName = "";
-					} else if (((String) collectionTable.getObject(c, 1)) != "") {
-						pageName = ((String) collectionTable.getObject(c, 1));
-						collectionName = "";
-					} else if (((String) collectionTable.getObject(c, 2)) != "") {
-						collectionName = ((String) collectionTable.getObject(c, 2));
-					} else if (((String) collectionTable.getObject(c, 3)) != "") {
-						String slotName = ((String) collectionTable.getObject(c, 3));
-						
-						if (slotName.equals(collection)) {
-							int beginSlotId = ((Integer) collectionTable.getObject(c, 4));
-							
-							if (bookName == "") {
-								System.out.println(slotName + ", row " + c + ": slot " + slotName + " must be in a book");
-								throw new Exception();
-							}
-							
-							if (pageName == "") {
-								System.out.println(slotName + ", row " + c + ": slot " + slotName + " must be in a page");
-								throw new Exception();
-							}
-							
-							if (collectionName == "") {
-								System.out.println(slotName + ", row " + c + ": slot " + slotName + " must be in a collection");
-								throw new Exception();
-							}
-							
-							if (collection == bookName) {
-								System.out.println("Checking if a book is complete is unsupported at this time.");
-								throw new Exception();
-							} else if (collection == pageName) {
-								System.out.println("Checking if a page is complete is unsupported at this time.");
-								throw new Exception();
-							} else if (collection == collectionName) {
-								collectionComplete = collections.get(beginSlotId);
-								found = true;
-							} else if (collection == slotName) {
-								return collections.get(beginSlotId);
-							}
-							
-							if (found && collectionName != collection) {
-								return collectionComplete;
-							}
-						}
-					}
-				}
+			if (bookName == "") {
+				System.out.println(slotName + ", row " + c + ": slot " + slotName + " must be in a book");
+				throw new Exception();
+			}
+			
+			if (pageName == "") {
+				System.out.println(slotName + ", row " + c + ": slot " + slotName + " must be in a page");
+				throw new Exception();
 			}
+			
+			if (collectionName == "") {
+				System.out.println(slotName + ", row " + c + ": slot " + slotName + " must be in a collection");
+				throw new Exception();
+			}
+			
+			return collections.get(beginSlotId);
 		}  catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -514,7 +503,7 @@ public class CollectionService implements INetworkDispatch {
 	 */
 	public int getCollection(CreatureObject creature, String collection) {
 		PlayerObject player = (PlayerObject) creature.getSlottedObject("ghost");
-		DatatableVisitor collectionTable;
+		Datatable collectionTable;
 		
 		if (player == null) {
 			return 0;
@@ -523,7 +512,7 @@ public class CollectionService implements INetworkDispatch {
 		collection = collection.toLowerCase();
 		
 		try {
-			collectionTable = ClientFileManager.loadFile("datatables/collection/collection.iff", DatatableVisitor.class);
+			collectionTable = DatatableCache.getTable("datatables/collection/collection.iff");
 			BitSet collections;
 			String bookName = "";
 			String pageName = "";
@@ -532,6 +521,13 @@ public class CollectionService implements INetworkDispatch {
 			
 			collections = BitSet.valueOf(player.getCollections());
 			
+			SlotRow slotRow = getSlotRow(collection);
+			
+			// a slot is found through the slot index, collections, pages and books add up their slots row by row
+			if (slotRow != null) {
+				return Math.max(0, getSlotCount(collections, collectionTable, slotRow.row));
+			}
+			
 			for (int c = 0; c < collectionTable.getRowCount(); c++) {
 				if (collectionTable.getObject(c, 0) != null) {
 					if (((String) collectionTable.getObject(c, 0)) != "") {
@@ -579,40 +575,10 @@ public class CollectionService implements INetworkDispatch {
 							
 							continue;
 						} else if (collection == slotName) {
-							if (endSlotId != -1) {
-								if (beginSlotId >= endSlotId) {
-									System.out.println(slotName + ", row " + c + ": begin slot id " + beginSlotId + " must be < end slot id" + endSlotId);
-									throw new Exception();
-								}
-								
-								bits = (endSlotId - beginSlotId);
-								
-								if (bits > 32) {
-									System.out.println(slotName + ", row " + c + ": counter-type slot uses " + bits + " bits which exceeds the limit of 32 bits for counter-type slot");
-									throw new Exception();
-								}
-								
-								if (maxSlotValue > -1) {
-									if (!(maxSlotValue > 1)) {
-										System.out.println(slotName + ", row " + c + ": max slot value " + maxSlotValue + " must be > 1");
-										throw new Exception();
-									}
-									
-									BitSet bitValue = new BitSet(64);
-									bitValue.set(64-bits, 64);
-									
-									BitSet maxValue = new BitSet(64);
-									maxValue.set(64-maxSlotValue, 64);
-									
-									if (bitValue.toLongArray()[0] < maxValue.toLongArray()[0]) {
-										System.out.println(slotName + ", row " + c + ": counter-type slot uses " + bits + " bits, which can only hold a max value of " + bitValue.toLongArray()[0] + ", which is less than the specified max value of " + maxValue.toLongArray()[0]);
-										throw new Exception();
-									}
-									
-									return collections.get(beginSlotId, (endSlotId + 1)).cardinality();
-								}
-							} else {
-								return ((collections.get(beginSlotId)) ? 1 : 0);
+							int count = getSlotCount(collections, collectionTable, c);
+							
+							if (count > -1) {
+								return count;
 							}
 						}
 						
@@ -629,6 +595,55 @@ public class CollectionService implements INetworkDispatch {
 		return 0;
 	}
 	
+	/*
+	 * @return The number of completed bits in the slot of the given row,
+	 * or -1 if it's a counter-type slot without a max slot value.
+	 */
+	private int getSlotCount(BitSet collections, Datatable collectionTable, int c) throws Exception {
+		String slotName = ((String) collectionTable.getObject(c, 3));
+		int beginSlotId = ((Integer) collectionTable.getObject(c, 4));
+		int endSlotId = ((Integer) collectionTable.getObject(c, 5));
+		int maxSlotValue = ((Integer) collectionTable.getObject(c, 6));
+		
+		if (endSlotId != -1) {
+			if (beginSlotId >= endSlotId) {
+				System.out.println(slotName + ", row " + c + ": begin slot id " + beginSlotId + " must be < end slot id" + endSlotId);
+				throw new Exception();
+			}
+			
+			int bits = (endSlotId - beginSlotId);
+			
+			if (bits > 32) {
+				System.out.println(slotName + ", row " + c + ": counter-type slot uses " + bits + " bits which exceeds the limit of 32 bits for counter-type slot");
+				throw new Exception();
+			}
+			
+			if (maxSlotValue > -1) {
+				if (!(maxSlotValue > 1)) {
+					System.out.println(slotName + ", row " + c + ": max slot value " + maxSlotValue + " must be > 1");
+					throw new Exception();
+				}
+				
+				BitSet bitValue = new BitSet(64);
+				bitValue.set(64-bits, 64);
+				
+				BitSet maxValue = new BitSet(64);
+				maxValue.set(64-maxSlotValue, 64);
+				
+				if (bitValue.toLongArray()[0] < maxValue.toLongArray()[0]) {
+					System.out.println(slotName + ", row " + c + ": counter-type slot uses " + bits + " bits, which can only hold a max value of " + bitValue.toLongArray()[0] + ", which is less than the specified max value of " + maxValue.toLongArray()[0]);
+					throw new Exception();
+				}
+				
+				return collections.get(beginSlotId, (endSlotId + 1)).cardinality();
+			}
+		} else {
+			return ((collections.get(beginSlotId)) ? 1 : 0);
+		}
+		
+		return -1;
+	}
+	
 	/*
 	 * Registers an exploration badge location.
 	 * 
@@ -643,7 +658,139 @@ public class CollectionService implements INetworkDispatch {
 			explorationLocations.put(planet, new TreeMap<String, ExplorationRegion>());
 		}
 		
-		explorationLocations.get(planet).put(badgeName, new ExplorationRegion(new Point3D(x, 0, z), range));
+		ExplorationRegion region = new ExplorationRegion(badgeName, new Point3D(x, 0, z), range);
+		ExplorationRegion oldRegion = explorationLocations.get(planet).put(badgeName, region);
+		
+		if (!explorationGrid.containsKey(planet)) {
+			explorationGrid.put(planet, new HashMap<Long, List<ExplorationRegion>>());
+		}
+		
+		Map<Long, List<ExplorationRegion>> grid = explorationGrid.get(planet);
+		
+		if (oldRegion != null) {
+			for (long cell : getExplorationCells(oldRegion)) {
+				if (grid.containsKey(cell)) {
+					grid.get(cell).remove(oldRegion);
+				}
+			}
+		}
+		
+		for (long cell : getExplorationCells(region)) {
+			if (!grid.containsKey(cell)) {
+				grid.put(cell, new ArrayList<ExplorationRegion>());
+			}
+			
+			grid.get(cell).add(region);
+		}
+	}
+	
+	private List<Long> getExplorationCells(ExplorationRegion region) {
+		List<Long> cells = new ArrayList<Long>();
+		int minX = getExplorationCell(region.location.x - region.range);
+		int maxX = getExplorationCell(region.location.x + region.range);
+		int minZ = getExplorationCell(region.location.z - region.range);
+		int maxZ = getExplorationCell(region.location.z + region.range);
+		
+		for (int cellX = minX; cellX <= maxX; cellX++) {
+			for (int cellZ = minZ; cellZ <= maxZ; cellZ++) {
+				cells.add(getExplorationCellKey(cellX, cellZ));
+			}
+		}
+		
+		return cells;
+	}
+	
+	private int getExplorationCell(float coordinate) {
+		return (int) Math.floor(coordinate / EXPLORATION_CELL_SIZE);
+	}
+	
+	private long getExplorationCellKey(int cellX, int cellZ) {
+		return (((long) cellX) << 32) | (cellZ & 0xFFFFFFFFL);
+	}
+	
+	/*
+	 * Returns the row of a slot, the first time this is used the slot
+	 * index is built from collection.iff.
+	 * 
+	 * @param slotName slotName from collection.iff.
+	 * 
+	 * @return The row with the book, page and collection it's in, or null if there's no such slot.
+	 */
+	private SlotRow getSlotRow(String slotName) {
+		Map<String, SlotRow> slotRows = this.slotRows;
+		
+		if (slotRows == null) {
+			synchronized(this) {
+				slotRows = this.slotRows;
+				
+				if (slotRows == null) {
+					slotRows = new HashMap<String, SlotRow>();
+					
+					try {
+						Datatable collectionTable = DatatableCache.getTable("datatables/collection/collection.iff");
+						String bookName = "";
+						String pageName = "";
+						String collectionName = "";
+						boolean titleOnComplete = false;
+						
+						for (int c = 0; c < collectionTable.getRowCount(); c++) {
+							if (collectionTable.getObject(c, 0) == null) {
+								continue;
+							}
+							
+							if (!((String) collectionTable.getObject(c, 0)).equals("")) {
+								bookName = ((String) collectionTable.getObject(c, 0));
+								pageName = "";
+								collectionName = "";
+								titleOnComplete = false;
+							} else if (!((String) collectionTable.getObject(c, 1)).equals("")) {
+								pageName = ((String) collectionTable.getObject(c, 1));
+								collectionName = "";
+								titleOnComplete = false;
+							} else if (!((String) collectionTable.getObject(c, 2)).equals("")) {
+								collectionName = ((String) collectionTable.getObject(c, 2));
+								titleOnComplete = ((Boolean) collectionTable.getObject(c, 27));
+							} else if (!((String) collectionTable.getObject(c, 3)).equals("")) {
+								String slot = ((String) collectionTable.getObject(c, 3)).toLowerCase();
+								
+								// the table walk used to stop at the first row of a slot
+								if (!slotRows.containsKey(slot)) {
+									SlotRow slotRow = new SlotRow();
+									slotRow.row = c;
+									slotRow.slotName = ((String) collectionTable.getObject(c, 3));
+									slotRow.bookName = bookName;
+									slotRow.pageName = pageName;
+									slotRow.collectionName = collectionName;
+									slotRow.titleOnComplete = titleOnComplete;
+									slotRows.put(slot, slotRow);
+								}
+							}
+						}
+					} catch (Exception e) {
+						e.printStackTrace();
+					}
+					
+					this.slotRows = slotRows;
+				}
+			}
+		}
+		
+		return slotRows.get(slotName.toLowerCase());
+	}
+	
+	/*
+	 * @param slotName slotName from collection.iff.
+	 * 
+	 * @return The beginSlotId of the slot, or -1 if there's no such slot.
+	 */
+	public int getSlotBit(String slotName) {
+		SlotRow slotRow = getSlotRow(slotName);
+		
+		if (slotRow == null) {
+			return -1;
+		}
+		
+		return ((Integer) DatatableCache.getTable("datatables/collection/collection.iff").getObject(slotRow.row, 4));
 	}
 	
 	/*
@@ -654,13 +801,45 @@ public class CollectionService implements INetworkDispatch {
 	 */
 	public void checkExplorationRegions(CreatureObject creature) {
 		String planet = creature.getPlanet().getName();
+		Map<Long, List<ExplorationRegion>> grid = explorationGrid.get(planet);
+		
+		if (grid == null) {
+			return;
+		}
+		
+		Point3D position = creature.getWorldPosition();
+		List<ExplorationRegion> regions = grid.get(getExplorationCellKey(getExplorationCell(position.x), getExplorationCell(position.z)));
+		
+		if (regions == null) {
+			return;
+		}
 		
-		if (explorationLocations.containsKey(planet)) {
-			for (Entry<String, ExplorationRegion> badge : explorationLocations.get(planet).entrySet()) {
-				if (creature.inRange(badge.getValue().location, badge.getValue().range)) {
-					if (!isComplete(creature, badge.getKey())) {
-						addCollection(creature, badge.getKey());
+		BitSet collections = null;
+		
+		for (ExplorationRegion region : regions) {
+			if (creature.inRange(region.location, region.range)) {
+				int bit = region.getBit();
+				
+				if (bit < 0) {
+					if (!isComplete(creature, region.badgeName)) {
+						addCollection(creature, region.badgeName);
+					}
+					
+					continue;
+				}
+				
+				if (collections == null) {
+					PlayerObject player = (PlayerObject) creature.getSlottedObject("ghost");
+					
+					if (player == null) {
+						return;
 					}
+					
+					collections = BitSet.valueOf(player.getCollections());
+				}
+				
+				if (!collections.get(bit)) {
+					addCollection(creature, region.badgeName);
 				}
 			}
 		}
@@ -676,7 +855,7 @@ public class CollectionService implements INetworkDispatch {
 	 */
 	public boolean clearCollection(CreatureObject creature, String collection) {
 		PlayerObject player = (PlayerObject) creature.getSlottedObject("ghost");
-		DatatableVisitor collectionTable;
+		Datatable collectionTable;
 		
 		if (player == null) {
 			return false;
@@ -685,7 +864,7 @@ public class CollectionService implements INetworkDispatch {
 		collection = collection.toLowerCase();
 		
 		try {
-			collectionTable = ClientFileManager.loadFile("datatables/collection/collection.iff", DatatableVisitor.class);
+			collectionTable = DatatableCache.getTable("datatables/collection/collection.iff");
 			BitSet collections;
 			String bookName = "";
 			String pageName = "";
@@ -694,6 +873,23 @@ public class CollectionService implements INetworkDispatch {
 			
 			collections = BitSet.valueOf(player.getCollections());
 			
+			SlotRow slotRow = getSlotRow(collection);
+			
+			// a slot is found through the slot index, collections, pages and books clear their slots row by row
+			if (slotRow != null) {
+				int beginSlotId = ((Integer) collectionTable.getObject(slotRow.row, 4));
+				int endSlotId = ((Integer) collectionTable.getObject(slotRow.row, 5));
+				
+				collections.clear(beginSlotId, (endSlotId + 1));
+				
+				if (player.getTitleList().contains(slotRow.slotName)) {
+					player.getTitleList().remove(slotRow.slotName);
+				}
+				
+				player.setCollections(collections.toByteArray());
+				return true;
+			}
+			
 			for (int c = 0; c < collectionTable.getRowCount(); c++) {
 				if (collectionTable.getObject(c, 0) != null) {
 					if (((String) collectionTable.getObject(c, 0)) != "") {
@@ -767,14 +963,14 @@ public class CollectionService implements INetworkDispatch {
 	 */
 	public boolean clearCollections(CreatureObject creature) {
 		PlayerObject player = (PlayerObject) creature.getSlottedObject("ghost");
-		DatatableVisitor collectionTable;
+		Datatable collectionTable;
 		
 		if (player == null) {
 			return false;
 		}
 		
 		try {
-			collectionTable = ClientFileManager.loadFile("datatables/collection/collection.iff", DatatableVisitor.class);
+			collectionTable = DatatableCache.getTable("datatables/collection/collection.iff");
 			BitSet collections;
 			String bookName = "";
 			String pageName = "";
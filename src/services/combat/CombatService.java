@@ -21,10 +21,13 @@
  ******************************************************************************/
 package services.combat;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -54,9 +57,11 @@ import services.sui.SUIService.MessageBoxType;
 import services.sui.SUIWindow;
 import services.sui.SUIWindow.SUICallback;
 import services.sui.SUIWindow.Trigger;
+import services.tick.GameTimer;
 import main.NGECore;
 import engine.resources.common.CRC;
 import engine.resources.objects.SWGObject;
+import engine.resources.scene.Planet;
 import engine.resources.scene.Point3D;
 import engine.resources.service.INetworkDispatch;
 import engine.resources.service.INetworkRemoteEvent;
@@ -65,6 +70,8 @@ public class CombatService implements INetworkDispatch {
 	
 	private NGECore core;
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    private final ScheduledExecutorService combatExecutor = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
+    private final Set<DelayedAttack> delayedAttacks = Collections.newSetFromMap(new ConcurrentHashMap<DelayedAttack, Boolean>());
     private CombatEvents events = new CombatEvents();
 
 	public CombatService(NGECore core) {
@@ -79,8 +86,7 @@ public class CombatService implements INetworkDispatch {
 
 	@Override
 	public void shutdown() {
-		// TODO Auto-generated method stub
-		
+		combatExecutor.shutdownNow();
 	}
 	
 	public void doCombat(final CreatureObject attacker, final TangibleObject target, final WeaponObject weapon, final CombatCommand command, final int actionCounter) {
@@ -107,59 +113,23 @@ public class CombatService implements INetworkDispatch {
 		
 		if(command.getDelayAttackParticle().length() > 0 || command.getInitialAttackDelay() > -1) {
 			
+			long interval = (long) (command.getDelayAttackInterval() * 1000);
+			
 			if(command.getInitialAttackDelay() > 0) {
 				
 				if(command.getDelayAttackParticle().length() > 0)
-					target.notifyObservers(new PlayClientEffectLocMessage(command.getDelayAttackParticle(), target.getPlanet().getName(), target.getWorldPosition()), true);
+					core.updateService.notifyObservers(target, new PlayClientEffectLocMessage(command.getDelayAttackParticle(), target.getPlanet().getName(), target.getWorldPosition()), true);
 				
-				try {
-					Thread.sleep((long) command.getInitialAttackDelay() * 1000);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
+				int loops = Math.max(1, command.getDelayAttackLoops());
+				scheduleDelayedAttack(new DelayedAttack(attacker, target, weapon, command, actionCounter, targetPos, targetParent, loops, interval, loops > 1), (long) (command.getInitialAttackDelay() * 1000));
 				
-	
-			} else if(command.getInitialAttackDelay() <= 0 && command.getDelayAttackInterval() > 0 && command.getDelayAttackLoops() <= 1) {
+			} else if(command.getDelayAttackInterval() > 0 && command.getDelayAttackLoops() <= 1) {
 				
-				try {
-					Thread.sleep((long) command.getDelayAttackInterval() * 1000);
-				} catch (InterruptedException e) {
-					e.printStackTrace();
-				}
-				
-				if(command.getDelayAttackParticle().length() > 0)
-					target.notifyObservers(new PlayClientEffectLocMessage(command.getDelayAttackParticle(), target.getPlanet().getName(), target.getWorldPosition()), true);
-				
-			}
-			
-			if(command.getDelayAttackLoops() > 1) {
-				final ScheduledFuture<?> task = scheduler.scheduleAtFixedRate(new Runnable() {
-
-					@Override
-					public void run() {
-						
-						if(command.getDelayAttackParticle().length() > 0)
-							target.notifyObservers(new PlayClientEffectLocMessage(command.getDelayAttackParticle(), target.getPlanet().getName(), target.getWorldPosition()), true);
-
-						if(command.getAttackType() == 1)
-							doSingleTargetCombat(attacker, target, weapon, command, actionCounter);
-						else if(command.getAttackType() == 0 || command.getAttackType() == 2 || command.getAttackType() == 3)
-							doAreaCombat(attacker, targetPos, weapon, command, actionCounter, targetParent);
-						
-					}
-					
-				}, 0, (long) (command.getDelayAttackInterval() * 1000), TimeUnit.MILLISECONDS);
+				scheduleDelayedAttack(new DelayedAttack(attacker, target, weapon, command, actionCounter, targetPos, targetParent, 1, interval, true), interval);
 				
-				scheduler.schedule(new Runnable() {
-
-					@Override
-					public void run() {
-						task.cancel(true);
-					}
-					
-				}, (long) ((command.getDelayAttackInterval() * 1000) * command.getDelayAttackLoops()), TimeUnit.MILLISECONDS);
+			} else if(command.getDelayAttackLoops() > 1) {
 				
-				return;
+				scheduleDelayedAttack(new DelayedAttack(attacker, target, weapon, command, actionCounter, targetPos, targetParent, command.getDelayAttackLoops(), interval, true), 0);
 				
 			} else {
 				if(command.getAttackType() == 1)
@@ -181,6 +151,28 @@ public class CombatService implements INetworkDispatch {
 		
 	}
 
+	private void scheduleDelayedAttack(DelayedAttack attack, long delay) {
+		delayedAttacks.add(attack);
+		attack.schedule(delay);
+	}
+	
+	/**
+	 * Cancels all pending delayed or looping attacks made by the object, or aimed at it as a single target.
+	 */
+	public void cancelDelayedAttacks(SWGObject object) {
+		for(DelayedAttack attack : delayedAttacks) {
+			if(attack.attacker == object || (attack.target == object && attack.command.getAttackType() == 1))
+				attack.cancel();
+		}
+	}
+	
+	/**
+	 * @return The number of delayed or looping attacks that are currently scheduled.
+	 */
+	public int getDelayedAttackCount() {
+		return delayedAttacks.size();
+	}
+	
 	private void doAreaCombat(CreatureObject attacker, TangibleObject target, WeaponObject weapon, CombatCommand command, int actionCounter) {
 		if(target instanceof CreatureObject) {
 			doAreaCombat(attacker, (CreatureObject) target, weapon, command, actionCounter);
@@ -382,8 +374,9 @@ public class CombatService implements INetworkDispatch {
 		
 		CombatAction combatAction = new CombatAction(CRC.StringtoCRC(animationStr), attacker.getObjectID(), weapon.getObjectID(), target.getObjectID(), command.getCommandCRC());
 		ObjControllerMessage objController = new ObjControllerMessage(0x1B, combatAction);
-		attacker.notifyObserversInRange(objController, true, 125);
+		core.updateService.notifyObserversInRange(attacker, objController.serialize(), true, 125);
 		
+		core.commandService.startCooldown(attacker, command);
 		StartTask startTask = new StartTask(actionCounter, attacker.getObjectID(), command.getCommandCRC(), CRC.StringtoCRC(command.getCooldownGroup()), command.getCooldown());
 		ObjControllerMessage objController2 = new ObjControllerMessage(0x0B, startTask);
 		attacker.getClient().getSession().write(objController2.serialize());
@@ -407,8 +400,9 @@ public class CombatService implements INetworkDispatch {
 
 		CombatAction combatAction = new CombatAction(CRC.StringtoCRC(command.getDefaultAnimations()[0]), attacker.getObjectID(), weapon.getObjectID(), target.getObjectID(), command.getCommandCRC());
 		ObjControllerMessage objController = new ObjControllerMessage(0x1B, combatAction);
-		attacker.notifyObserversInRange(objController, true, 125);
+		core.updateService.notifyObserversInRange(attacker, objController.serialize(), true, 125);
 		
+		core.commandService.startCooldown(attacker, command);
 		StartTask startTask = new StartTask(actionCounter, attacker.getObjectID(), command.getCommandCRC(), CRC.StringtoCRC(command.getCooldownGroup()), command.getCooldown());
 		ObjControllerMessage objController2 = new ObjControllerMessage(0x0B, startTask);
 		attacker.getClient().getSession().write(objController2.serialize());
@@ -948,6 +942,7 @@ public class CombatService implements INetworkDispatch {
 		target.stopIncapTask();
 		target.setIncapTask(null);
 		target.setPosture((byte) 14);
+		cancelDelayedAttacks(target);
 		attacker.sendSystemMessage("You have killed " + target.getCustomName() + ".", (byte) 0);
 		target.sendSystemMessage("@base_player:victim_dead", (byte) 0);
 		attacker.removeDefender(target);
@@ -1099,7 +1094,7 @@ public class CombatService implements INetworkDispatch {
 			if(debuff != null && debuff.getMaxStacks() > 1)
 				return;
 			else {
-				oldDot.getTask().cancel(true);
+				oldDot.getTask().cancel();
 				target.removeDot(oldDot);
 			}
 			
@@ -1109,14 +1104,14 @@ public class CombatService implements INetworkDispatch {
 		target.addDot(dot);
 		dot.setStartTime(System.currentTimeMillis());
 		
-		final ScheduledFuture<?> task = scheduler.scheduleAtFixedRate(new Runnable() {
+		final GameTimer task = core.timerService.scheduleAtFixedRate(new Runnable() {
 
 			@Override
 			public void run() {
 
 				if(dot.getRemainingDuration() <= 0) {
 					target.removeDot(dot);
-					dot.getTask().cancel(true);
+					dot.getTask().cancel();
 				}
 				
 				doDotDamageTick(attacker, target, command, dot);
@@ -1205,6 +1200,7 @@ public class CombatService implements INetworkDispatch {
 		
 		core.buffService.addBuffToCreature(creature, command.getBuffNameSelf());
 
+		core.commandService.startCooldown(creature, command);
 		StartTask startTask = new StartTask(actionCounter, creature.getObjectID(), command.getCommandCRC(), CRC.StringtoCRC(command.getCooldownGroup()), command.getCooldown());
 		ObjControllerMessage objController2 = new ObjControllerMessage(0x0B, startTask);
 		creature.getClient().getSession().write(objController2.serialize());
@@ -1221,7 +1217,7 @@ public class CombatService implements INetworkDispatch {
 		if(target.getDotByName(command.getCommandName()) != null) {
 			
 			DamageOverTime oldDot = target.getDotByName(command.getCommandName());
-			oldDot.getTask().cancel(true);
+			oldDot.getTask().cancel();
 			target.removeDot(oldDot);
 			
 		}
@@ -1230,14 +1226,14 @@ public class CombatService implements INetworkDispatch {
 		target.addDot(dot);
 		dot.setStartTime(System.currentTimeMillis());
 		
-		final ScheduledFuture<?> task = scheduler.scheduleAtFixedRate(new Runnable() {
+		final GameTimer task = core.timerService.scheduleAtFixedRate(new Runnable() {
 
 			@Override
 			public void run() {
 
 				if(dot.getRemainingDuration() <= 0) {
 					target.removeDot(dot);
-					dot.getTask().cancel(true);
+					dot.getTask().cancel();
 				}
 				
 				doHealOverTimeTick(healer, target, command, dot);
@@ -1277,7 +1273,7 @@ public class CombatService implements INetworkDispatch {
 			target.setHealth(target.getHealth() + healAmount);
 		}
 
-		target.notifyObservers(new PlayClientEffectLocMessage("appearance/pt_heal_2.prt", target.getPlanet().getName(), target.getWorldPosition()), true);
+		core.updateService.notifyObservers(target, new PlayClientEffectLocMessage("appearance/pt_heal_2.prt", target.getPlanet().getName(), target.getWorldPosition()), true);
 		
 	}
 	
@@ -1372,4 +1368,109 @@ public class CombatService implements INetworkDispatch {
 
 	
 
+	/**
+	 * An attack that hits after a delay and optionally repeats, run on the combat executor instead of the network thread.
+	 */
+	private class DelayedAttack implements Runnable {
+		
+		private final CreatureObject attacker;
+		private final TangibleObject target;
+		private final WeaponObject weapon;
+		private final CombatCommand command;
+		private final int actionCounter;
+		private final Point3D targetPos;
+		private final SWGObject targetParent;
+		private final long interval;
+		private final boolean playParticle;
+		private final Planet planet;
+		private int loopsRemaining;
+		private volatile ScheduledFuture<?> future;
+		private volatile boolean cancelled = false;
+		
+		public DelayedAttack(CreatureObject attacker, TangibleObject target, WeaponObject weapon, CombatCommand command, int actionCounter, Point3D targetPos, SWGObject targetParent, int loops, long interval, boolean playParticle) {
+			this.attacker = attacker;
+			this.target = target;
+			this.weapon = weapon;
+			this.command = command;
+			this.actionCounter = actionCounter;
+			this.targetPos = targetPos;
+			this.targetParent = targetParent;
+			this.loopsRemaining = loops;
+			this.interval = interval;
+			this.playParticle = playParticle;
+			this.planet = attacker.getPlanet();
+		}
+		
+		public void schedule(long delay) {
+			if(cancelled)
+				return;
+			
+			future = combatExecutor.schedule(this, delay, TimeUnit.MILLISECONDS);
+		}
+		
+		public void cancel() {
+			cancelled = true;
+			
+			if(future != null)
+				future.cancel(false);
+			
+			delayedAttacks.remove(this);
+		}
+		
+		@Override
+		public void run() {
+			
+			if(cancelled)
+				return;
+			
+			if(!isValid()) {
+				cancel();
+				return;
+			}
+			
+			try {
+				
+				if(playParticle && command.getDelayAttackParticle().length() > 0)
+					core.updateService.notifyObservers(target, new PlayClientEffectLocMessage(command.getDelayAttackParticle(), target.getPlanet().getName(), target.getWorldPosition()), true);
+
+				if(command.getAttackType() == 1)
+					doSingleTargetCombat(attacker, target, weapon, command, actionCounter);
+				else if(command.getAttackType() == 0 || command.getAttackType() == 2 || command.getAttackType() == 3)
+					doAreaCombat(attacker, targetPos, weapon, command, actionCounter, targetParent);
+				
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+			
+			if(--loopsRemaining > 0)
+				schedule(interval);
+			else
+				delayedAttacks.remove(this);
+			
+		}
+		
+		private boolean isValid() {
+			
+			if(attacker.getPosture() == 13 || attacker.getPosture() == 14)
+				return false;
+			
+			if(attacker.getPlanet() != planet || core.objectService.getObject(attacker.getObjectID()) == null)
+				return false;
+			
+			// area attacks keep hitting the spot even if the original target is gone
+			if(command.getAttackType() != 1)
+				return true;
+			
+			if(target instanceof CreatureObject && ((CreatureObject) target).getPosture() == 14)
+				return false;
+			
+			if(target.getPlanet() != planet || core.objectService.getObject(target.getObjectID()) == null)
+				return false;
+			
+			return true;
+			
+		}
+		
+	}
+	
 }
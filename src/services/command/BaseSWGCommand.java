@@ -21,6 +21,7 @@
  ******************************************************************************/
 package services.command;
 
+import resources.common.FileUtilities;
 import engine.resources.common.CRC;
 
 public class BaseSWGCommand implements Cloneable {
@@ -31,6 +32,9 @@ public class BaseSWGCommand implements Cloneable {
 	private int maxRangeToTarget;
 	private int commandCRC;
 	private boolean isGmCommand = false;
+	private boolean isCombatCommand = false;
+	private volatile boolean hasScript = false;
+	private String scriptPath;
 	
 	public BaseSWGCommand(String commandName) {
 		setCommandName(commandName);
@@ -89,4 +93,28 @@ public class BaseSWGCommand implements Cloneable {
 		this.isGmCommand = isGmCommand;
 	}
 
+	public boolean isCombatCommand() {
+		return isCombatCommand;
+	}
+
+	public void setCombatCommand(boolean isCombatCommand) {
+		this.isCombatCommand = isCombatCommand;
+	}
+
+	public boolean hasScript() {
+		return hasScript;
+	}
+
+	public void setScriptPath(String scriptPath) {
+		this.scriptPath = scriptPath;
+		checkScript();
+	}
+	
+	/**
+	 * Looks for the script on disk again, hasScript only changes through this so enqueueing a command never touches the disk.
+	 */
+	public void checkScript() {
+		hasScript = (scriptPath != null && FileUtilities.doesFileExist(scriptPath));
+	}
+
 }
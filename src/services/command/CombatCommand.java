@@ -23,9 +23,9 @@ package services.command;
 
 import java.util.Random;
 
+import resources.datatables.DatatableCache;
+import resources.datatables.DatatableRow;
 import resources.objects.weapon.WeaponObject;
-import engine.clientdata.ClientFileManager;
-import engine.clientdata.visitors.DatatableVisitor;
 
 public class CombatCommand extends BaseSWGCommand {
 	
@@ -82,102 +82,90 @@ public class CombatCommand extends BaseSWGCommand {
 	
 	public CombatCommand(String commandName) {
 		super(commandName);
-		try {
-			DatatableVisitor visitor = ClientFileManager.loadFile("datatables/combat/combat_data.iff", DatatableVisitor.class);
+		DatatableRow row = DatatableCache.getRow("datatables/combat/combat_data.iff", 0, commandName);
+		
+		if(row != null) {
+			
+			validTargetType = ((Integer) row.getObject(5)).byteValue();
+			hitType = ((Integer) row.getObject(6)).byteValue();
+			healType = ((Integer) row.getObject(7)).byteValue();
+			delayAttackEggTemplate = (String) row.getObject(12);
+			delayAttackParticle = (String) row.getObject(13);
+			initialAttackDelay = (Float) row.getObject(14);
+			delayAttackInterval = (Float) row.getObject(15);
+			delayAttackLoops = (Integer) row.getObject(16);
+			delayAttackEggPosition = (Integer) row.getObject(17);
+			String defaultAnims = (String) row.getObject(21);
+			setDefaultAnimations(defaultAnims.split(","));
+			String unarmedAnims = (String) row.getObject(22);
+			setUnarmedAnimations(unarmedAnims.split(","));
+			String oneHAnims = (String) row.getObject(23);
+			setOneHandedAnimations(oneHAnims.split(","));
+			String twoHAnims = (String) row.getObject(24);
+			setTwoHandedAnimations(twoHAnims.split(","));
+			String polearmAnims = (String) row.getObject(25);
+			setPolearmAnimations(polearmAnims.split(","));
+			String pistolAnims = (String) row.getObject(26);
+			setPistolAnimations(pistolAnims.split(","));
+			String lightRifleAnims = (String) row.getObject(27);
+			setLightRifleAnimations(lightRifleAnims.split(","));
+			String carbineAnims = (String) row.getObject(28);
+			setCarbineAnimations(carbineAnims.split(","));
+			String rifleAnims = (String) row.getObject(29);
+			setRifleAnimations(rifleAnims.split(","));
+			String heavyAnims = (String) row.getObject(30);
+			setHeavyWpnAnimations(heavyAnims.split(","));
+			String thrownAnims = (String) row.getObject(31);
+			setThrownAnimations(thrownAnims.split(","));
+			String oneHandLSAnims = (String) row.getObject(32);
+			setOneHandedLSAnimations(oneHandLSAnims.split(","));
+			String twoHandLSAnims = (String) row.getObject(33);
+			setTwoHandedLSAnimations(twoHandLSAnims.split(","));
+			String polearmLSAnims = (String) row.getObject(34);
+			setPolearmLSAnimations(polearmLSAnims.split(","));
+			attackType = ((Integer) row.getObject(40)).byteValue();
+			coneLength = (Float) row.getObject(41);
+			coneWidth = (Float) row.getObject(42);
+			minRange = (Float) row.getObject(43);
+			maxRange = (Float) row.getObject(44);
+			addedDamage = (Integer) row.getObject(45);		
+			flatActionDamage = (Integer) row.getObject(46);
+			percentFromWeapon = (Float) row.getObject(47);
+			bypassArmor = (Float) row.getObject(48);
+			healthCost = (Float) row.getObject(54);
+			actionCost = (Float) row.getObject(55);
+			setVigorCost((Float) row.getObject(56));
+			dotType = (String) row.getObject(60);
+			dotIntensity = (Integer) row.getObject(61);
+			dotDuration = (Integer) row.getObject(62);
+			buffNameTarget = (String) row.getObject(63);
+			buffStrengthTarget = (Float) row.getObject(64);
+			buffDurationTarget = (Float) row.getObject(65);
+			buffNameSelf = (String) row.getObject(66);
+			buffStrengthSelf = (Float) row.getObject(67);
+			buffDurationSelf = (Float) row.getObject(68);
+			canBePunishing = (Integer) row.getObject(69) != null;
+			minDamage = (Integer) row.getObject(77);
+			maxDamage = (Integer) row.getObject(78);
+			maxRangeOverload = (Float) row.getObject(79);
+			weaponCategory = ((Integer) row.getObject(80)).byteValue();
+			damageType = ((Integer) row.getObject(81)).byteValue();
+			elementalType = ((Integer) row.getObject(82)).byteValue();
+			elementalValue = (Integer) row.getObject(83);
+			performanceSpam = (String) row.getObject(89);
+			hitSpam = ((Integer) row.getObject(90)).byteValue();
 			
-			for(int i = 0; i < visitor.getRowCount(); i++) {
-				if(visitor.getObject(i, 0) != null)
-					if(((String) visitor.getObject(i, 0)).equalsIgnoreCase(commandName)) {
-						
-						validTargetType = ((Integer) visitor.getObject(i, 5)).byteValue();
-						hitType = ((Integer) visitor.getObject(i, 6)).byteValue();
-						healType = ((Integer) visitor.getObject(i, 7)).byteValue();
-						delayAttackEggTemplate = (String) visitor.getObject(i, 12);
-						delayAttackParticle = (String) visitor.getObject(i, 13);
-						initialAttackDelay = (Float) visitor.getObject(i, 14);
-						delayAttackInterval = (Float) visitor.getObject(i, 15);
-						delayAttackLoops = (Integer) visitor.getObject(i, 16);
-						delayAttackEggPosition = (Integer) visitor.getObject(i, 17);
-						String defaultAnims = (String) visitor.getObject(i, 21);
-						setDefaultAnimations(defaultAnims.split(","));
-						String unarmedAnims = (String) visitor.getObject(i, 22);
-						setUnarmedAnimations(unarmedAnims.split(","));
-						String oneHAnims = (String) visitor.getObject(i, 23);
-						setOneHandedAnimations(oneHAnims.split(","));
-						String twoHAnims = (String) visitor.getObject(i, 24);
-						setTwoHandedAnimations(twoHAnims.split(","));
-						String polearmAnims = (String) visitor.getObject(i, 25);
-						setPolearmAnimations(polearmAnims.split(","));
-						String pistolAnims = (String) visitor.getObject(i, 26);
-						setPistolAnimations(pistolAnims.split(","));
-						String lightRifleAnims = (String) visitor.getObject(i, 27);
-						setLightRifleAnimations(lightRifleAnims.split(","));
-						String carbineAnims = (String) visitor.getObject(i, 28);
-						setCarbineAnimations(carbineAnims.split(","));
-						String rifleAnims = (String) visitor.getObject(i, 29);
-						setRifleAnimations(rifleAnims.split(","));
-						String heavyAnims = (String) visitor.getObject(i, 30);
-						setHeavyWpnAnimations(heavyAnims.split(","));
-						String thrownAnims = (String) visitor.getObject(i, 31);
-						setThrownAnimations(thrownAnims.split(","));
-						String oneHandLSAnims = (String) visitor.getObject(i, 32);
-						setOneHandedLSAnimations(oneHandLSAnims.split(","));
-						String twoHandLSAnims = (String) visitor.getObject(i, 33);
-						setTwoHandedLSAnimations(twoHandLSAnims.split(","));
-						String polearmLSAnims = (String) visitor.getObject(i, 34);
-						setPolearmLSAnimations(polearmLSAnims.split(","));
-						attackType = ((Integer) visitor.getObject(i, 40)).byteValue();
-						coneLength = (Float) visitor.getObject(i, 41);
-						coneWidth = (Float) visitor.getObject(i, 42);
-						minRange = (Float) visitor.getObject(i, 43);
-						maxRange = (Float) visitor.getObject(i, 44);
-						addedDamage = (Integer) visitor.getObject(i, 45);		
-						flatActionDamage = (Integer) visitor.getObject(i, 46);
-						percentFromWeapon = (Float) visitor.getObject(i, 47);
-						bypassArmor = (Float) visitor.getObject(i, 48);
-						healthCost = (Float) visitor.getObject(i, 54);
-						actionCost = (Float) visitor.getObject(i, 55);
-						setVigorCost((Float) visitor.getObject(i, 56));
-						dotType = (String) visitor.getObject(i, 60);
-						dotIntensity = (Integer) visitor.getObject(i, 61);
-						dotDuration = (Integer) visitor.getObject(i, 62);
-						buffNameTarget = (String) visitor.getObject(i, 63);
-						buffStrengthTarget = (Float) visitor.getObject(i, 64);
-						buffDurationTarget = (Float) visitor.getObject(i, 65);
-						buffNameSelf = (String) visitor.getObject(i, 66);
-						buffStrengthSelf = (Float) visitor.getObject(i, 67);
-						buffDurationSelf = (Float) visitor.getObject(i, 68);
-						canBePunishing = (Integer) visitor.getObject(i, 69) != null;
-						minDamage = (Integer) visitor.getObject(i, 77);
-						maxDamage = (Integer) visitor.getObject(i, 78);
-						maxRangeOverload = (Float) visitor.getObject(i, 79);
-						weaponCategory = ((Integer) visitor.getObject(i, 80)).byteValue();
-						damageType = ((Integer) visitor.getObject(i, 81)).byteValue();
-						elementalType = ((Integer) visitor.getObject(i, 82)).byteValue();
-						elementalValue = (Integer) visitor.getObject(i, 83);
-						performanceSpam = (String) visitor.getObject(i, 89);
-						hitSpam = ((Integer) visitor.getObject(i, 90)).byteValue();
-						
-					}
-			}
+		}
+		
+		DatatableRow commandRow = DatatableCache.getRow("datatables/command/command_table.iff", 0, commandName);
+		
+		if(commandRow != null) {
 			
-			DatatableVisitor visitor2 = ClientFileManager.loadFile("datatables/command/command_table.iff", DatatableVisitor.class);
-
-			for(int i = 0; i < visitor2.getRowCount(); i++) {
-				if(visitor2.getObject(i, 0) != null) {
-					if(((String) visitor2.getObject(i, 0)).equalsIgnoreCase(commandName)) {
-						
-						cooldownGroup = (String) visitor2.getObject(i, 85);
-						warmupTime = (Float) visitor2.getObject(i, 86);
-						executeTime = (Float) visitor2.getObject(i, 87);
-						cooldown = (Float) visitor2.getObject(i, 88);
-						
-					}
-				} 
-			}
+			cooldownGroup = (String) commandRow.getObject(85);
+			warmupTime = (Float) commandRow.getObject(86);
+			executeTime = (Float) commandRow.getObject(87);
+			cooldown = (Float) commandRow.getObject(88);
 			
-		} catch (InstantiationException | IllegalAccessException e) {
-			e.printStackTrace();
 		}
 	}
 
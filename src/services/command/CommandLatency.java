@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package services.command;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with power of two millisecond buckets, the last bucket collects everything above.
+ */
+public class CommandLatency {
+	
+	private static final int BUCKETS = 13;
+	
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong totalNanos = new AtomicLong();
+	private final AtomicLong maxNanos = new AtomicLong();
+	
+	public void record(long nanos) {
+		long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+		int bucket = millis <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+		
+		buckets.incrementAndGet(bucket);
+		count.incrementAndGet();
+		totalNanos.addAndGet(nanos);
+		
+		long max;
+		
+		while(nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos));
+	}
+	
+	public long getCount() {
+		return count.get();
+	}
+	
+	public double getAverageMillis() {
+		long count = getCount();
+		return count == 0 ? 0 : totalNanos.get() / (double) count / 1000000;
+	}
+	
+	public double getMaxMillis() {
+		return maxNanos.get() / 1000000d;
+	}
+	
+	/**
+	 * Count of samples below 2^bucket ms (bucket 0 is below 1 ms).
+	 */
+	public long getBucket(int bucket) {
+		return buckets.get(bucket);
+	}
+	
+	public int getBucketCount() {
+		return BUCKETS;
+	}
+	
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append(getCount()).append(" runs, avg ").append(String.format("%.2f", getAverageMillis())).append(" ms, max ").append(String.format("%.2f", getMaxMillis())).append(" ms [");
+		
+		for(int i = 0; i < BUCKETS; i++) {
+			if(i > 0)
+				builder.append(' ');
+			
+			builder.append(i == BUCKETS - 1 ? ">=" + (1 << (i - 1)) : "<" + (1 << i)).append(':').append(buckets.get(i));
+		}
+		
+		return builder.append(']').toString();
+	}
+	
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package services.command;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Commands of one player, run one at a time in the order they arrived.
+ * 
+ * Only one drain task per queue is ever submitted to the executor, so commands of the same player never run concurrently
+ * while different players' commands spread over the whole pool.
+ */
+class CommandQueue implements Runnable {
+	
+	private final ExecutorService executor;
+	private final ConcurrentLinkedQueue<Runnable> commands = new ConcurrentLinkedQueue<Runnable>();
+	// commands queued or running, drives resubmitting the drain task
+	private final AtomicInteger size = new AtomicInteger();
+	// slots taken against the limit, taken before a command is queued so concurrent offers can't overshoot it
+	private final AtomicInteger reserved = new AtomicInteger();
+	// cooldown group -> time it ends
+	private final Map<String, Long> cooldowns = new ConcurrentHashMap<String, Long>();
+	private volatile boolean closed = false;
+	
+	public CommandQueue(ExecutorService executor) {
+		this.executor = executor;
+	}
+	
+	public boolean offer(Runnable command, int limit) {
+		if(closed)
+			return false;
+		
+		if(reserved.incrementAndGet() > limit) {
+			reserved.decrementAndGet();
+			return false;
+		}
+		
+		commands.add(command);
+		
+		if(size.incrementAndGet() == 1)
+			executor.execute(this);
+		
+		return true;
+	}
+	
+	@Override
+	public void run() {
+		Runnable command = commands.poll();
+		
+		try {
+			if(command != null && !closed)
+				command.run();
+		} catch (Exception e) {
+			e.printStackTrace();
+		} finally {
+			if(command != null)
+				reserved.decrementAndGet();
+			
+			// resubmit instead of looping so a busy player can't hog a worker, even if the command threw an error
+			if(size.decrementAndGet() > 0)
+				executor.execute(this);
+		}
+	}
+	
+	public int getSize() {
+		return size.get();
+	}
+	
+	public void close() {
+		closed = true;
+	}
+	
+	public boolean isOnCooldown(String group, long now) {
+		Long end = cooldowns.get(group);
+		return end != null && end > now;
+	}
+	
+	public void startCooldown(String group, long end) {
+		cooldowns.put(group, end);
+	}
+	
+}
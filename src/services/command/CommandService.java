@@ -24,8 +24,9 @@ package services.command;
 import java.nio.ByteOrder;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import main.NGECore;
 
@@ -52,13 +53,32 @@ import resources.objects.weapon.WeaponObject;
 
 public class CommandService implements INetworkDispatch  {
 	
-	private Vector<BaseSWGCommand> commandLookup = new Vector<BaseSWGCommand>();
+	private ConcurrentHashMap<Integer,BaseSWGCommand> commandsByCRC = new ConcurrentHashMap<Integer,BaseSWGCommand>();
+	private ConcurrentHashMap<String,BaseSWGCommand> commandsByName = new ConcurrentHashMap<String,BaseSWGCommand>();
 	private ConcurrentHashMap<String,BaseSWGCommand> aliases = new ConcurrentHashMap<String,BaseSWGCommand>();
 	private ConcurrentHashMap<Integer,BaseSWGCommand> aliasesByCRC = new ConcurrentHashMap<Integer,BaseSWGCommand>();
 	private NGECore core;
 	
+	private final ExecutorService commandExecutor;
+	private ConcurrentHashMap<Long, CommandQueue> queues = new ConcurrentHashMap<Long, CommandQueue>();
+	private ConcurrentHashMap<String, CommandLatency> latencies = new ConcurrentHashMap<String, CommandLatency>();
+	private CommandLatency queueWait = new CommandLatency();
+	private int queueLimit = 16;
+	// allowance for client and network timing when checking cooldowns
+	private static final long COOLDOWN_TOLERANCE = 250;
+	
 	public CommandService(NGECore core) {
 		this.core = core;
+		
+		int threads = Runtime.getRuntime().availableProcessors();
+		
+		if(core.getConfig().keyExists("COMMAND.THREADS") && core.getConfig().getInt("COMMAND.THREADS") > 0)
+			threads = core.getConfig().getInt("COMMAND.THREADS");
+		
+		if(core.getConfig().keyExists("COMMAND.QUEUE_LIMIT") && core.getConfig().getInt("COMMAND.QUEUE_LIMIT") > 0)
+			queueLimit = core.getConfig().getInt("COMMAND.QUEUE_LIMIT");
+		
+		commandExecutor = Executors.newFixedThreadPool(threads);
 	}
 
 
@@ -100,16 +120,10 @@ public class CommandService implements INetworkDispatch  {
 					return;
 
 				CreatureObject actor = (CreatureObject) client.getParent();
-
-				SWGObject target = core.objectService.getObject(commandEnqueue.getTargetID());
-								
-				if(command instanceof CombatCommand) {
-					CombatCommand command2 = (CombatCommand) command.clone();
-					processCombatCommand(actor, target, command2, commandEnqueue.getActionCounter(), commandEnqueue.getCommandArguments());
-					return;
-				}
-					
-				core.scriptService.callScript("scripts/commands/", command.getCommandName(), "run", core, actor, target, commandEnqueue.getCommandArguments());
+				
+				// run off the network thread, one command at a time per player
+				if(!enqueueCommand(actor, command, commandEnqueue) && command.isCombatCommand())
+					sendCommandFailed(actor, (CombatCommand) command, commandEnqueue.getActionCounter());
 				
 			}
 
@@ -118,10 +132,135 @@ public class CommandService implements INetworkDispatch  {
 		
 	}
 	
+	private boolean enqueueCommand(final CreatureObject actor, final BaseSWGCommand command, final CommandEnqueue commandEnqueue) {
+		
+		CommandQueue queue = queues.get(actor.getObjectID());
+		
+		if(queue == null) {
+			queue = new CommandQueue(commandExecutor);
+			CommandQueue existing = queues.putIfAbsent(actor.getObjectID(), queue);
+			
+			if(existing != null)
+				queue = existing;
+		}
+		
+		final CommandQueue actorQueue = queue;
+		final long enqueueTime = System.nanoTime();
+		
+		return queue.offer(new Runnable() {
+			
+			@Override
+			public void run() {
+				
+				long start = System.nanoTime();
+				queueWait.record(start - enqueueTime);
+				
+				try {
+					executeCommand(actor, actorQueue, command, commandEnqueue);
+				} finally {
+					getLatency(command.getCommandName()).record(System.nanoTime() - start);
+				}
+				
+			}
+			
+		}, queueLimit);
+		
+	}
+	
+	private void executeCommand(CreatureObject actor, CommandQueue queue, BaseSWGCommand command, CommandEnqueue commandEnqueue) {
+		
+		SWGObject target = core.objectService.getObject(commandEnqueue.getTargetID());
+		
+		if(command.isCombatCommand()) {
+			CombatCommand command2 = (CombatCommand) command.clone();
+			
+			if(command2.getCooldown() > 0 && queue.isOnCooldown(command2.getCooldownGroup(), System.currentTimeMillis() + COOLDOWN_TOLERANCE)) {
+				sendCommandFailed(actor, command2, commandEnqueue.getActionCounter());
+				return;
+			}
+			
+			processCombatCommand(actor, target, command2, commandEnqueue.getActionCounter(), commandEnqueue.getCommandArguments());
+			return;
+		}
+		
+		if(command.hasScript())
+			core.scriptService.callScript("scripts/commands/", command.getCommandName(), "run", core, actor, target, commandEnqueue.getCommandArguments());
+		
+	}
+	
+	private void sendCommandFailed(CreatureObject actor, CombatCommand command, int actionCounter) {
+		
+		if(actor.getClient() == null || actor.getClient().getSession() == null)
+			return;
+		
+		IoSession session = actor.getClient().getSession();
+		CommandEnqueueRemove commandRemove = new CommandEnqueueRemove(actor.getObjectId(), actionCounter);
+		session.write(new ObjControllerMessage(0x0B, commandRemove).serialize());
+		StartTask startTask = new StartTask(actionCounter, actor.getObjectID(), command.getCommandCRC(), CRC.StringtoCRC(command.getCooldownGroup()), -1);
+		session.write(new ObjControllerMessage(0x0B, startTask).serialize());
+		
+	}
+	
+	/**
+	 * Starts the cooldown group of a command that was executed, called where the StartTask with the cooldown is sent to the client.
+	 */
+	public void startCooldown(CreatureObject actor, CombatCommand command) {
+		
+		if(command.getCooldown() <= 0 || command.getCooldownGroup() == null)
+			return;
+		
+		CommandQueue queue = queues.get(actor.getObjectID());
+		
+		if(queue != null)
+			queue.startCooldown(command.getCooldownGroup(), System.currentTimeMillis() + (long) (command.getCooldown() * 1000));
+		
+	}
+	
+	public void removeQueue(SWGObject actor) {
+		
+		CommandQueue queue = queues.remove(actor.getObjectID());
+		
+		if(queue != null)
+			queue.close();
+		
+	}
+	
+	public int getQueueDepth(SWGObject actor) {
+		
+		CommandQueue queue = queues.get(actor.getObjectID());
+		return queue == null ? 0 : queue.getSize();
+		
+	}
+	
+	private CommandLatency getLatency(String commandName) {
+		
+		CommandLatency latency = latencies.get(commandName);
+		
+		if(latency == null) {
+			latency = new CommandLatency();
+			CommandLatency existing = latencies.putIfAbsent(commandName, latency);
+			
+			if(existing != null)
+				latency = existing;
+		}
+		
+		return latency;
+		
+	}
+	
+	public Map<String, CommandLatency> getLatencies() {
+		return latencies;
+	}
+	
+	public CommandLatency getQueueWait() {
+		return queueWait;
+	}
+	
 	public BaseSWGCommand registerCommand(String name) {
 		
 		BaseSWGCommand command = new BaseSWGCommand(name.toLowerCase());
-		commandLookup.add(command);
+		command.setScriptPath("scripts/commands/" + command.getCommandName() + ".py");
+		addCommand(command);
 		return command;
 		
 	}
@@ -129,7 +268,9 @@ public class CommandService implements INetworkDispatch  {
 	public CombatCommand registerCombatCommand(String name) {
 		
 		CombatCommand command = new CombatCommand(name.toLowerCase());
-		commandLookup.add(command);
+		command.setCombatCommand(true);
+		command.setScriptPath("scripts/commands/combat/" + command.getCommandName() + ".py");
+		addCommand(command);
 		return command;
 		
 	}
@@ -138,19 +279,29 @@ public class CommandService implements INetworkDispatch  {
 		
 		BaseSWGCommand command = new BaseSWGCommand(name.toLowerCase());
 		command.setGmCommand(true);
-		commandLookup.add(command);
+		command.setScriptPath("scripts/commands/" + command.getCommandName() + ".py");
+		addCommand(command);
 		return command;
 		
 	}
 	
+	private void addCommand(BaseSWGCommand command) {
+		// the first registration of a command wins, like it did with the old lookup list
+		commandsByCRC.putIfAbsent(command.getCommandCRC(), command);
+		commandsByName.putIfAbsent(command.getCommandName(), command);
+	}
+	
+	/**
+	 * Picks up command scripts that were added or removed while the server runs.
+	 */
+	public void rescanScripts() {
+		for(BaseSWGCommand command : commandsByName.values())
+			command.checkScript();
+	}
+	
 	public void registerAlias(String name, String target) {
-		Vector<BaseSWGCommand> commands = new Vector<BaseSWGCommand>(commandLookup); 	// copy for thread safety
-		BaseSWGCommand targetCommand = null;
-		for(BaseSWGCommand command : commands) {
-			if(command.getCommandName().equalsIgnoreCase(target)) {
-				targetCommand = command;
-			}
-		}
+		BaseSWGCommand targetCommand = commandsByName.get(target.toLowerCase());
+
 		if (targetCommand == null) { return; }
 		
 		aliases.put(name, targetCommand);
@@ -160,33 +311,25 @@ public class CommandService implements INetworkDispatch  {
 
 	public BaseSWGCommand getCommandByCRC(int CRC) {
 		
-		if (aliasesByCRC.containsKey(CRC)) {
-			return aliasesByCRC.get(CRC);
-		}
-		
-		Vector<BaseSWGCommand> commands = new Vector<BaseSWGCommand>(commandLookup); 	// copy for thread safety
+		BaseSWGCommand command = aliasesByCRC.get(CRC);
 		
-		for(BaseSWGCommand command : commands) {
-			if(command.getCommandCRC() == CRC)
-				return command;
+		if (command != null) {
+			return command;
 		}
-		return null;
+		
+		return commandsByCRC.get(CRC);
 
 	}
 	
 	public BaseSWGCommand getCommandByName(String name) {
 		
-		if (aliases.containsKey(name)) {
-			return aliases.get(name);
-		}
-		
-		Vector<BaseSWGCommand> commands = new Vector<BaseSWGCommand>(commandLookup); 	// copy for thread safety
+		BaseSWGCommand command = aliases.get(name);
 		
-		for(BaseSWGCommand command : commands) {
-			if(command.getCommandName().equalsIgnoreCase(name))
-				return command;
+		if (command != null) {
+			return command;
 		}
-		return null;
+		
+		return commandsByName.get(name.toLowerCase());
 
 	}
 	
@@ -200,7 +343,7 @@ public class CommandService implements INetworkDispatch  {
 	//		return;
 		//}
 		
-		if(FileUtilities.doesFileExist("scripts/commands/combat/" + command.getCommandName() + ".py"))
+		if(command.hasScript())
 			core.scriptService.callScript("scripts/commands/combat/", command.getCommandName(), "setup", core, attacker, target, command);
 		
 		boolean success = true;
@@ -269,11 +412,7 @@ public class CommandService implements INetworkDispatch  {
 		}
 		
 		if(!success) {
-			IoSession session = attacker.getClient().getSession();
-			CommandEnqueueRemove commandRemove = new CommandEnqueueRemove(attacker.getObjectId(), actionCounter);
-			session.write(new ObjControllerMessage(0x0B, commandRemove).serialize());
-			StartTask startTask = new StartTask(actionCounter, attacker.getObjectID(), command.getCommandCRC(), CRC.StringtoCRC(command.getCooldownGroup()), -1);
-			session.write(new ObjControllerMessage(0x0B, startTask).serialize());
+			sendCommandFailed(attacker, command, actionCounter);
 		} else {
 			
 			if(command.getHitType() == 5) {
@@ -302,7 +441,7 @@ public class CommandService implements INetworkDispatch  {
 		
 		BaseSWGCommand command = getCommandByName(commandName);
 		
-		if (command == null)
+		if (command == null || !command.hasScript())
 			return;
 		
 		core.scriptService.callScript("scripts/commands/", command.getCommandName(), "run", core, actor, target, commandArgs);
@@ -310,8 +449,7 @@ public class CommandService implements INetworkDispatch  {
 	
 	@Override
 	public void shutdown() {
-		// TODO Auto-generated method stub
-		
+		commandExecutor.shutdown();
 	}
 
 }
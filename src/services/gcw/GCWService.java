@@ -29,7 +29,11 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -55,7 +59,9 @@ import main.NGECore;
 
 import engine.clients.Client;
 import engine.resources.objects.SWGObject;
+import engine.resources.scene.Planet;
 import engine.resources.scene.Point2D;
+import engine.resources.scene.Point3D;
 import engine.resources.service.INetworkDispatch;
 import engine.resources.service.INetworkRemoteEvent;
 
@@ -69,6 +75,11 @@ public class GCWService implements INetworkDispatch {
 	
 	protected final Object objectMutex = new Object();
 	
+	private final Map<String, GCWZoneArea> zoneAreas = new ConcurrentHashMap<String, GCWZoneArea>();
+	
+	// zones each player is currently in by object id, kept up to date as players move so the presence check needn't search the zones
+	private final ConcurrentMap<Long, NavigableMap<String, GCWZoneArea>> playerZones = new ConcurrentHashMap<Long, NavigableMap<String, GCWZoneArea>>();
+	
 	public GCWService(final NGECore core) {
 		this.core = core;
 		this.object = this.core.guildService.getGuildObject();
@@ -100,21 +111,14 @@ public class GCWService implements INetworkDispatch {
 								boolean inContestedRegion = false;
 								
 								if (zoneMap().containsKey(planet)) {
-									for (String zoneName : zoneMap().get(planet).keySet()) {
-										CurrentServerGCWZonePercent zone = zoneMap().get(planet).get(zoneName).clone();
+									GCWZoneArea zoneArea = getCurrentZone(player);
+									
+									if (zoneArea != null) {
+										inContestedRegion = true;
 										
-										if (zone.getRadius() > 0) {
-											List<SWGObject> objects = core.simulationService.get(core.terrainService.getPlanetByName(planet), zone.getPosition().x, zone.getPosition().z, (int) zone.getRadius());
-											
-											if (objects.contains(player)) {
-												inContestedRegion = true;
-												
-												if ((player instanceof CreatureObject)) {
-													if (((CreatureObject) player).getFactionStatus() == FactionStatus.SpecialForces) {
-														adjustZone(planet, zoneName, ((CreatureObject) player).getFaction(), 1);
-														break;
-													}
-												}
+										if ((player instanceof CreatureObject)) {
+											if (((CreatureObject) player).getFactionStatus() == FactionStatus.SpecialForces) {
+												adjustZone(planet, zoneArea.getName(), ((CreatureObject) player).getFaction(), 1);
 											}
 										}
 									}
@@ -300,6 +304,10 @@ public class GCWService implements INetworkDispatch {
 		if (zoneMap().get(planet).containsKey(zone)) {
 			zoneObject = zoneMap().get(planet).get(zone);
 			
+			if (zoneObject.getPosition().x != x || zoneObject.getPosition().z != z || zoneObject.getRadius() != radius) {
+				addZoneArea(planet, zone, x, z, radius);
+			}
+			
 			if (zoneObject.getPosition().x != x) {
 				zoneObject.getPosition().x = x;
 			}
@@ -323,6 +331,7 @@ public class GCWService implements INetworkDispatch {
 			zoneObject = new CurrentServerGCWZonePercent(new Point2D(x, z), radius, weight, type);
 			
 			zoneMap().get(planet).put(zone, zoneObject);
+			addZoneArea(planet, zone, x, z, radius);
 			
 			if (!planet.equals("galaxy")) {
 				object.getCurrentServerGCWZonePercentMap().put(zone, zoneMap().get(planet).get(zone).clone());
@@ -332,6 +341,81 @@ public class GCWService implements INetworkDispatch {
 		}
 	}
 	
+	private void addZoneArea(String planet, String zone, float x, float z, float radius) {
+		GCWZoneArea oldArea = zoneAreas.remove(zone);
+		
+		if (oldArea != null) {
+			Point3D center = oldArea.getArea().getCenter();
+			core.simulationService.removeCollidable(oldArea.getArea(), center.x, center.z);
+		}
+		
+		Planet planetObject = core.terrainService.getPlanetByName(planet);
+		
+		if (radius <= 0 || planetObject == null) {
+			return;
+		}
+		
+		GCWZoneArea zoneArea = new GCWZoneArea(this, zone, planetObject, x, z, radius);
+		zoneAreas.put(zone, zoneArea);
+		core.simulationService.addCollidable(zoneArea.getArea(), x, z);
+	}
+	
+	public void enterZone(SWGObject player, GCWZoneArea zoneArea) {
+		getZones(player).put(zoneArea.getName(), zoneArea);
+	}
+	
+	private NavigableMap<String, GCWZoneArea> getZones(SWGObject player) {
+		NavigableMap<String, GCWZoneArea> zones = playerZones.get(player.getObjectID());
+		
+		if (zones == null) {
+			zones = new ConcurrentSkipListMap<String, GCWZoneArea>();
+			NavigableMap<String, GCWZoneArea> existing = playerZones.putIfAbsent(player.getObjectID(), zones);
+			
+			if (existing != null) {
+				zones = existing;
+			}
+		}
+		
+		return zones;
+	}
+	
+	public void exitZone(SWGObject player, GCWZoneArea zoneArea) {
+		NavigableMap<String, GCWZoneArea> zones = playerZones.get(player.getObjectID());
+		
+		if (zones != null) {
+			zones.remove(zoneArea.getName());
+		}
+	}
+	
+	public void removePlayer(SWGObject player) {
+		playerZones.remove(player.getObjectID());
+	}
+	
+	/**
+	 * @return The first zone by name the player is in, like the zone map is ordered, or null if the player isn't in any.
+	 */
+	public GCWZoneArea getCurrentZone(SWGObject player) {
+		NavigableMap<String, GCWZoneArea> zones = playerZones.get(player.getObjectID());
+		
+		if (zones == null) {
+			// players who haven't moved since logging in have no enter events yet, so they are checked against the zones once
+			zones = getZones(player);
+			
+			core.simulationService.checkForCollidables(player);
+		}
+		
+		for (GCWZoneArea zoneArea : zones.values()) {
+			// a teleport is only noticed on the next movement, so the membership is checked before it is used
+			if (zoneArea.contains(player)) {
+				return zoneArea;
+			}
+			
+			zones.remove(zoneArea.getName());
+		}
+		
+		return null;
+	}
+	
 	public void adjustZone(String planet, String zone, String faction, int amount) {
 		synchronized(objectMutex) {
 			CurrentServerGCWZonePercent zoneObject = zoneMap().get(planet).get(zone).clone();
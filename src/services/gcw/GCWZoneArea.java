@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package services.gcw;
+
+import net.engio.mbassy.listener.Handler;
+
+import resources.common.collidables.CollidableCircle;
+import resources.common.collidables.AbstractCollidable.EnterEvent;
+import resources.common.collidables.AbstractCollidable.ExitEvent;
+import resources.objects.creature.CreatureObject;
+
+import engine.resources.objects.SWGObject;
+import engine.resources.scene.Planet;
+import engine.resources.scene.Point3D;
+
+/**
+ * The area of a GCW zone, players entering or leaving it are passed on to the GCWService as they move.
+ */
+public class GCWZoneArea {
+	
+	private final GCWService gcwService;
+	private final String name;
+	private final CollidableCircle area;
+	
+	public GCWZoneArea(GCWService gcwService, String name, Planet planet, float x, float z, float radius) {
+		this.gcwService = gcwService;
+		this.name = name;
+		this.area = new CollidableCircle(new Point3D(x, 0, z), radius, planet);
+		area.getEventBus().subscribe(this);
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public CollidableCircle getArea() {
+		return area;
+	}
+	
+	public Planet getPlanet() {
+		return area.getPlanet();
+	}
+	
+	public boolean contains(SWGObject object) {
+		return object.getPlanet() == area.getPlanet() && area.doesCollide(object);
+	}
+	
+	@Handler
+	public void onEnter(EnterEvent event) {
+		SWGObject object = event.object;
+		
+		if(object == null || !(object instanceof CreatureObject) || object.getSlottedObject("ghost") == null)
+			return;
+		
+		gcwService.enterZone(object, this);
+	}
+	
+	@Handler
+	public void onExit(ExitEvent event) {
+		SWGObject object = event.object;
+		
+		if(object == null || !(object instanceof CreatureObject) || object.getSlottedObject("ghost") == null)
+			return;
+		
+		gcwService.exitZone(object, this);
+	}
+	
+}
@@ -0,0 +1,313 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package services.object;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import engine.resources.database.DatabaseConnection;
+
+/**
+ * Hands out ids from ranges leased from a table holding a single high water mark, like highestid for object ids or highestmailid for mail ids.
+ * 
+ * A lease moves the stored high water mark up by a whole block in one update, ids inside the block are then handed out without locking or database access.
+ * The next block is leased in the background once half of the current one is used, so callers only wait on the database if ids are used up faster than that.
+ * Since the high water mark is stored before any id of its block is used, ids are never handed out twice, even after a crash.
+ * If the stored mark was moved by someone else the lease fails, the mark is read again and only ids above it are handed out.
+ * No id is handed out without a stored lease, callers wait and the lease is retried while the database is unreachable.
+ * 
+ * Objects that are never persisted can use the transient id space instead, which lives in memory only.
+ */
+public class ObjectIdAllocator {
+	
+	// persistent ids won't grow into this range, so transient ids never collide with stored objects
+	public static final long TRANSIENT_ID_BASE = 1L << 62;
+	
+	private static final long RETRY_DELAY = 1000;
+	
+	private final DatabaseConnection databaseConnection;
+	private final String table;
+	private final int leaseSize;
+	
+	private final AtomicLong nextId = new AtomicLong();
+	private final AtomicLong nextTransientId = new AtomicLong(TRANSIENT_ID_BASE);
+	// start and end are replaced together, so a reader never combines the start of one lease with the end of another
+	private volatile Lease lease;
+	private final long firstLeaseStart;
+	private final Object leaseMutex = new Object();
+	private final AtomicBoolean leasing = new AtomicBoolean();
+	private final ExecutorService executor;
+	
+	private AtomicLong leases = new AtomicLong();
+	private AtomicLong stalls = new AtomicLong();
+	private AtomicLong failures = new AtomicLong();
+	
+	public ObjectIdAllocator(DatabaseConnection databaseConnection, int leaseSize) {
+		this(databaseConnection, "highestid", leaseSize);
+	}
+	
+	public ObjectIdAllocator(DatabaseConnection databaseConnection, final String table, int leaseSize) {
+		this.databaseConnection = databaseConnection;
+		this.table = table;
+		this.leaseSize = leaseSize;
+		
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "IdLease-" + table);
+				thread.setDaemon(true);
+				return thread;
+			}
+			
+		});
+		
+		// handing out ids without knowing the stored mark could reuse ids of persisted objects
+		long highestId;
+		
+		try {
+			highestId = readHighestId();
+		} catch (SQLException e) {
+			throw new RuntimeException("Could not read the highest id from " + table, e);
+		}
+		
+		firstLeaseStart = highestId;
+		lease = new Lease(highestId, highestId);
+		nextId.set(highestId + 1);
+		
+		synchronized(leaseMutex) {
+			if(!lease())
+				throw new RuntimeException("Could not lease ids from " + table);
+		}
+	}
+	
+	/**
+	 * @return A new id for an object that may be persisted.
+	 */
+	public long nextId() {
+		while(true) {
+			long id = nextId.getAndIncrement();
+			Lease current = lease;
+			
+			if(id > current.start && id <= current.end) {
+				if(current.end - id < leaseSize / 2)
+					leaseAhead();
+				
+				return id;
+			}
+			
+			// ids below the lease were lost to another writer of the mark, those are skipped
+			if(id > current.end)
+				waitForLease(id);
+		}
+	}
+	
+	/**
+	 * @return A new id for a server only object that is never persisted, these ids start over on every restart.
+	 */
+	public long nextTransientId() {
+		return nextTransientId.getAndIncrement();
+	}
+	
+	public boolean isTransientId(long id) {
+		return id >= TRANSIENT_ID_BASE;
+	}
+	
+	private void waitForLease(long id) {
+		stalls.incrementAndGet();
+		
+		synchronized(leaseMutex) {
+			while(id > lease.end) {
+				Lease before = lease;
+				
+				if(lease())
+					continue;
+				
+				// after a moved mark the lease was reset and the next attempt can go ahead, an unreachable database is retried until it's back
+				if(lease == before) {
+					try {
+						Thread.sleep(RETRY_DELAY);
+					} catch (InterruptedException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+	}
+	
+	private void leaseAhead() {
+		if(!leasing.compareAndSet(false, true))
+			return;
+		
+		try {
+			executor.execute(new Runnable() {
+				
+				@Override
+				public void run() {
+					try {
+						synchronized(leaseMutex) {
+							if(lease.end - nextId.get() < leaseSize / 2)
+								lease();
+						}
+					} finally {
+						leasing.set(false);
+					}
+				}
+				
+			});
+		} catch (Exception e) {
+			leasing.set(false);
+			e.printStackTrace();
+		}
+	}
+	
+	// must hold leaseMutex
+	private boolean lease() {
+		Lease current = lease;
+		long newEnd = current.end + leaseSize;
+		int updated;
+		
+		PreparedStatement ps = null;
+		
+		try {
+			ps = databaseConnection.preparedStatement("UPDATE " + table + " SET id=? WHERE id=?");
+			ps.setLong(1, newEnd);
+			ps.setLong(2, current.end);
+			updated = ps.executeUpdate();
+		} catch (SQLException e) {
+			failures.incrementAndGet();
+			e.printStackTrace();
+			return false;
+		} finally {
+			close(ps);
+		}
+		
+		if(updated == 1) {
+			lease = new Lease(current.start, newEnd);
+			leases.incrementAndGet();
+			return true;
+		}
+		
+		failures.incrementAndGet();
+		System.out.println("Id lease failed, the highest id stored in " + table + " is no longer " + current.end);
+		
+		try {
+			long highestId = readHighestId();
+			
+			// nothing is handed out until the mark is leased again, and nothing at or below it ever
+			lease = new Lease(highestId, highestId);
+			
+			long id;
+			
+			while((id = nextId.get()) <= highestId && !nextId.compareAndSet(id, highestId + 1));
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		
+		return false;
+	}
+	
+	private long readHighestId() throws SQLException {
+		PreparedStatement ps = databaseConnection.preparedStatement("SELECT id FROM " + table + " WHERE id=(SELECT max(id) FROM " + table + ")");
+		ResultSet result = null;
+		
+		try {
+			result = ps.executeQuery();
+			
+			if(!result.next())
+				throw new SQLException(table + " is empty");
+			
+			return result.getLong("id");
+		} finally {
+			if(result != null)
+				result.close();
+			
+			ps.close();
+		}
+	}
+	
+	private void close(PreparedStatement ps) {
+		if(ps == null)
+			return;
+		
+		try {
+			ps.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * @return The stored mark the first lease started from, ids at or below it were handed out before this start.
+	 */
+	public long getFirstLeaseStart() {
+		return firstLeaseStart;
+	}
+	
+	public long getLeaseEnd() {
+		return lease.end;
+	}
+	
+	public long getRemaining() {
+		return Math.max(0, lease.end - nextId.get() + 1);
+	}
+	
+	public long getLeases() {
+		return leases.get();
+	}
+	
+	public long getStalls() {
+		return stalls.get();
+	}
+	
+	public long getFailures() {
+		return failures.get();
+	}
+	
+	public String getStatistics() {
+		return table + ": next " + nextId.get() + ", leased up to " + getLeaseEnd() + " (" + getRemaining() + " left), " + getLeases() + " leases, " + getStalls() + " stalls, " + getFailures() + " failures, " + (nextTransientId.get() - TRANSIENT_ID_BASE) + " transient ids";
+	}
+	
+	public void shutdown() {
+		executor.shutdown();
+	}
+	
+	private static class Lease {
+		
+		// ids above start up to and including end are stored as used
+		private final long start;
+		private final long end;
+		
+		public Lease(long start, long end) {
+			this.start = start;
+			this.end = end;
+		}
+		
+	}
+	
+}
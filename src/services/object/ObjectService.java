@@ -24,9 +24,6 @@ package services.object;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.ByteOrder;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -34,6 +31,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
@@ -41,7 +39,6 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 
 import resources.common.*;
 import resources.datatables.PlayerFlags;
@@ -101,12 +98,17 @@ public class ObjectService implements INetworkDispatch {
 	
 	private DatabaseConnection databaseConnection;
 
-	private AtomicLong highestId = new AtomicLong();
+	private ObjectIdAllocator idAllocator;
 	
 	private Random random = new Random();
 	
 	private Map<String, PyObject> serverTemplates = new ConcurrentHashMap<String, PyObject>();
 	
+	// templates whose script is missing or only has the 4 default lines
+	private Set<String> emptyServerTemplates = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	
+	private volatile CrcStringTableVisitor crcTable;
+	
 	private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
 	
 	protected final Object objectMutex = new Object();
@@ -126,21 +128,16 @@ public class ObjectService implements INetworkDispatch {
 		    			
 		    		}
 		    	}
+		    	core.persistenceService.flush();
 		    }
 		});
-		long highestId;
 		
-
-		try {
-			PreparedStatement ps = databaseConnection.preparedStatement("SELECT id FROM highestid WHERE id=(SELECT max(id) FROM highestid)");
-			ResultSet result = ps.executeQuery();
-			result.next();
-			highestId = result.getInt("id");
-			this.highestId.set(highestId);
-			ps.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
+		int idLeaseSize = 10000;
+		
+		if(core.getConfig().keyExists("OBJECT.ID_LEASE") && core.getConfig().getInt("OBJECT.ID_LEASE") > 0)
+			idLeaseSize = core.getConfig().getInt("OBJECT.ID_LEASE");
+		
+		idAllocator = new ObjectIdAllocator(databaseConnection, idLeaseSize);
 	}
 	
 	public void loadBuildings() {
@@ -175,16 +172,13 @@ public class ObjectService implements INetworkDispatch {
 	
 	public SWGObject createObject(String Template, long objectID, Planet planet, Point3D position, Quaternion orientation, String customServerTemplate, boolean overrideSnapshot) {
 		SWGObject object = null;
-		CrcStringTableVisitor crcTable;
-		try {
-			crcTable = ClientFileManager.loadFile("misc/object_template_crc_string_table.iff", CrcStringTableVisitor.class);
-			if(!crcTable.isValidCRC(CRC.StringtoCRC(Template))) {
-				System.out.println("Invalid CRC for template:" + Template);
-				return null;
-			}
-		} catch (InstantiationException | IllegalAccessException e) {
-			e.printStackTrace();
+		CrcStringTableVisitor crcTable = getCrcTable();
+		
+		if(crcTable != null && !crcTable.isValidCRC(CRC.StringtoCRC(Template))) {
+			System.out.println("Invalid CRC for template:" + Template);
+			return null;
 		}
+		
 		boolean isSnapshot = false;
 		if(objectID == 0)
 			objectID = generateObjectID();
@@ -300,28 +294,56 @@ public class ObjectService implements INetworkDispatch {
 		
 		String template = ((object.getAttachment("customServerTemplate") == null) ? object.getTemplate() : (object.getTemplate().split("shared_")[0] + "shared_" + ((String) object.getAttachment("customServerTemplate")) + ".iff"));
 		String serverTemplate = template.replace(".iff", "");
+		
+		if(emptyServerTemplates.contains(template))
+			return;
+		
+		PyObject func = serverTemplates.get(template);
+		
+		if(func != null) {
+			func.__call__(Py.java2py(core), Py.java2py(object));
+			return;
+		}
+		
 		// check if template is empty(4 default lines) to reduce RAM usage(saves about 500 MB of RAM)
 		try {
 			int numberOfLines = FileUtilities.getNumberOfLines("scripts/" + serverTemplate.split("shared_" , 2)[0].replace("shared_", "") + serverTemplate.split("shared_" , 2)[1] + ".py");
 			
 			if(numberOfLines > 4) {
-				if(serverTemplates.containsKey(template)) {
-					PyObject func = serverTemplates.get(template);
-					func.__call__(Py.java2py(core), Py.java2py(object));
-				} else {
-					PyObject func = core.scriptService.getMethod("scripts/" + serverTemplate.split("shared_" , 2)[0].replace("shared_", ""), serverTemplate.split("shared_" , 2)[1], "setup");
-					func.__call__(Py.java2py(core), Py.java2py(object));
-					serverTemplates.put(template, func);
-				}
+				func = core.scriptService.getMethod("scripts/" + serverTemplate.split("shared_" , 2)[0].replace("shared_", ""), serverTemplate.split("shared_" , 2)[1], "setup");
+				func.__call__(Py.java2py(core), Py.java2py(object));
+				serverTemplates.put(template, func);
+			} else {
+				emptyServerTemplates.add(template);
 			}
 
 		} catch (FileNotFoundException e) {
+			emptyServerTemplates.add(template);
 			System.out.println("!File Not Found:" + template.toString());
 		} catch (IOException e) {
 			System.out.println("!IO error " + template.toString());
 		}
 	}
 	
+	/**
+	 * Returns the object template crc table, it is loaded once and shared by all object creation.
+	 */
+	public CrcStringTableVisitor getCrcTable() {
+		if(crcTable == null) {
+			synchronized(objectMutex) {
+				if(crcTable == null) {
+					try {
+						crcTable = ClientFileManager.loadFile("misc/object_template_crc_string_table.iff", CrcStringTableVisitor.class);
+					} catch (InstantiationException | IllegalAccessException e) {
+						e.printStackTrace();
+					}
+				}
+			}
+		}
+		
+		return crcTable;
+	}
+	
 	public SWGObject createObject(String Template, Planet planet) {
 		return createObject(Template, 0, planet, new Point3D(0, 0, 0), new Quaternion(1, 0, 0, 0));
 	}
@@ -403,9 +425,11 @@ public class ObjectService implements INetworkDispatch {
 			@Override
 			public void process(SWGObject obj) {
 				objectList.remove(obj.getObjectID());
+				core.attributeService.invalidate(obj);
 			}
 		});
 		objectList.remove(object.getObjectID());
+		core.attributeService.invalidate(object);
 		//core.simulationService.remove(object, object.getPosition().x, object.getPosition().y);
 		
 	}
@@ -446,43 +470,39 @@ public class ObjectService implements INetworkDispatch {
 	}
 	
 	public CreatureObject getCreatureFromDB(long objectId) {
+		// a character saved moments ago may not have reached the database yet, the live copy may already be destroyed so a fresh one is loaded
+		core.persistenceService.writePending(core.getCreatureODB(), objectId);
+		
 		return core.getCreatureODB().get(new Long(objectId), Long.class, CreatureObject.class);
 	}
 	
 	private long generateObjectID() {
-		/*Random random = new Random();
-		
-		long objectID = random.nextInt();
-		
-		if(getObject(objectID) != null)
-			return generateObjectID();
-		
-		if(core.getCreatureODB().contains(new Long(objectID), Long.class, CreatureObject.class))
-			return generateObjectID();
-
-		return objectID;*/
-		
+		// ids above the stored high water mark were never handed out, so only objects loaded with fixed ids (snapshots) can be in the way
 		long newId;
 		
-		synchronized(objectMutex) {
-			newId = highestId.incrementAndGet();
-		}
-		
-		PreparedStatement ps2;
-
-		try {
-			ps2 = databaseConnection.preparedStatement("UPDATE highestid SET id=" + newId + " WHERE id=" + (newId-1));
-			ps2.executeUpdate();
-			ps2.close();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-		if(getObject(newId) == null && getCreatureFromDB(newId) == null)
-			return newId;
-		else
-			return generateObjectID();
+		do {
+			newId = idAllocator.nextId();
+		} while(getObject(newId) != null);
 		
-
+		return newId;
+	}
+	
+	/**
+	 * @return An id for a server only object which is never persisted, like temporary waypoints or spawns.
+	 */
+	public long generateTransientObjectID() {
+		return idAllocator.nextTransientId();
+	}
+	
+	/**
+	 * Creates an object with a transient id, the object must never be persisted.
+	 */
+	public SWGObject createTransientObject(String Template, Planet planet, Point3D position, Quaternion orientation) {
+		return createObject(Template, generateTransientObjectID(), planet, position, orientation, null, true);
+	}
+	
+	public ObjectIdAllocator getIdAllocator() {
+		return idAllocator;
 	}
 	
 	public void useObject(CreatureObject creature, SWGObject object) {
@@ -621,6 +641,7 @@ public class ObjectService implements INetworkDispatch {
 						objectShortName = splitName[0].toLowerCase();
 					}
 					
+					core.chatService.playerOnline(creature);
 					core.chatService.playerStatusChange(objectShortName, (byte) 1);
 					
 					if (!ghost.getFriendList().isEmpty()) {
@@ -650,14 +671,16 @@ public class ObjectService implements INetworkDispatch {
 	}
 
 	public void shutdown() {
-		
+		idAllocator.shutdown();
 	}
 
 	public void loadSnapshotObjects(Planet planet) {
 		
 		System.out.println("Loading client objects for: " + planet.getName());
 		WorldSnapshotVisitor visitor = planet.getSnapshotVisitor();
+		long startTime = System.currentTimeMillis();
 		int counter = 0;
+		List<SWGObject> loadedObjects = new ArrayList<SWGObject>(visitor.getChunks().size());
 		for(SnapshotChunk chunk : visitor.getChunks()) {
 			++counter;
 			SWGObject obj = createObject(visitor.getName(chunk.nameId), chunk.id, planet, new Point3D(chunk.xPosition, chunk.yPosition, chunk.zPosition), new Quaternion(chunk.orientationW, chunk.orientationX, chunk.orientationY, chunk.orientationZ));
@@ -667,20 +690,21 @@ public class ObjectService implements INetworkDispatch {
 				if(obj instanceof CellObject) {
 					((CellObject) obj).setCellNumber(chunk.cellNumber);
 				}
+				loadedObjects.add(obj);
 			}
 			//System.out.print("\rLoading Object [" + counter + "/" +  visitor.getChunks().size() + "] : " + visitor.getName(chunk.nameId));
         }
 		visitor.dispose();
-		synchronized(objectList) {
-			for(SWGObject obj : objectList.values()) {
-				if(obj.getParentId() != 0 && getObject(obj.getParentId()) != null) {
-					SWGObject parent = getObject(obj.getParentId());
+		// snapshot parents are always in the same snapshot, so only this planet's objects need linking
+		for(SWGObject obj : loadedObjects) {
+			if(obj.getParentId() != 0) {
+				SWGObject parent = getObject(obj.getParentId());
+				if(parent != null)
 					parent.add(obj);
-				} 
 			}
 		}
 		
-		System.out.println("Finished loading client objects for: " + planet.getName());
+		System.out.println("Finished loading " + loadedObjects.size() + " client objects for: " + planet.getName() + " in " + (System.currentTimeMillis() - startTime) + " ms");
 		
 	}
 	/**
@@ -748,7 +772,7 @@ public class ObjectService implements INetworkDispatch {
 	
 	public void readBuildoutDatatable(DatatableVisitor buildoutTable, Planet planet, float x1, float z1) throws InstantiationException, IllegalAccessException {
 
-		CrcStringTableVisitor crcTable = ClientFileManager.loadFile("misc/object_template_crc_string_table.iff", CrcStringTableVisitor.class);
+		CrcStringTableVisitor crcTable = getCrcTable();
 
 		for (int i = 0; i < buildoutTable.getRowCount(); i++) {
 			
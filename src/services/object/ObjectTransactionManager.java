@@ -21,18 +21,12 @@
  ******************************************************************************/
 package services.object;
 
-import java.util.Collection;
-import java.util.Iterator;
-
-import com.sleepycat.je.Transaction;
-
-import engine.resources.objects.IPersistent;
-import engine.resources.objects.SWGObject;
+import main.NGECore;
 
 
 /**
- * This Class is used to periodically save all Objects using transactions to disk.
- * Remember that you still need commit transactions manually whenever an object using transactions is removed from zone i.e. when a player logs out.
+ * This Class is used to periodically save all online Objects to disk.
+ * The objects are handed to the PersistenceService which writes them in batches on its own thread.
  * @author Light
  */
 public class ObjectTransactionManager implements Runnable {
@@ -59,33 +53,8 @@ public class ObjectTransactionManager implements Runnable {
 		try {
 			
 			Thread.sleep(cycleTime);
-							
-			Collection<SWGObject> swgObjects = objService.getObjectList().values();
-			
-			synchronized(swgObjects) {
-				
-			Iterator<SWGObject> it = swgObjects.iterator();
-				
-				while(it.hasNext()) {
-						
-					SWGObject obj = it.next();
-						
-					if(obj instanceof IPersistent && !obj.isInSnapshot() && obj.isPersistent()) {
-							
-						if(((IPersistent) obj).getTransaction() == null)
-							continue;
-						
-						if(!((IPersistent) obj).getTransaction().isValid())
-							continue;
-							
-						Transaction txn = ((IPersistent) obj).getTransaction();
-						txn.commitSync();
-							
-					}
-						
-				}
 			
-			}
+			NGECore.getInstance().persistenceService.saveOnlineObjects();
 			
 		} catch (InterruptedException e) {
 			e.printStackTrace();
@@ -94,5 +63,3 @@ public class ObjectTransactionManager implements Runnable {
 	}
 	
 }
-
-
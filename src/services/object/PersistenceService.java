@@ -0,0 +1,457 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package services.object;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import resources.objects.building.BuildingObject;
+import resources.objects.creature.CreatureObject;
+import resources.objects.guild.GuildObject;
+import resources.objects.player.PlayerObject;
+
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.Transaction;
+
+import engine.resources.database.ObjectDatabase;
+import engine.resources.objects.SWGObject;
+
+import main.NGECore;
+
+/**
+ * Write-behind persistence for objects stored in the object databases.
+ * 
+ * Saving an object only marks it dirty, a dedicated writer thread later stores all dirty objects in batches, one
+ * transaction per database and batch, committed without sync. The log is synced at most once per sync interval
+ * so many commits share one fsync. Saving an object that is already waiting to be written just replaces the pending copy.
+ * 
+ * Characters and the guild object mark themselves changed from their mutators and list deltas, the save pass every save interval
+ * only queues those. Changes that don't go through those paths are written with the next explicit save, e.g. on logout.
+ * The live object is written, not a snapshot, so it is serialized while holding its mutex.
+ */
+public class PersistenceService {
+	
+	private NGECore core;
+	
+	private final Map<PersistKey, PendingWrite> dirty = new ConcurrentHashMap<PersistKey, PendingWrite>();
+	// online characters and the guild object changed since they were last saved, by object id
+	private final Map<Long, SWGObject> changed = new ConcurrentHashMap<Long, SWGObject>();
+	private final BlockingQueue<PersistKey> queue;
+	private final Object writeLock = new Object();
+	private final Set<Environment> unsyncedEnvironments = new HashSet<Environment>();
+	private final Thread writer;
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+	private volatile boolean running = true;
+	
+	private int batchSize = 500;
+	private int syncInterval = 1000;
+	private long lastSync = System.currentTimeMillis();
+	
+	private AtomicLong saves = new AtomicLong();
+	private AtomicLong coalesced = new AtomicLong();
+	private AtomicLong written = new AtomicLong();
+	private AtomicLong batches = new AtomicLong();
+	private AtomicLong failures = new AtomicLong();
+	private AtomicLong backPressureWaits = new AtomicLong();
+	private volatile long lastBatchTime = 0;
+	
+	private static final int MAX_ATTEMPTS = 3;
+	
+	public PersistenceService(NGECore core) {
+		this.core = core;
+		
+		int queueSize = 10000;
+		int saveInterval = 300;
+		
+		if(core.getConfig().keyExists("PERSISTENCE.QUEUE_SIZE") && core.getConfig().getInt("PERSISTENCE.QUEUE_SIZE") > 0)
+			queueSize = core.getConfig().getInt("PERSISTENCE.QUEUE_SIZE");
+		
+		if(core.getConfig().keyExists("PERSISTENCE.BATCH_SIZE") && core.getConfig().getInt("PERSISTENCE.BATCH_SIZE") > 0)
+			batchSize = core.getConfig().getInt("PERSISTENCE.BATCH_SIZE");
+		
+		if(core.getConfig().keyExists("PERSISTENCE.SYNC_INTERVAL") && core.getConfig().getInt("PERSISTENCE.SYNC_INTERVAL") > 0)
+			syncInterval = core.getConfig().getInt("PERSISTENCE.SYNC_INTERVAL");
+		
+		if(core.getConfig().keyExists("PERSISTENCE.SAVE_INTERVAL"))
+			saveInterval = core.getConfig().getInt("PERSISTENCE.SAVE_INTERVAL");
+		
+		queue = new ArrayBlockingQueue<PersistKey>(queueSize);
+		
+		writer = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				while(running) {
+					try {
+						writeNext();
+					} catch (InterruptedException e) {
+						break;
+					} catch (Exception e) {
+						e.printStackTrace();
+					}
+				}
+			}
+			
+		}, "PersistenceWriter");
+		writer.setDaemon(true);
+		writer.start();
+		
+		// SAVE_INTERVAL=0 disables the periodic save of online players
+		if(saveInterval > 0) {
+			scheduler.scheduleAtFixedRate(new Runnable() {
+				
+				@Override
+				public void run() {
+					try {
+						saveOnlineObjects();
+					} catch (Exception e) {
+						e.printStackTrace();
+					}
+				}
+				
+			}, saveInterval, saveInterval, TimeUnit.SECONDS);
+		}
+	}
+	
+	/**
+	 * Marks a creature, building or guild object dirty so it is written to its database soon. Other objects are ignored.
+	 */
+	public void save(SWGObject object) {
+		if(object != null)
+			changed.remove(object.getObjectID());
+		
+		if(object instanceof CreatureObject)
+			save(core.getCreatureODB(), object.getObjectID(), (CreatureObject) object, CreatureObject.class);
+		else if(object instanceof BuildingObject)
+			save(core.getBuildingODB(), object.getObjectID(), (BuildingObject) object, BuildingObject.class);
+		else if(object instanceof GuildObject)
+			save(core.getGuildODB(), object.getObjectID(), (GuildObject) object, GuildObject.class);
+	}
+	
+	public <E> void save(ObjectDatabase odb, long key, E entity, Class<E> entityClass) {
+		PersistKey persistKey = new PersistKey(odb, key);
+		saves.incrementAndGet();
+		
+		if(dirty.put(persistKey, new PendingWrite(odb, key, entity, entityClass)) != null) {
+			coalesced.incrementAndGet();
+			return;
+		}
+		
+		if(queue.offer(persistKey))
+			return;
+		
+		// the writer is behind by more than the queue size, hold the caller until it catches up
+		backPressureWaits.incrementAndGet();
+		
+		try {
+			queue.put(persistKey);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Writes the pending write for this key right away if there is one, so the database holds the latest copy before it is read.
+	 */
+	public void writePending(ObjectDatabase odb, long key) {
+		// also waits for a batch in progress, the key may already be out of the dirty map but not yet written
+		synchronized(writeLock) {
+			List<PersistKey> batch = new ArrayList<PersistKey>(1);
+			batch.add(new PersistKey(odb, key));
+			write(batch);
+		}
+	}
+	
+	/**
+	 * Drops a pending write, e.g. before the object is deleted from the database.
+	 */
+	public void discard(ObjectDatabase odb, long key) {
+		// waits for a batch in progress so the write can't land after the caller's delete
+		synchronized(writeLock) {
+			dirty.remove(new PersistKey(odb, key));
+		}
+	}
+	
+	/**
+	 * Marks an online character or the guild object changed, so the next save pass writes it. A player object marks its character.
+	 */
+	public void markChanged(SWGObject object) {
+		if(object instanceof PlayerObject)
+			object = object.getContainer();
+		
+		// only what the save pass writes is kept, anything else would pile up here
+		if((object instanceof CreatureObject && object.getClient() != null) || object instanceof GuildObject)
+			changed.put(object.getObjectID(), object);
+	}
+	
+	/**
+	 * Queues the online players and the guild object that changed since they were last saved.
+	 */
+	public void saveOnlineObjects() {
+		// save takes each object out of the changed map, a change during the write marks it again
+		for(SWGObject object : changed.values())
+			save(object);
+	}
+	
+	public int getChangedCount() {
+		return changed.size();
+	}
+	
+	/**
+	 * Writes everything that is queued on the calling thread and syncs the log to disk. Used on shutdown.
+	 */
+	public void flush() {
+		List<PersistKey> batch = new ArrayList<PersistKey>();
+		
+		synchronized(writeLock) {
+			while(queue.drainTo(batch, batchSize) > 0) {
+				write(batch);
+				batch.clear();
+			}
+			
+			sync();
+		}
+	}
+	
+	private void writeNext() throws InterruptedException {
+		PersistKey first = queue.poll(syncInterval, TimeUnit.MILLISECONDS);
+		
+		synchronized(writeLock) {
+			if(first != null) {
+				List<PersistKey> batch = new ArrayList<PersistKey>(batchSize);
+				batch.add(first);
+				queue.drainTo(batch, batchSize - 1);
+				write(batch);
+			}
+			
+			if(System.currentTimeMillis() - lastSync >= syncInterval)
+				sync();
+		}
+	}
+	
+	private void write(List<PersistKey> batch) {
+		long startTime = System.currentTimeMillis();
+		Map<ObjectDatabase, List<PendingWrite>> writes = new LinkedHashMap<ObjectDatabase, List<PendingWrite>>();
+		
+		for(PersistKey key : batch) {
+			// removed before writing, so a save during the write queues the object again
+			PendingWrite write = dirty.remove(key);
+			
+			if(write == null)
+				continue;
+			
+			List<PendingWrite> list = writes.get(write.odb);
+			
+			if(list == null) {
+				list = new ArrayList<PendingWrite>();
+				writes.put(write.odb, list);
+			}
+			
+			list.add(write);
+		}
+		
+		for(Map.Entry<ObjectDatabase, List<PendingWrite>> entry : writes.entrySet()) {
+			if(put(entry.getKey(), entry.getValue()))
+				continue;
+			
+			// one bad entity mustn't cost the rest of the batch their save, so each is written on its own
+			for(PendingWrite write : entry.getValue()) {
+				List<PendingWrite> single = new ArrayList<PendingWrite>(1);
+				single.add(write);
+				
+				if(!put(entry.getKey(), single))
+					retry(write);
+			}
+		}
+		
+		batches.incrementAndGet();
+		lastBatchTime = System.currentTimeMillis() - startTime;
+	}
+	
+	private boolean put(ObjectDatabase odb, List<PendingWrite> writes) {
+		Transaction txn = odb.getEnvironment().beginTransaction(null, null);
+		
+		try {
+			for(PendingWrite write : writes)
+				write.put(txn);
+			
+			txn.commitNoSync();
+			unsyncedEnvironments.add(odb.getEnvironment());
+			written.addAndGet(writes.size());
+			return true;
+		} catch (Exception e) {
+			e.printStackTrace();
+			
+			try {
+				txn.abort();
+			} catch (Exception e2) {
+				e2.printStackTrace();
+			}
+			
+			return false;
+		}
+	}
+	
+	private void retry(PendingWrite write) {
+		failures.incrementAndGet();
+		
+		if(write.attempts >= MAX_ATTEMPTS) {
+			System.out.println("Giving up on saving object " + write.key + " after " + write.attempts + " attempts");
+			return;
+		}
+		
+		PersistKey persistKey = new PersistKey(write.odb, write.key);
+		
+		// a newer save of the object replaces the failed one
+		if(dirty.putIfAbsent(persistKey, write) == null && !queue.offer(persistKey))
+			dirty.remove(persistKey);
+	}
+	
+	private void sync() {
+		for(Environment environment : unsyncedEnvironments) {
+			try {
+				environment.flushLog(true);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+		
+		unsyncedEnvironments.clear();
+		lastSync = System.currentTimeMillis();
+	}
+	
+	public int getQueueDepth() {
+		return queue.size();
+	}
+	
+	public int getDirtyCount() {
+		return dirty.size();
+	}
+	
+	public long getSaves() {
+		return saves.get();
+	}
+	
+	public long getCoalesced() {
+		return coalesced.get();
+	}
+	
+	public long getWritten() {
+		return written.get();
+	}
+	
+	public long getBatches() {
+		return batches.get();
+	}
+	
+	public long getFailures() {
+		return failures.get();
+	}
+	
+	public long getBackPressureWaits() {
+		return backPressureWaits.get();
+	}
+	
+	public long getLastBatchTime() {
+		return lastBatchTime;
+	}
+	
+	public String getStatistics() {
+		return "Persistence: queue depth " + getQueueDepth() + ", " + getChangedCount() + " changed, " + getSaves() + " saves, " + getCoalesced() + " coalesced, " + getWritten() + " written in " + getBatches() + " batches, " + getFailures() + " failed, " + getBackPressureWaits() + " back pressure waits, last batch " + getLastBatchTime() + " ms";
+	}
+	
+	public void shutdown() {
+		scheduler.shutdown();
+		running = false;
+		writer.interrupt();
+		flush();
+	}
+	
+	private static class PersistKey {
+		
+		private final ObjectDatabase odb;
+		private final long key;
+		
+		public PersistKey(ObjectDatabase odb, long key) {
+			this.odb = odb;
+			this.key = key;
+		}
+		
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(odb) + (int) (key ^ (key >>> 32));
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof PersistKey))
+				return false;
+			
+			PersistKey other = (PersistKey) o;
+			return odb == other.odb && key == other.key;
+		}
+		
+	}
+	
+	private static class PendingWrite {
+		
+		private final ObjectDatabase odb;
+		private final long key;
+		private final Object entity;
+		private final Class<?> entityClass;
+		private int attempts = 0;
+		
+		public PendingWrite(ObjectDatabase odb, long key, Object entity, Class<?> entityClass) {
+			this.odb = odb;
+			this.key = key;
+			this.entity = entity;
+			this.entityClass = entityClass;
+		}
+		
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		public void put(Transaction txn) {
+			attempts++;
+			
+			// game threads change the object while it is written, holding its mutex keeps them out during serialization
+			if(entity instanceof SWGObject) {
+				synchronized(((SWGObject) entity).getMutex()) {
+					odb.put(entity, Long.class, (Class) entityClass, txn);
+				}
+			} else {
+				odb.put(entity, Long.class, (Class) entityClass, txn);
+			}
+		}
+		
+	}
+	
+}
@@ -21,9 +21,31 @@
  ******************************************************************************/
 package services.object;
 
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.mina.core.buffer.IoBuffer;
+import org.apache.mina.core.filterchain.IoFilterAdapter;
+import org.apache.mina.core.session.IoSession;
+import org.apache.mina.core.write.DefaultWriteRequest;
+import org.apache.mina.core.write.WriteRequest;
+
+import protocol.swg.SWGMessage;
+import resources.common.Opcodes;
+
+import engine.clients.Client;
+import engine.resources.objects.SWGObject;
+import engine.resources.scene.Planet;
+import engine.resources.scene.Point3D;
 import engine.resources.service.INetworkDispatch;
 import engine.resources.service.INetworkRemoteEvent;
 
@@ -36,12 +58,293 @@ public class UpdateService implements INetworkDispatch {
 	
 	private NGECore core;
 	
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+	private ConcurrentHashMap<IoSession, OutboundQueue> queues = new ConcurrentHashMap<IoSession, OutboundQueue>();
+	private int tickRate = 50;
+	
+	private AtomicLong queuedMessages = new AtomicLong();
+	private AtomicLong coalescedMessages = new AtomicLong();
+	private AtomicLong coalescedBytes = new AtomicLong();
+	private AtomicLong sentMessages = new AtomicLong();
+	private AtomicLong sentBytes = new AtomicLong();
+	private AtomicLong ticks = new AtomicLong();
+	private AtomicLong multicasts = new AtomicLong();
+	private AtomicLong multicastRecipients = new AtomicLong();
+	private volatile long lastTickMessages = 0;
+	private volatile long lastTickBytes = 0;
+	
 	public UpdateService(NGECore core) {
 		this.core = core;
+		
+		// UPDATE.TICK_RATE=0 sends every update immediately like before
+		if(core.getConfig().keyExists("UPDATE.TICK_RATE"))
+			tickRate = core.getConfig().getInt("UPDATE.TICK_RATE");
+		
+		if(tickRate > 0) {
+			scheduler.scheduleAtFixedRate(new Runnable() {
+				
+				@Override
+				public void run() {
+					try {
+						flush();
+					} catch (Exception e) {
+						e.printStackTrace();
+					}
+				}
+				
+			}, tickRate, tickRate, TimeUnit.MILLISECONDS);
+		}
+	}
+	
+	/**
+	 * Queues a message for all observers of an object, it is sent on the next tick in the order it was queued.
+	 */
+	public void notifyObservers(SWGObject object, IoBuffer buffer, boolean notifySelf) {
+		notifyObservers(object, buffer, notifySelf, false);
+	}
+	
+	/**
+	 * Queues a message for all observers of an object.
+	 * 
+	 * If coalesce is true and the message is a single variable delta or a transform update, it replaces an older update
+	 * of the same field/object that is still queued for a client, so only the latest value goes out on the next tick.
+	 */
+	public void notifyObservers(SWGObject object, IoBuffer buffer, boolean notifySelf, boolean coalesce) {
+		Object key = coalesce ? getCoalesceKey(buffer) : null;
+		
+		for(Client client : new ArrayList<Client>(object.getObservers()))
+			queue(client, buffer, key);
+		
+		if(notifySelf && object.getClient() != null)
+			queue(object.getClient(), buffer, key);
+	}
+	
+	/**
+	 * Serializes a message once and queues it for all observers of an object.
+	 */
+	public void notifyObservers(SWGObject object, SWGMessage message, boolean notifySelf) {
+		notifyObservers(object, message.serialize(), notifySelf, false);
+	}
+	
+	/**
+	 * Queues a message for the observers of an object that are within range of it.
+	 */
+	public void notifyObserversInRange(SWGObject object, IoBuffer buffer, boolean notifySelf, float range) {
+		Point3D position = object.getWorldPosition();
+		List<Client> recipients = new ArrayList<Client>();
+		
+		for(Client client : new ArrayList<Client>(object.getObservers())) {
+			if(client.getParent() != null && client.getParent().getWorldPosition().getDistance(position) <= range)
+				recipients.add(client);
+		}
+		
+		if(notifySelf && object.getClient() != null)
+			recipients.add(object.getClient());
+		
+		multicast(recipients, buffer);
+	}
+	
+	/**
+	 * Queues a message for every client on a planet.
+	 */
+	public void notifyPlanet(Planet planet, IoBuffer buffer) {
+		List<Client> recipients = new ArrayList<Client>();
+		
+		for(Client client : core.getActiveConnectionsMap().values()) {
+			if(client.getParent() != null && client.getParent().getPlanet() == planet)
+				recipients.add(client);
+		}
+		
+		multicast(recipients, buffer);
+	}
+	
+	/**
+	 * Queues a message for every client that is in the world.
+	 */
+	public void notifyAllClients(IoBuffer buffer) {
+		List<Client> recipients = new ArrayList<Client>();
+		
+		for(Client client : core.getActiveConnectionsMap().values()) {
+			if(client.getParent() != null)
+				recipients.add(client);
+		}
+		
+		multicast(recipients, buffer);
+	}
+	
+	/**
+	 * Sends one encoded message to a set of clients.
+	 * 
+	 * Every recipient gets a duplicate that shares the encoded bytes, so the message is serialized once no matter how
+	 * many clients receive it. The buffer must not be changed afterwards. Writes go out with each client's other
+	 * messages on the next tick.
+	 */
+	public void multicast(Collection<Client> recipients, IoBuffer buffer) {
+		if(recipients.isEmpty())
+			return;
+		
+		multicasts.incrementAndGet();
+		multicastRecipients.addAndGet(recipients.size());
+		
+		for(Client client : recipients)
+			queue(client, buffer, null);
+	}
+	
+	public void queue(Client client, IoBuffer buffer) {
+		queue(client, buffer, null);
+	}
+	
+	public void queue(Client client, IoBuffer buffer, Object key) {
+		if(client == null || client.getSession() == null)
+			return;
+		
+		IoSession session = client.getSession();
+		
+		if(tickRate <= 0) {
+			session.write(buffer.duplicate());
+			return;
+		}
+		
+		OutboundQueue queue = queues.get(session);
+		
+		if(queue == null) {
+			queue = new OutboundQueue();
+			OutboundQueue existing = queues.putIfAbsent(session, queue);
+			if(existing != null) {
+				queue = existing;
+			} else {
+				try {
+					session.getFilterChain().addLast("outboundQueue", queue);
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		
+		queuedMessages.incrementAndGet();
+		
+		IoBuffer replaced = queue.add(key, buffer.duplicate());
+		
+		if(replaced != null) {
+			coalescedMessages.incrementAndGet();
+			coalescedBytes.addAndGet(replaced.remaining());
+		}
+	}
+	
+	public void flush() {
+		long tickMessages = 0;
+		long tickBytes = 0;
+		
+		for(Map.Entry<IoSession, OutboundQueue> entry : queues.entrySet()) {
+			IoSession session = entry.getKey();
+			
+			if(!session.isConnected()) {
+				queues.remove(session);
+				continue;
+			}
+			
+			OutboundQueue queue = entry.getValue();
+			
+			// all of a client's messages for this tick go out back to back so the protocol layer can pack them together
+			synchronized(queue) {
+				List<IoBuffer> messages = queue.drain();
+				
+				for(IoBuffer message : messages) {
+					tickBytes += message.remaining();
+					session.write(message);
+				}
+				
+				tickMessages += messages.size();
+			}
+		}
+		
+		sentMessages.addAndGet(tickMessages);
+		sentBytes.addAndGet(tickBytes);
+		lastTickMessages = tickMessages;
+		lastTickBytes = tickBytes;
+		ticks.incrementAndGet();
+	}
+	
+	private Object getCoalesceKey(IoBuffer buffer) {
+		int position = buffer.position();
+		ByteOrder order = buffer.order();
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		
+		try {
+			if(buffer.remaining() < 14)
+				return null;
+			
+			int opcode = buffer.getInt(position + 2);
+			long objectId = buffer.getLong(position + 6);
+			
+			if(opcode == Opcodes.UpdateTransformMessage)
+				return new UpdateKey(objectId, opcode, 0, 0);
+			
+			// the cell id comes first, the object id follows it
+			if(opcode == Opcodes.UpdateTransformWithParentMessage)
+				return (buffer.remaining() < 22) ? null : new UpdateKey(buffer.getLong(position + 14), opcode, 0, 0);
+			
+			// only deltas with one update can be coalesced, list deltas carry their own update counters
+			if(opcode == Opcodes.DeltasMessage && buffer.remaining() >= 27 && buffer.getShort(position + 23) == 1)
+				return new UpdateKey(objectId, opcode, buffer.getInt(position + 14), (buffer.get(position + 18) << 16) | (buffer.getShort(position + 25) & 0xFFFF));
+			
+			return null;
+		} finally {
+			buffer.order(order);
+		}
+	}
+	
+	public int getTickRate() {
+		return tickRate;
+	}
+	
+	public long getQueuedMessages() {
+		return queuedMessages.get();
+	}
+	
+	public long getSentMessages() {
+		return sentMessages.get();
+	}
+	
+	public long getSentBytes() {
+		return sentBytes.get();
+	}
+	
+	public long getCoalescedMessages() {
+		return coalescedMessages.get();
+	}
+	
+	public long getCoalescedBytes() {
+		return coalescedBytes.get();
+	}
+	
+	public long getLastTickMessages() {
+		return lastTickMessages;
+	}
+	
+	public long getLastTickBytes() {
+		return lastTickBytes;
+	}
+	
+	public long getMulticasts() {
+		return multicasts.get();
+	}
+	
+	public long getMulticastRecipients() {
+		return multicastRecipients.get();
+	}
+	
+	public String getStatistics() {
+		long tickCount = ticks.get();
+		return "Ticks: " + tickCount + " Queued: " + queuedMessages.get() + " Sent: " + sentMessages.get() + " (" + sentBytes.get() + " bytes)"
+				+ " Coalesced: " + coalescedMessages.get() + " (" + coalescedBytes.get() + " bytes saved)"
+				+ " Multicast: " + multicasts.get() + " messages to " + multicastRecipients.get() + " recipients"
+				+ " Last tick: " + lastTickMessages + " messages, " + lastTickBytes + " bytes";
 	}
 
 	public void shutdown() {
-
+		scheduler.shutdown();
+		flush();
 	}
 
 	@Override
@@ -50,5 +353,88 @@ public class UpdateService implements INetworkDispatch {
 		// TODO Auto-generated method stub
 		
 	}
+	
+	/**
+	 * The messages queued for one session.
+	 * 
+	 * It is also the last filter of the session's filter chain, so a message written to the session directly,
+	 * like a baseline or a scene destroy, first sends everything still queued and can't overtake older updates.
+	 */
+	private class OutboundQueue extends IoFilterAdapter {
+		
+		private LinkedHashMap<Object, IoBuffer> messages = new LinkedHashMap<Object, IoBuffer>();
+		
+		public synchronized IoBuffer add(Object key, IoBuffer buffer) {
+			// messages that can't be coalesced get a key of their own
+			if(key == null)
+				key = new Object();
+			// the latest value goes to the back of the queue so it isn't sent ahead of messages queued after the one it replaces
+			IoBuffer replaced = messages.remove(key);
+			messages.put(key, buffer);
+			return replaced;
+		}
+		
+		@Override
+		public void filterWrite(NextFilter nextFilter, IoSession session, WriteRequest writeRequest) throws Exception {
+			synchronized(this) {
+				if(!messages.isEmpty()) {
+					List<IoBuffer> pending = drain();
+					long bytes = 0;
+					
+					for(IoBuffer message : pending) {
+						bytes += message.remaining();
+						nextFilter.filterWrite(session, new DefaultWriteRequest(message));
+					}
+					
+					sentMessages.addAndGet(pending.size());
+					sentBytes.addAndGet(bytes);
+				}
+				
+				nextFilter.filterWrite(session, writeRequest);
+			}
+		}
+		
+		public synchronized List<IoBuffer> drain() {
+			if(messages.isEmpty())
+				return new ArrayList<IoBuffer>(0);
+			List<IoBuffer> drained = new ArrayList<IoBuffer>(messages.values());
+			messages.clear();
+			return drained;
+		}
+		
+	}
+	
+	private static class UpdateKey {
+		
+		private final long objectId;
+		private final int opcode;
+		private final int type;
+		private final int field;
+		
+		public UpdateKey(long objectId, int opcode, int type, int field) {
+			this.objectId = objectId;
+			this.opcode = opcode;
+			this.type = type;
+			this.field = field;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if(!(obj instanceof UpdateKey))
+				return false;
+			UpdateKey other = (UpdateKey) obj;
+			return objectId == other.objectId && opcode == other.opcode && type == other.type && field == other.field;
+		}
+		
+		@Override
+		public int hashCode() {
+			int result = (int) (objectId ^ (objectId >>> 32));
+			result = 31 * result + opcode;
+			result = 31 * result + type;
+			result = 31 * result + field;
+			return result;
+		}
+		
+	}
 
 }
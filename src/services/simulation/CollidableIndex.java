@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package services.simulation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import resources.common.collidables.AbstractCollidable;
+
+/**
+ * A per-planet index of collidable areas by grid cell.
+ * 
+ * An area is put into every cell its bounds overlap, so a lookup only touches the areas of one cell
+ * no matter how many areas the planet has or how large they are.
+ * Areas must be removed and added again if their bounds change.
+ */
+public class CollidableIndex {
+	
+	private final int cellSize;
+	private final Map<Long, List<AbstractCollidable>> cells = new ConcurrentHashMap<Long, List<AbstractCollidable>>();
+	// bounds each area was indexed with, so it can be removed even if it changed since
+	private final Map<AbstractCollidable, float[]> indexedBounds = new ConcurrentHashMap<AbstractCollidable, float[]>();
+	
+	public CollidableIndex(int cellSize) {
+		this.cellSize = cellSize;
+	}
+	
+	public void add(AbstractCollidable collidable) {
+		float[] bounds = new float[] { collidable.getMinX(), collidable.getMinZ(), collidable.getMaxX(), collidable.getMaxZ() };
+		
+		synchronized(this) {
+			if(indexedBounds.containsKey(collidable))
+				remove(collidable);
+			
+			indexedBounds.put(collidable, bounds);
+			
+			for(int cellX = getCell(bounds[0]); cellX <= getCell(bounds[2]); cellX++) {
+				for(int cellZ = getCell(bounds[1]); cellZ <= getCell(bounds[3]); cellZ++) {
+					long key = getKey(cellX, cellZ);
+					List<AbstractCollidable> cell = cells.get(key);
+					
+					if(cell == null) {
+						cell = new CopyOnWriteArrayList<AbstractCollidable>();
+						cells.put(key, cell);
+					}
+					
+					cell.add(collidable);
+				}
+			}
+		}
+	}
+	
+	public synchronized boolean remove(AbstractCollidable collidable) {
+		float[] bounds = indexedBounds.remove(collidable);
+		
+		if(bounds == null)
+			return false;
+		
+		for(int cellX = getCell(bounds[0]); cellX <= getCell(bounds[2]); cellX++) {
+			for(int cellZ = getCell(bounds[1]); cellZ <= getCell(bounds[3]); cellZ++) {
+				long key = getKey(cellX, cellZ);
+				List<AbstractCollidable> cell = cells.get(key);
+				
+				if(cell == null)
+					continue;
+				
+				cell.remove(collidable);
+				
+				if(cell.isEmpty())
+					cells.remove(key);
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * @return The areas whose bounds cover the position, the caller still has to check if the area's shape collides.
+	 */
+	public List<AbstractCollidable> get(float x, float z) {
+		List<AbstractCollidable> cell = cells.get(getKey(getCell(x), getCell(z)));
+		
+		if(cell == null)
+			return Collections.emptyList();
+		
+		List<AbstractCollidable> result = new ArrayList<AbstractCollidable>(cell.size());
+		
+		for(AbstractCollidable collidable : cell) {
+			float[] bounds = indexedBounds.get(collidable);
+			
+			if(bounds != null && x >= bounds[0] && x <= bounds[2] && z >= bounds[1] && z <= bounds[3])
+				result.add(collidable);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return The areas whose bounds overlap the square of the range around the position.
+	 */
+	public List<AbstractCollidable> get(float x, float z, float range) {
+		Set<AbstractCollidable> result = new HashSet<AbstractCollidable>();
+		
+		for(int cellX = getCell(x - range); cellX <= getCell(x + range); cellX++) {
+			for(int cellZ = getCell(z - range); cellZ <= getCell(z + range); cellZ++) {
+				List<AbstractCollidable> cell = cells.get(getKey(cellX, cellZ));
+				
+				if(cell == null)
+					continue;
+				
+				for(AbstractCollidable collidable : cell) {
+					float[] bounds = indexedBounds.get(collidable);
+					
+					if(bounds != null && x + range >= bounds[0] && x - range <= bounds[2] && z + range >= bounds[1] && z - range <= bounds[3])
+						result.add(collidable);
+				}
+			}
+		}
+		
+		return new ArrayList<AbstractCollidable>(result);
+	}
+	
+	public int size() {
+		return indexedBounds.size();
+	}
+	
+	private int getCell(float coordinate) {
+		return (int) Math.floor(coordinate / cellSize);
+	}
+	
+	private long getKey(int cellX, int cellZ) {
+		return (((long) cellX) << 32) | (cellZ & 0xFFFFFFFFL);
+	}
+
+}
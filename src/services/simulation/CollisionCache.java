@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package services.simulation;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import engine.clientdata.ClientFileManager;
+import engine.clientdata.visitors.MeshVisitor;
+import engine.resources.common.Mesh3DTriangle;
+import engine.resources.objects.SWGObject;
+import engine.resources.scene.Point3D;
+
+/**
+ * Caches collision geometry for line of sight checks.
+ * 
+ * Meshes get their BVH built once per template or cell mesh file, world space bounds are kept per object until it moves,
+ * and line of sight results between two objects are reused for a short time while neither of them moves.
+ */
+public class CollisionCache {
+	
+	private static final long LOS_CACHE_TIME = 500;
+	private static final float LOS_CACHE_DISTANCE = 0.5f;
+	private static final int LOS_CACHE_LIMIT = 20000;
+	
+	private static final CollisionMesh EMPTY_MESH = new CollisionMesh(new ArrayList<Mesh3DTriangle>());
+	
+	private final Map<String, CollisionMesh> meshes = new ConcurrentHashMap<String, CollisionMesh>();
+	private final Map<String, CollisionMesh> cellMeshes = new ConcurrentHashMap<String, CollisionMesh>();
+	private final Map<Long, WorldBounds> worldBounds = new ConcurrentHashMap<Long, WorldBounds>();
+	private final Map<LosKey, LosResult> losResults = new ConcurrentHashMap<LosKey, LosResult>();
+	
+	private final AtomicLong losHits = new AtomicLong();
+	private final AtomicLong losMisses = new AtomicLong();
+	
+	/**
+	 * @return The collision mesh of the object's appearance, or null if it has none.
+	 */
+	public CollisionMesh getMesh(SWGObject object) {
+		String template = object.getTemplate();
+		CollisionMesh mesh = (template == null) ? null : meshes.get(template);
+		
+		if(mesh == null) {
+			MeshVisitor visitor = object.getMeshVisitor();
+			
+			if(visitor == null)
+				return null;
+			
+			mesh = new CollisionMesh(visitor.getTriangles());
+			
+			if(template != null)
+				meshes.put(template, mesh);
+		}
+		
+		return mesh.isEmpty() ? null : mesh;
+	}
+	
+	/**
+	 * @return The collision mesh of a cell mesh file, or null if it could not be loaded or is empty.
+	 */
+	public CollisionMesh getCellMesh(String path) {
+		CollisionMesh mesh = cellMeshes.get(path);
+		
+		if(mesh == null) {
+			try {
+				MeshVisitor visitor = ClientFileManager.loadFile(path, MeshVisitor.class);
+				mesh = (visitor == null) ? EMPTY_MESH : new CollisionMesh(visitor.getTriangles());
+			} catch (InstantiationException | IllegalAccessException e) {
+				e.printStackTrace();
+				mesh = EMPTY_MESH;
+			}
+			
+			cellMeshes.put(path, mesh);
+		}
+		
+		return mesh.isEmpty() ? null : mesh;
+	}
+	
+	/**
+	 * @return The world space bounds of the object's mesh as {minX, minY, minZ, maxX, maxY, maxZ}.
+	 */
+	public float[] getWorldBounds(SWGObject object, CollisionMesh mesh) {
+		Point3D position = object.getPosition();
+		float radians = object.getRadians();
+		WorldBounds bounds = worldBounds.get(object.getObjectID());
+		
+		if(bounds != null && bounds.x == position.x && bounds.y == position.y && bounds.z == position.z && bounds.radians == radians)
+			return bounds.bounds;
+		
+		bounds = new WorldBounds(position, radians, transformBounds(mesh.getBounds(), position, radians));
+		worldBounds.put(object.getObjectID(), bounds);
+		
+		return bounds.bounds;
+	}
+	
+	private float[] transformBounds(float[] model, Point3D position, float radians) {
+		float sin = (float) Math.sin(radians);
+		float cos = (float) Math.cos(radians);
+		float minX = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+		
+		// rotation is only around the y axis, so the 4 corners in the xz plane are enough
+		for(int i = 0; i < 4; i++) {
+			float x = ((i & 1) == 0) ? model[0] : model[3];
+			float z = ((i & 2) == 0) ? model[2] : model[5];
+			float worldX = cos * x + sin * z;
+			float worldZ = -sin * x + cos * z;
+			
+			minX = Math.min(minX, worldX);
+			maxX = Math.max(maxX, worldX);
+			minZ = Math.min(minZ, worldZ);
+			maxZ = Math.max(maxZ, worldZ);
+		}
+		
+		return new float[] { minX + position.x, model[1] + position.y, minZ + position.z, maxX + position.x, model[4] + position.y, maxZ + position.z };
+	}
+	
+	public void remove(SWGObject object) {
+		worldBounds.remove(object.getObjectID());
+	}
+	
+	/**
+	 * @return The cached line of sight result between the two points, or null if there is no recent result for them.
+	 */
+	public Boolean getLineOfSight(SWGObject obj1, SWGObject obj2, Point3D origin, Point3D end) {
+		LosResult result = losResults.get(new LosKey(obj1.getObjectID(), obj2.getObjectID()));
+		
+		if(result == null || System.currentTimeMillis() - result.time > LOS_CACHE_TIME || origin.getDistance(result.origin) > LOS_CACHE_DISTANCE || end.getDistance(result.end) > LOS_CACHE_DISTANCE) {
+			losMisses.incrementAndGet();
+			return null;
+		}
+		
+		losHits.incrementAndGet();
+		return result.lineOfSight;
+	}
+	
+	public void putLineOfSight(SWGObject obj1, SWGObject obj2, Point3D origin, Point3D end, boolean lineOfSight) {
+		long now = System.currentTimeMillis();
+		
+		if(losResults.size() >= LOS_CACHE_LIMIT) {
+			for(Iterator<LosResult> it = losResults.values().iterator(); it.hasNext();) {
+				if(now - it.next().time > LOS_CACHE_TIME)
+					it.remove();
+			}
+			
+			if(losResults.size() >= LOS_CACHE_LIMIT)
+				losResults.clear();
+		}
+		
+		losResults.put(new LosKey(obj1.getObjectID(), obj2.getObjectID()), new LosResult(origin, end, lineOfSight, now));
+	}
+	
+	public long getLosHits() {
+		return losHits.get();
+	}
+	
+	public long getLosMisses() {
+		return losMisses.get();
+	}
+	
+	public String getStatistics() {
+		return "Collision: " + meshes.size() + " meshes, " + cellMeshes.size() + " cell meshes, " + worldBounds.size() + " object bounds, LOS cache " + losResults.size() + " entries, " + getLosHits() + " hits, " + getLosMisses() + " misses";
+	}
+	
+	private static class WorldBounds {
+		
+		private final float x, y, z, radians;
+		private final float[] bounds;
+		
+		public WorldBounds(Point3D position, float radians, float[] bounds) {
+			this.x = position.x;
+			this.y = position.y;
+			this.z = position.z;
+			this.radians = radians;
+			this.bounds = bounds;
+		}
+		
+	}
+	
+	private static class LosKey {
+		
+		private final long id1;
+		private final long id2;
+		
+		public LosKey(long id1, long id2) {
+			this.id1 = id1;
+			this.id2 = id2;
+		}
+		
+		@Override
+		public int hashCode() {
+			long hash = id1 * 31 + id2;
+			return (int) (hash ^ (hash >>> 32));
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			if(!(o instanceof LosKey))
+				return false;
+			
+			LosKey other = (LosKey) o;
+			return id1 == other.id1 && id2 == other.id2;
+		}
+		
+	}
+	
+	private static class LosResult {
+		
+		private final Point3D origin;
+		private final Point3D end;
+		private final boolean lineOfSight;
+		private final long time;
+		
+		public LosResult(Point3D origin, Point3D end, boolean lineOfSight, long time) {
+			this.origin = origin;
+			this.end = end;
+			this.lineOfSight = lineOfSight;
+			this.time = time;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,284 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package services.simulation;
+
+import java.util.List;
+
+import engine.resources.common.Mesh3DTriangle;
+import engine.resources.scene.Point3D;
+
+/**
+ * Collision geometry of a mesh in model space with a bounding volume hierarchy over its triangles.
+ * 
+ * Built once per mesh and shared by every object using it.
+ */
+public class CollisionMesh {
+	
+	private static final int LEAF_SIZE = 4;
+	private static final float EPSILON = 0.000001f;
+	
+	// 9 floats per triangle, reordered so every node covers a contiguous range
+	private final float[] vertices;
+	private final int triangleCount;
+	private final Node root;
+	
+	public CollisionMesh(List<Mesh3DTriangle> triangles) {
+		triangleCount = triangles.size();
+		float[] source = new float[triangleCount * 9];
+		
+		for(int i = 0; i < triangleCount; i++) {
+			Point3D[] points = triangles.get(i).getPoints();
+			
+			for(int j = 0; j < 3; j++) {
+				source[i * 9 + j * 3] = points[j].x;
+				source[i * 9 + j * 3 + 1] = points[j].y;
+				source[i * 9 + j * 3 + 2] = points[j].z;
+			}
+		}
+		
+		int[] order = new int[triangleCount];
+		float[] centroids = new float[triangleCount * 3];
+		
+		for(int i = 0; i < triangleCount; i++) {
+			order[i] = i;
+			
+			for(int axis = 0; axis < 3; axis++)
+				centroids[i * 3 + axis] = (source[i * 9 + axis] + source[i * 9 + 3 + axis] + source[i * 9 + 6 + axis]) / 3;
+		}
+		
+		root = (triangleCount == 0) ? null : build(source, centroids, order, 0, triangleCount);
+		vertices = new float[triangleCount * 9];
+		
+		for(int i = 0; i < triangleCount; i++)
+			System.arraycopy(source, order[i] * 9, vertices, i * 9, 9);
+	}
+	
+	public boolean isEmpty() {
+		return triangleCount == 0;
+	}
+	
+	public int getTriangleCount() {
+		return triangleCount;
+	}
+	
+	/**
+	 * @return The model space bounds as {minX, minY, minZ, maxX, maxY, maxZ}, or null for an empty mesh.
+	 */
+	public float[] getBounds() {
+		if(root == null)
+			return null;
+		
+		return new float[] { root.minX, root.minY, root.minZ, root.maxX, root.maxY, root.maxZ };
+	}
+	
+	/**
+	 * Tests the segment between two model space points against the mesh.
+	 */
+	public boolean intersectsSegment(float x1, float y1, float z1, float x2, float y2, float z2) {
+		if(root == null)
+			return false;
+		
+		float dx = x2 - x1;
+		float dy = y2 - y1;
+		float dz = z2 - z1;
+		
+		return intersects(root, x1, y1, z1, dx, dy, dz);
+	}
+	
+	private boolean intersects(Node node, float ox, float oy, float oz, float dx, float dy, float dz) {
+		
+		if(!segmentIntersectsBox(ox, oy, oz, dx, dy, dz, node.minX, node.minY, node.minZ, node.maxX, node.maxY, node.maxZ))
+			return false;
+		
+		if(node.left == null) {
+			for(int i = node.start; i < node.start + node.count; i++) {
+				if(intersectsTriangle(i * 9, ox, oy, oz, dx, dy, dz))
+					return true;
+			}
+			
+			return false;
+		}
+		
+		return intersects(node.left, ox, oy, oz, dx, dy, dz) || intersects(node.right, ox, oy, oz, dx, dy, dz);
+	}
+	
+	// Moller-Trumbore, limited to the segment (0 <= t <= 1)
+	private boolean intersectsTriangle(int offset, float ox, float oy, float oz, float dx, float dy, float dz) {
+		float[] v = vertices;
+		
+		float e1x = v[offset + 3] - v[offset], e1y = v[offset + 4] - v[offset + 1], e1z = v[offset + 5] - v[offset + 2];
+		float e2x = v[offset + 6] - v[offset], e2y = v[offset + 7] - v[offset + 1], e2z = v[offset + 8] - v[offset + 2];
+		
+		float px = dy * e2z - dz * e2y;
+		float py = dz * e2x - dx * e2z;
+		float pz = dx * e2y - dy * e2x;
+		
+		float det = e1x * px + e1y * py + e1z * pz;
+		
+		if(det > -EPSILON && det < EPSILON)
+			return false;
+		
+		float invDet = 1 / det;
+		float tx = ox - v[offset], ty = oy - v[offset + 1], tz = oz - v[offset + 2];
+		float u = (tx * px + ty * py + tz * pz) * invDet;
+		
+		if(u < 0 || u > 1)
+			return false;
+		
+		float qx = ty * e1z - tz * e1y;
+		float qy = tz * e1x - tx * e1z;
+		float qz = tx * e1y - ty * e1x;
+		float w = (dx * qx + dy * qy + dz * qz) * invDet;
+		
+		if(w < 0 || u + w > 1)
+			return false;
+		
+		float t = (e2x * qx + e2y * qy + e2z * qz) * invDet;
+		
+		return t >= 0 && t <= 1;
+	}
+	
+	/**
+	 * Slab test of the segment origin + t * direction, 0 <= t <= 1, against an axis aligned box.
+	 */
+	public static boolean segmentIntersectsBox(float ox, float oy, float oz, float dx, float dy, float dz, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+		float tMin = 0;
+		float tMax = 1;
+		
+		if(Math.abs(dx) < EPSILON) {
+			if(ox < minX || ox > maxX)
+				return false;
+		} else {
+			float t1 = (minX - ox) / dx;
+			float t2 = (maxX - ox) / dx;
+			tMin = Math.max(tMin, Math.min(t1, t2));
+			tMax = Math.min(tMax, Math.max(t1, t2));
+			if(tMin > tMax)
+				return false;
+		}
+		
+		if(Math.abs(dy) < EPSILON) {
+			if(oy < minY || oy > maxY)
+				return false;
+		} else {
+			float t1 = (minY - oy) / dy;
+			float t2 = (maxY - oy) / dy;
+			tMin = Math.max(tMin, Math.min(t1, t2));
+			tMax = Math.min(tMax, Math.max(t1, t2));
+			if(tMin > tMax)
+				return false;
+		}
+		
+		if(Math.abs(dz) < EPSILON) {
+			if(oz < minZ || oz > maxZ)
+				return false;
+		} else {
+			float t1 = (minZ - oz) / dz;
+			float t2 = (maxZ - oz) / dz;
+			tMin = Math.max(tMin, Math.min(t1, t2));
+			tMax = Math.min(tMax, Math.max(t1, t2));
+			if(tMin > tMax)
+				return false;
+		}
+		
+		return true;
+	}
+	
+	private Node build(float[] source, float[] centroids, int[] order, int start, int count) {
+		Node node = new Node();
+		node.minX = node.minY = node.minZ = Float.MAX_VALUE;
+		node.maxX = node.maxY = node.maxZ = -Float.MAX_VALUE;
+		
+		for(int i = start; i < start + count; i++) {
+			int offset = order[i] * 9;
+			
+			for(int j = 0; j < 9; j += 3) {
+				node.minX = Math.min(node.minX, source[offset + j]);
+				node.minY = Math.min(node.minY, source[offset + j + 1]);
+				node.minZ = Math.min(node.minZ, source[offset + j + 2]);
+				node.maxX = Math.max(node.maxX, source[offset + j]);
+				node.maxY = Math.max(node.maxY, source[offset + j + 1]);
+				node.maxZ = Math.max(node.maxZ, source[offset + j + 2]);
+			}
+		}
+		
+		node.start = start;
+		node.count = count;
+		
+		if(count <= LEAF_SIZE)
+			return node;
+		
+		float extentX = node.maxX - node.minX;
+		float extentY = node.maxY - node.minY;
+		float extentZ = node.maxZ - node.minZ;
+		int axis = (extentX >= extentY && extentX >= extentZ) ? 0 : ((extentY >= extentZ) ? 1 : 2);
+		
+		sortByCentroid(centroids, order, start, start + count - 1, axis);
+		
+		int half = count / 2;
+		node.left = build(source, centroids, order, start, half);
+		node.right = build(source, centroids, order, start + half, count - half);
+		
+		return node;
+	}
+	
+	private void sortByCentroid(float[] centroids, int[] order, int low, int high, int axis) {
+		while(low < high) {
+			float pivot = centroids[order[(low + high) >>> 1] * 3 + axis];
+			int i = low;
+			int j = high;
+			
+			while(i <= j) {
+				while(centroids[order[i] * 3 + axis] < pivot)
+					i++;
+				while(centroids[order[j] * 3 + axis] > pivot)
+					j--;
+				
+				if(i <= j) {
+					int swap = order[i];
+					order[i] = order[j];
+					order[j] = swap;
+					i++;
+					j--;
+				}
+			}
+			
+			// recurse into the smaller half to bound the stack depth
+			if(j - low < high - i) {
+				sortByCentroid(centroids, order, low, j, axis);
+				low = i;
+			} else {
+				sortByCentroid(centroids, order, i, high, axis);
+				high = j;
+			}
+		}
+	}
+	
+	private static class Node {
+		
+		private float minX, minY, minZ, maxX, maxY, maxZ;
+		private int start, count;
+		private Node left, right;
+		
+	}
+	
+}
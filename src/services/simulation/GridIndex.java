@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package services.simulation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Uniform grid spatial index that can be used concurrently.
+ * 
+ * Each cell holds its objects together with their last known position. Cells are guarded by a fixed number of lock stripes,
+ * so threads moving objects in different parts of the planet don't contend with each other, and a move within the same cell
+ * only updates the stored position.
+ */
+public class GridIndex<T> implements SpatialIndex<T> {
+	
+	private static final int LOCK_STRIPES = 256;
+	
+	private final float minX;
+	private final float minY;
+	private final float cellSize;
+	private final int cellsX;
+	private final int cellsY;
+	private final Map<T, Position>[] cells;
+	private final ReentrantReadWriteLock[] locks = new ReentrantReadWriteLock[LOCK_STRIPES];
+	
+	@SuppressWarnings("unchecked")
+	public GridIndex(float minX, float minY, float maxX, float maxY, float cellSize) {
+		this.minX = minX;
+		this.minY = minY;
+		this.cellSize = cellSize;
+		cellsX = (int) Math.ceil((maxX - minX) / cellSize);
+		cellsY = (int) Math.ceil((maxY - minY) / cellSize);
+		cells = new Map[cellsX * cellsY];
+		for(int i = 0; i < LOCK_STRIPES; i++)
+			locks[i] = new ReentrantReadWriteLock();
+	}
+
+	@Override
+	public boolean put(float x, float y, T object) {
+		int cell = getCell(x, y);
+		ReentrantReadWriteLock lock = getLock(cell);
+		lock.writeLock().lock();
+		try {
+			if(cells[cell] == null)
+				cells[cell] = new HashMap<T, Position>();
+			cells[cell].put(object, new Position(x, y));
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean remove(float x, float y, T object) {
+		int cell = getCell(x, y);
+		ReentrantReadWriteLock lock = getLock(cell);
+		lock.writeLock().lock();
+		try {
+			return cells[cell] != null && cells[cell].remove(object) != null;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean move(T object, float oldX, float oldY, float newX, float newY) {
+		int oldCell = getCell(oldX, oldY);
+		int newCell = getCell(newX, newY);
+		
+		if(oldCell == newCell) {
+			ReentrantReadWriteLock lock = getLock(oldCell);
+			lock.writeLock().lock();
+			try {
+				Position position = (cells[oldCell] == null) ? null : cells[oldCell].get(object);
+				if(position == null)
+					return false;
+				position.x = newX;
+				position.y = newY;
+				return true;
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+		
+		// always lock the lower stripe first so two opposite moves can't deadlock
+		ReentrantReadWriteLock first = getLock(Math.min(oldCell % LOCK_STRIPES, newCell % LOCK_STRIPES));
+		ReentrantReadWriteLock second = getLock(Math.max(oldCell % LOCK_STRIPES, newCell % LOCK_STRIPES));
+		first.writeLock().lock();
+		second.writeLock().lock();
+		try {
+			if(cells[oldCell] == null || cells[oldCell].remove(object) == null)
+				return false;
+			if(cells[newCell] == null)
+				cells[newCell] = new HashMap<T, Position>();
+			cells[newCell].put(object, new Position(newX, newY));
+			return true;
+		} finally {
+			second.writeLock().unlock();
+			first.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public List<T> get(float x, float y, float range) {
+		List<T> result = new ArrayList<T>();
+		float rangeSquared = range * range;
+		int startX = getCellX(x - range);
+		int endX = getCellX(x + range);
+		int startY = getCellY(y - range);
+		int endY = getCellY(y + range);
+		
+		for(int cellY = startY; cellY <= endY; cellY++) {
+			for(int cellX = startX; cellX <= endX; cellX++) {
+				int cell = cellY * cellsX + cellX;
+				if(cells[cell] == null)
+					continue;
+				ReentrantReadWriteLock lock = getLock(cell);
+				lock.readLock().lock();
+				try {
+					for(Map.Entry<T, Position> entry : cells[cell].entrySet()) {
+						float dx = entry.getValue().x - x;
+						float dy = entry.getValue().y - y;
+						if(dx * dx + dy * dy <= rangeSquared)
+							result.add(entry.getKey());
+					}
+				} finally {
+					lock.readLock().unlock();
+				}
+			}
+		}
+		
+		return result;
+	}
+	
+	private int getCellX(float x) {
+		int cellX = (int) ((x - minX) / cellSize);
+		return Math.max(0, Math.min(cellsX - 1, cellX));
+	}
+	
+	private int getCellY(float y) {
+		int cellY = (int) ((y - minY) / cellSize);
+		return Math.max(0, Math.min(cellsY - 1, cellY));
+	}
+	
+	private int getCell(float x, float y) {
+		return getCellY(y) * cellsX + getCellX(x);
+	}
+	
+	private ReentrantReadWriteLock getLock(int cell) {
+		return locks[cell % LOCK_STRIPES];
+	}
+	
+	private static class Position {
+		
+		float x;
+		float y;
+		
+		Position(float x, float y) {
+			this.x = x;
+			this.y = y;
+		}
+		
+	}
+
+}
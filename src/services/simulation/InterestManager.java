@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package services.simulation;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import engine.resources.objects.SWGObject;
+import engine.resources.scene.Point3D;
+
+import services.SimulationService;
+
+/**
+ * Keeps track of which objects a moving object should be aware of.
+ * 
+ * The world is split into square cells and an object's awareness is only re-evaluated when it crosses into a new cell,
+ * instead of on every movement packet. Objects come into range at 200m (512m for objects with the "bigSpawnRange" attachment)
+ * and only go out of range once they are a hysteresis margin past that, so objects sitting on the edge don't flicker in and out.
+ */
+public class InterestManager {
+	
+	public static final float CELL_SIZE = 16;
+	public static final float AWARE_RANGE = 200;
+	public static final float BIG_SPAWN_RANGE = 512;
+	public static final float HYSTERESIS = 16;
+	public static final int QUERY_RANGE = (int) (BIG_SPAWN_RANGE + HYSTERESIS);
+	
+	private SimulationService simulationService;
+	private Map<Long, Long> lastCells = new ConcurrentHashMap<Long, Long>();
+	
+	private AtomicLong evaluations = new AtomicLong();
+	private AtomicLong skippedUpdates = new AtomicLong();
+	
+	public InterestManager(SimulationService simulationService) {
+		this.simulationService = simulationService;
+	}
+	
+	/**
+	 * Called for every position update of an object.
+	 * @return true if the aware set was re-evaluated, false if the object is still in the same cell.
+	 */
+	public boolean update(SWGObject object, Point3D position) {
+		long cell = getCell(position.x, position.z);
+		Long lastCell = lastCells.put(object.getObjectID(), cell);
+		
+		if(lastCell != null && lastCell == cell) {
+			skippedUpdates.incrementAndGet();
+			return false;
+		}
+		
+		evaluate(object, position);
+		return true;
+	}
+	
+	/**
+	 * Re-evaluates the aware set regardless of the last known cell, used when an object leaves a cell or is teleported.
+	 */
+	public void forceUpdate(SWGObject object, Point3D position) {
+		lastCells.put(object.getObjectID(), getCell(position.x, position.z));
+		evaluate(object, position);
+	}
+	
+	/**
+	 * Evaluates the aware set once without tracking the cell, used for objects that are added to the world but don't move on their own.
+	 */
+	public void refresh(SWGObject object, Point3D position) {
+		evaluate(object, position);
+	}
+	
+	public void remove(SWGObject object) {
+		lastCells.remove(object.getObjectID());
+	}
+	
+	private void evaluate(SWGObject object, Point3D position) {
+		
+		evaluations.incrementAndGet();
+		
+		List<SWGObject> inRangeObjects = simulationService.get(object.getPlanet(), position.x, position.z, QUERY_RANGE);
+		Set<SWGObject> oldAwareObjects;
+		
+		synchronized(object.getMutex()) {
+			oldAwareObjects = new HashSet<SWGObject>(object.getAwareObjects());
+		}
+		
+		for(SWGObject obj : inRangeObjects) {
+			
+			if(obj == object || obj.getContainer() == object || !obj.isInQuadtree())
+				continue;
+			
+			float distance = obj.getWorldPosition().getDistance2D(position);
+			
+			if(oldAwareObjects.remove(obj)) {
+				if(distance > getLeaveRange(obj))
+					unaware(object, obj);
+			} else if(distance <= getEnterRange(obj)) {
+				aware(object, obj);
+			}
+			
+		}
+		
+		// whatever is left is outside of the query range, objects in cells and containers are not in the quadtree and stay as they are
+		for(SWGObject obj : oldAwareObjects) {
+			if(obj != object && obj.isInQuadtree() && obj.getWorldPosition().getDistance2D(position) > getLeaveRange(obj))
+				unaware(object, obj);
+		}
+		
+	}
+	
+	private void aware(SWGObject object, SWGObject obj) {
+		if(object.getClient() != null)
+			object.makeAware(obj);
+		if(obj.getClient() != null)
+			obj.makeAware(object);
+	}
+	
+	private void unaware(SWGObject object, SWGObject obj) {
+		object.makeUnaware(obj);
+		if(obj.getClient() != null)
+			obj.makeUnaware(object);
+	}
+	
+	private float getEnterRange(SWGObject obj) {
+		return obj.getAttachment("bigSpawnRange") == null ? AWARE_RANGE : BIG_SPAWN_RANGE;
+	}
+	
+	private float getLeaveRange(SWGObject obj) {
+		return getEnterRange(obj) + HYSTERESIS;
+	}
+	
+	private long getCell(float x, float z) {
+		long cellX = (long) Math.floor(x / CELL_SIZE);
+		long cellZ = (long) Math.floor(z / CELL_SIZE);
+		return (cellX << 32) | (cellZ & 0xFFFFFFFFL);
+	}
+	
+	public long getEvaluations() {
+		return evaluations.get();
+	}
+	
+	public long getSkippedUpdates() {
+		return skippedUpdates.get();
+	}
+
+}
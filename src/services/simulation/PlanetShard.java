@@ -0,0 +1,198 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package services.simulation;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import engine.resources.objects.SWGObject;
+import engine.resources.scene.Planet;
+
+/**
+ * Owns the simulation of one planet.
+ * 
+ * Movement and planet transfers for objects on the planet run in order on the shard's own thread,
+ * so a busy planet can't hold up the network threads or the other planets.
+ * When the shard is not threaded, tasks run inline on the calling thread.
+ */
+public class PlanetShard {
+	
+	private final Planet planet;
+	private final SpatialIndex<SWGObject> objects;
+	private final CollidableIndex collidables;
+	private final ExecutorService executor;
+	private volatile Thread thread;
+	
+	private final AtomicInteger queued = new AtomicInteger();
+	private final AtomicLong tasksRun = new AtomicLong();
+	private final AtomicLong busyTime = new AtomicLong();
+	private final AtomicLong handoffsIn = new AtomicLong();
+	private final AtomicLong handoffsOut = new AtomicLong();
+	private volatile long maxTaskTime;
+	private final long created = System.nanoTime();
+	
+	public PlanetShard(Planet planet, SpatialIndex<SWGObject> objects, CollidableIndex collidables, boolean threaded) {
+		this.planet = planet;
+		this.objects = objects;
+		this.collidables = collidables;
+		
+		if(threaded) {
+			final String name = "Shard-" + planet.getName();
+			
+			executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, name);
+					thread.setDaemon(true);
+					PlanetShard.this.thread = thread;
+					return thread;
+				}
+				
+			});
+		} else {
+			executor = null;
+		}
+	}
+	
+	public Planet getPlanet() {
+		return planet;
+	}
+	
+	public SpatialIndex<SWGObject> getObjects() {
+		return objects;
+	}
+	
+	public CollidableIndex getCollidables() {
+		return collidables;
+	}
+	
+	public boolean isThreaded() {
+		return executor != null;
+	}
+	
+	/**
+	 * @return true if the calling thread is this shard's thread, or the shard isn't threaded.
+	 */
+	public boolean inShard() {
+		return executor == null || Thread.currentThread() == thread;
+	}
+	
+	/**
+	 * Queues a task on the shard, tasks queued from the shard's own thread run straight away.
+	 */
+	public void execute(final Runnable task) {
+		if(inShard()) {
+			run(task);
+			return;
+		}
+		
+		queued.incrementAndGet();
+		
+		try {
+			executor.execute(new Runnable() {
+				
+				@Override
+				public void run() {
+					queued.decrementAndGet();
+					PlanetShard.this.run(task);
+				}
+				
+			});
+		} catch (Exception e) {
+			queued.decrementAndGet();
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Passes a task for an object leaving this shard on to the shard it is moving to.
+	 */
+	public void handoff(PlanetShard target, Runnable task) {
+		handoffsOut.incrementAndGet();
+		target.handoffsIn.incrementAndGet();
+		target.execute(task);
+	}
+	
+	private void run(Runnable task) {
+		long start = System.nanoTime();
+		
+		try {
+			task.run();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		
+		long duration = System.nanoTime() - start;
+		tasksRun.incrementAndGet();
+		busyTime.addAndGet(duration);
+		
+		if(duration > maxTaskTime)
+			maxTaskTime = duration;
+	}
+	
+	public int getQueueDepth() {
+		return queued.get();
+	}
+	
+	public long getTasksRun() {
+		return tasksRun.get();
+	}
+	
+	public long getBusyTime() {
+		return TimeUnit.NANOSECONDS.toMillis(busyTime.get());
+	}
+	
+	public long getMaxTaskTime() {
+		return TimeUnit.NANOSECONDS.toMicros(maxTaskTime);
+	}
+	
+	public long getHandoffsIn() {
+		return handoffsIn.get();
+	}
+	
+	public long getHandoffsOut() {
+		return handoffsOut.get();
+	}
+	
+	/**
+	 * @return The share of time since the shard was created spent running tasks, in percent.
+	 */
+	public float getLoad() {
+		long elapsed = System.nanoTime() - created;
+		return (elapsed <= 0) ? 0 : (busyTime.get() * 100f / elapsed);
+	}
+	
+	public String getStatistics() {
+		return planet.getName() + ": " + getTasksRun() + " tasks, " + getQueueDepth() + " queued, busy " + getBusyTime() + " ms (" + String.format("%.1f", getLoad()) + "%), max task " + getMaxTaskTime() + " us, handoffs " + getHandoffsIn() + " in / " + getHandoffsOut() + " out";
+	}
+	
+	public void shutdown() {
+		if(executor != null)
+			executor.shutdown();
+	}
+	
+}
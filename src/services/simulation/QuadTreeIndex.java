@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package services.simulation;
+
+import java.util.List;
+
+import engine.resources.scene.quadtree.QuadTree;
+
+/**
+ * Spatial index backed by the engine's QuadTree, a move is a remove followed by a put.
+ */
+public class QuadTreeIndex<T> implements SpatialIndex<T> {
+	
+	private QuadTree<T> quadTree;
+	
+	public QuadTreeIndex(float minX, float minY, float maxX, float maxY) {
+		quadTree = new QuadTree<T>(minX, minY, maxX, maxY);
+	}
+
+	@Override
+	public boolean put(float x, float y, T object) {
+		return quadTree.put(x, y, object);
+	}
+
+	@Override
+	public boolean remove(float x, float y, T object) {
+		return quadTree.remove(x, y, object);
+	}
+
+	@Override
+	public boolean move(T object, float oldX, float oldY, float newX, float newY) {
+		if(quadTree.remove(oldX, oldY, object))
+			return quadTree.put(newX, newY, object);
+		return false;
+	}
+
+	@Override
+	public List<T> get(float x, float y, float range) {
+		return quadTree.get((int) x, (int) y, (int) range);
+	}
+
+}
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package services.simulation;
+
+import java.util.List;
+
+/**
+ * A per-planet index of objects by their 2D (x/z) world position.
+ */
+public interface SpatialIndex<T> {
+	
+	public boolean put(float x, float y, T object);
+	
+	public boolean remove(float x, float y, T object);
+	
+	/**
+	 * Moves an object from its old to its new position.
+	 * @return false if the object wasn't found at the old position.
+	 */
+	public boolean move(T object, float oldX, float oldY, float newX, float newY);
+	
+	public List<T> get(float x, float y, float range);
+
+}
@@ -75,7 +75,7 @@ public class SpawnService {
 		LairTemplate lairTemplate = lairTemplates.get(lairSpawnTemplate);
 		if(lairTemplate == null)
 			return;
-		TangibleObject lairObject = (TangibleObject) core.objectService.createObject(lairTemplate.getLairCRC(), 0, planet, position, new Quaternion(1, 0, 0, 0));
+		TangibleObject lairObject = (TangibleObject) core.objectService.createTransientObject(lairTemplate.getLairCRC(), planet, position, new Quaternion(1, 0, 0, 0));
 		
 		if(lairObject == null)
 			return;
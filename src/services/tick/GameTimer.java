@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package services.tick;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Handle for a timer scheduled on the TimerService. Cancelling is O(1), the entry is unlinked from its bucket on the next tick.
+ */
+public class GameTimer {
+	
+	static final int PENDING = 0;
+	static final int CANCELLED = 1;
+	static final int EXPIRED = 2;
+	
+	private final TimerService service;
+	private final Runnable task;
+	private final long period;
+	private final AtomicInteger state = new AtomicInteger(PENDING);
+	
+	// deadline in nanoseconds since the wheel started
+	long deadline;
+	long remainingRounds;
+	
+	// bucket links, only touched by the wheel thread
+	GameTimer prev;
+	GameTimer next;
+	TimerService.Bucket bucket;
+	
+	GameTimer(TimerService service, Runnable task, long deadline, long period) {
+		this.service = service;
+		this.task = task;
+		this.deadline = deadline;
+		this.period = period;
+	}
+	
+	public boolean cancel() {
+		if(!state.compareAndSet(PENDING, CANCELLED))
+			return false;
+		
+		service.cancelled(this);
+		return true;
+	}
+	
+	public boolean isCancelled() {
+		return state.get() == CANCELLED;
+	}
+	
+	public boolean isExpired() {
+		return state.get() == EXPIRED;
+	}
+	
+	public boolean isPeriodic() {
+		return period > 0;
+	}
+	
+	long getPeriod() {
+		return period;
+	}
+	
+	Runnable getTask() {
+		return task;
+	}
+	
+	boolean expire() {
+		return state.compareAndSet(PENDING, EXPIRED);
+	}
+	
+	boolean isPending() {
+		return state.get() == PENDING;
+	}
+	
+}
@@ -0,0 +1,267 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package services.tick;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import engine.resources.objects.SWGObject;
+import engine.resources.service.INetworkDispatch;
+import engine.resources.service.INetworkRemoteEvent;
+
+import main.NGECore;
+
+/**
+ * Central game loop for periodic per-entity work like regeneration and play time.
+ * 
+ * Entities are spread over shards by object id and every tick each shard is walked once on its own worker thread,
+ * running whatever tasks of each entity are due. This replaces one scheduled future per player and task.
+ */
+public class TickService implements INetworkDispatch {
+	
+	private NGECore core;
+	
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+	private final ExecutorService workers;
+	private final List<Map<Long, TickEntity>> shards;
+	private int tickRate = 250;
+	
+	private AtomicLong ticks = new AtomicLong();
+	private AtomicLong tasksRun = new AtomicLong();
+	private volatile long lastTickDuration = 0;
+	private volatile long maxTickDuration = 0;
+	
+	public TickService(NGECore core) {
+		this.core = core;
+		
+		if(core.getConfig().keyExists("TICK.RATE") && core.getConfig().getInt("TICK.RATE") > 0)
+			tickRate = core.getConfig().getInt("TICK.RATE");
+		
+		int shardCount = Runtime.getRuntime().availableProcessors();
+		
+		if(core.getConfig().keyExists("TICK.SHARDS") && core.getConfig().getInt("TICK.SHARDS") > 0)
+			shardCount = core.getConfig().getInt("TICK.SHARDS");
+		
+		shards = new ArrayList<Map<Long, TickEntity>>(shardCount);
+		
+		for(int i = 0; i < shardCount; i++)
+			shards.add(new ConcurrentHashMap<Long, TickEntity>());
+		
+		workers = Executors.newFixedThreadPool(shardCount);
+		
+		scheduler.scheduleAtFixedRate(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					tick();
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+			
+		}, tickRate, tickRate, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Registers a task for an object. It runs until cancelled or until all tasks of the object are cancelled with {@link #cancel(SWGObject)}.
+	 */
+	public TickTask register(SWGObject object, TickTask task) {
+		Map<Long, TickEntity> shard = getShard(object.getObjectID());
+		TickEntity entity;
+		
+		synchronized(shard) {
+			entity = shard.get(object.getObjectID());
+			
+			if(entity == null) {
+				entity = new TickEntity(object);
+				shard.put(object.getObjectID(), entity);
+			}
+			
+			entity.tasks.add(task);
+		}
+		
+		return task;
+	}
+	
+	/**
+	 * Cancels all tasks registered for an object.
+	 */
+	public void cancel(SWGObject object) {
+		Map<Long, TickEntity> shard = getShard(object.getObjectID());
+		TickEntity entity;
+		
+		synchronized(shard) {
+			entity = shard.remove(object.getObjectID());
+		}
+		
+		if(entity == null)
+			return;
+		
+		for(TickTask task : entity.tasks)
+			task.cancel();
+	}
+	
+	public boolean isRegistered(SWGObject object) {
+		return getShard(object.getObjectID()).containsKey(object.getObjectID());
+	}
+	
+	private Map<Long, TickEntity> getShard(long objectId) {
+		int hash = (int) (objectId ^ (objectId >>> 32));
+		return shards.get((hash & 0x7FFFFFFF) % shards.size());
+	}
+	
+	private void tick() throws InterruptedException {
+		final long now = System.currentTimeMillis();
+		List<Callable<Void>> jobs = new ArrayList<Callable<Void>>(shards.size());
+		
+		for(final Map<Long, TickEntity> shard : shards) {
+			if(shard.isEmpty())
+				continue;
+			
+			jobs.add(new Callable<Void>() {
+				
+				@Override
+				public Void call() {
+					tickShard(shard, now);
+					return null;
+				}
+				
+			});
+		}
+		
+		// wait for all shards so a slow tick delays the next one instead of overlapping it
+		workers.invokeAll(jobs);
+		
+		long duration = System.currentTimeMillis() - now;
+		lastTickDuration = duration;
+		
+		if(duration > maxTickDuration)
+			maxTickDuration = duration;
+		
+		ticks.incrementAndGet();
+	}
+	
+	private void tickShard(Map<Long, TickEntity> shard, long now) {
+		long run = 0;
+		
+		for(Iterator<TickEntity> it = shard.values().iterator(); it.hasNext();) {
+			TickEntity entity = it.next();
+			
+			for(TickTask task : entity.tasks) {
+				if(task.isCancelled()) {
+					entity.tasks.remove(task);
+					continue;
+				}
+				
+				if(!task.isDue(now))
+					continue;
+				
+				task.reschedule(now);
+				
+				try {
+					task.run(now);
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+				
+				run++;
+			}
+			
+			if(entity.tasks.isEmpty()) {
+				synchronized(shard) {
+					// the object may have been registered again under a new entity since, that one must stay
+					if(entity.tasks.isEmpty() && shard.get(entity.object.getObjectID()) == entity)
+						shard.remove(entity.object.getObjectID());
+				}
+			}
+		}
+		
+		tasksRun.addAndGet(run);
+	}
+	
+	public int getTickRate() {
+		return tickRate;
+	}
+	
+	public int getEntityCount() {
+		int count = 0;
+		
+		for(Map<Long, TickEntity> shard : shards)
+			count += shard.size();
+		
+		return count;
+	}
+	
+	public long getTicks() {
+		return ticks.get();
+	}
+	
+	public long getTasksRun() {
+		return tasksRun.get();
+	}
+	
+	public long getLastTickDuration() {
+		return lastTickDuration;
+	}
+	
+	public long getMaxTickDuration() {
+		return maxTickDuration;
+	}
+	
+	public String getStatistics() {
+		return "Tick: " + getEntityCount() + " entities in " + shards.size() + " shards, " + getTicks() + " ticks, " + getTasksRun() + " tasks run, last tick " + getLastTickDuration() + " ms, max " + getMaxTickDuration() + " ms";
+	}
+	
+	@Override
+	public void insertOpcodes(Map<Integer, INetworkRemoteEvent> swgOpcodes, Map<Integer, INetworkRemoteEvent> objControllerOpcodes) {
+		
+	}
+	
+	@Override
+	public void shutdown() {
+		scheduler.shutdown();
+		workers.shutdown();
+	}
+	
+	private static class TickEntity {
+		
+		private final SWGObject object;
+		private final List<TickTask> tasks = new CopyOnWriteArrayList<TickTask>();
+		
+		public TickEntity(SWGObject object) {
+			this.object = object;
+		}
+		
+	}
+	
+}
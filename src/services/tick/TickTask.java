@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package services.tick;
+
+/**
+ * A repeating piece of work for one entity, run by the TickService.
+ * 
+ * The interval is rounded up to the service's tick rate. Cancelled tasks are dropped on the next tick.
+ */
+public abstract class TickTask {
+	
+	private final long interval;
+	private volatile long nextRun;
+	private volatile boolean cancelled = false;
+	
+	public TickTask(long interval) {
+		this(interval, 0);
+	}
+	
+	public TickTask(long interval, long initialDelay) {
+		this.interval = interval;
+		this.nextRun = System.currentTimeMillis() + initialDelay;
+	}
+	
+	public abstract void run(long now);
+	
+	public long getInterval() {
+		return interval;
+	}
+	
+	public void cancel() {
+		cancelled = true;
+	}
+	
+	public boolean isCancelled() {
+		return cancelled;
+	}
+	
+	boolean isDue(long now) {
+		return now >= nextRun;
+	}
+	
+	void reschedule(long now) {
+		nextRun += interval;
+		
+		// don't try to catch up on missed runs after a stall
+		if(nextRun <= now)
+			nextRun = now + interval;
+	}
+	
+}
@@ -0,0 +1,362 @@
+/*******************************************************************************
+ * Copyright (c) 2013 <Project SWG>
+ * 
+ * This File is part of NGECore2.
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ * 
+ * Using NGEngine to work with NGECore2 is making a combined work based on NGEngine. 
+ * Therefore all terms and conditions of the GNU Lesser General Public License cover the combination.
+ ******************************************************************************/
+package services.tick;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import engine.resources.service.INetworkDispatch;
+import engine.resources.service.INetworkRemoteEvent;
+
+import main.NGECore;
+
+/**
+ * Hashed timer wheel for game timers like buff expiry and damage/heal over time ticks.
+ * 
+ * Timers are hashed into a bucket by deadline and carry the number of full wheel rotations left, so scheduling and cancelling
+ * are O(1) regardless of how many timers are live. Every tick the wheel thread walks one bucket and hands everything that
+ * expired to the workers as a batch. Timers have the resolution of the tick, which is plenty for second based game effects.
+ */
+public class TimerService implements INetworkDispatch {
+	
+	private NGECore core;
+	
+	private int tickDuration = 100;
+	private int wheelSize = 512;
+	private final Bucket[] wheel;
+	private final int mask;
+	private final long tickNanos;
+	private final long startTime;
+	private long tick = 0;
+	
+	private final ConcurrentLinkedQueue<GameTimer> pendingTimers = new ConcurrentLinkedQueue<GameTimer>();
+	private final ConcurrentLinkedQueue<GameTimer> cancelledTimers = new ConcurrentLinkedQueue<GameTimer>();
+	private final ExecutorService workers;
+	private final int workerCount;
+	private final Thread wheelThread;
+	private volatile boolean running = true;
+	
+	private AtomicInteger liveTimers = new AtomicInteger();
+	private AtomicLong totalExpiries = new AtomicLong();
+	private volatile int lastTickExpiries = 0;
+	private volatile long lastTickLateness = 0;
+	private volatile long maxLateness = 0;
+	
+	public TimerService(NGECore core) {
+		this.core = core;
+		
+		if(core.getConfig().keyExists("TIMER.TICK") && core.getConfig().getInt("TIMER.TICK") > 0)
+			tickDuration = core.getConfig().getInt("TIMER.TICK");
+		
+		if(core.getConfig().keyExists("TIMER.WHEEL_SIZE") && core.getConfig().getInt("TIMER.WHEEL_SIZE") > 0)
+			wheelSize = Integer.highestOneBit(core.getConfig().getInt("TIMER.WHEEL_SIZE") * 2 - 1);
+		
+		int threads = Runtime.getRuntime().availableProcessors();
+		
+		if(core.getConfig().keyExists("TIMER.THREADS") && core.getConfig().getInt("TIMER.THREADS") > 0)
+			threads = core.getConfig().getInt("TIMER.THREADS");
+		
+		wheel = new Bucket[wheelSize];
+		
+		for(int i = 0; i < wheelSize; i++)
+			wheel[i] = new Bucket();
+		
+		mask = wheelSize - 1;
+		tickNanos = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+		workerCount = threads;
+		workers = Executors.newFixedThreadPool(threads);
+		startTime = System.nanoTime();
+		
+		wheelThread = new Thread(new Runnable() {
+			
+			@Override
+			public void run() {
+				runWheel();
+			}
+			
+		}, "TimerWheel");
+		wheelThread.setDaemon(true);
+		wheelThread.start();
+	}
+	
+	public GameTimer schedule(Runnable task, long delay, TimeUnit unit) {
+		return add(new GameTimer(this, task, now() + unit.toNanos(Math.max(delay, 0)), 0));
+	}
+	
+	/**
+	 * Runs the task every period until the returned timer is cancelled. A run that is still going when the next one is due delays it instead of overlapping.
+	 */
+	public GameTimer scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+		if(period <= 0)
+			throw new IllegalArgumentException("period must be positive");
+		
+		return add(new GameTimer(this, task, now() + unit.toNanos(Math.max(initialDelay, 0)), unit.toNanos(period)));
+	}
+	
+	private GameTimer add(GameTimer timer) {
+		liveTimers.incrementAndGet();
+		pendingTimers.add(timer);
+		return timer;
+	}
+	
+	void cancelled(GameTimer timer) {
+		liveTimers.decrementAndGet();
+		cancelledTimers.add(timer);
+	}
+	
+	private long now() {
+		return System.nanoTime() - startTime;
+	}
+	
+	private void runWheel() {
+		
+		while(running) {
+			
+			long deadline = (tick + 1) * tickNanos;
+			long sleep = TimeUnit.NANOSECONDS.toMillis(deadline - now());
+			
+			if(sleep > 0) {
+				try {
+					Thread.sleep(sleep);
+				} catch (InterruptedException e) {
+					if(!running)
+						return;
+				}
+				continue;
+			}
+			
+			try {
+				processTick();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+			
+			tick++;
+			
+		}
+		
+	}
+	
+	private void processTick() {
+		
+		GameTimer timer;
+		
+		while((timer = cancelledTimers.poll()) != null) {
+			if(timer.bucket != null)
+				timer.bucket.remove(timer);
+		}
+		
+		while((timer = pendingTimers.poll()) != null) {
+			if(!timer.isPending())
+				continue;
+			
+			long ticks = timer.deadline / tickNanos;
+			
+			// already overdue timers go in the bucket that's about to be walked
+			if(ticks < tick)
+				ticks = tick;
+			
+			timer.remainingRounds = (ticks - tick) / wheelSize;
+			wheel[(int) (ticks & mask)].add(timer);
+		}
+		
+		Bucket bucket = wheel[(int) (tick & mask)];
+		List<GameTimer> expired = null;
+		long now = now();
+		long lateness = 0;
+		
+		for(timer = bucket.head; timer != null;) {
+			GameTimer next = timer.next;
+			
+			if(!timer.isPending()) {
+				bucket.remove(timer);
+			} else if(timer.remainingRounds <= 0) {
+				bucket.remove(timer);
+				
+				if(expired == null)
+					expired = new ArrayList<GameTimer>();
+				
+				expired.add(timer);
+				lateness = Math.max(lateness, now - timer.deadline);
+			} else {
+				timer.remainingRounds--;
+			}
+			
+			timer = next;
+		}
+		
+		if(expired == null) {
+			lastTickExpiries = 0;
+			lastTickLateness = 0;
+			return;
+		}
+		
+		lateness = TimeUnit.NANOSECONDS.toMillis(lateness);
+		lastTickExpiries = expired.size();
+		lastTickLateness = lateness;
+		
+		if(lateness > maxLateness)
+			maxLateness = lateness;
+		
+		totalExpiries.addAndGet(expired.size());
+		dispatch(expired);
+		
+	}
+	
+	private void dispatch(final List<GameTimer> expired) {
+		
+		int batchSize = (expired.size() + workerCount - 1) / workerCount;
+		
+		for(int start = 0; start < expired.size(); start += batchSize) {
+			
+			final List<GameTimer> batch = expired.subList(start, Math.min(start + batchSize, expired.size()));
+			
+			workers.execute(new Runnable() {
+				
+				@Override
+				public void run() {
+					for(GameTimer timer : batch)
+						runTimer(timer);
+				}
+				
+			});
+			
+		}
+		
+	}
+	
+	private void runTimer(GameTimer timer) {
+		
+		if(!timer.isPeriodic()) {
+			if(!timer.expire())
+				return;
+			
+			liveTimers.decrementAndGet();
+		} else if(!timer.isPending()) {
+			return;
+		}
+		
+		try {
+			timer.getTask().run();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		
+		if(timer.isPeriodic() && timer.isPending()) {
+			timer.deadline += timer.getPeriod();
+			
+			// don't try to catch up on missed runs after a stall
+			if(timer.deadline < now())
+				timer.deadline = now() + timer.getPeriod();
+			
+			pendingTimers.add(timer);
+		}
+		
+	}
+	
+	public int getTickDuration() {
+		return tickDuration;
+	}
+	
+	public int getLiveTimers() {
+		return liveTimers.get();
+	}
+	
+	public long getTotalExpiries() {
+		return totalExpiries.get();
+	}
+	
+	public int getLastTickExpiries() {
+		return lastTickExpiries;
+	}
+	
+	public long getLastTickLateness() {
+		return lastTickLateness;
+	}
+	
+	public long getMaxLateness() {
+		return maxLateness;
+	}
+	
+	public String getStatistics() {
+		return "Timers: " + getLiveTimers() + " live, " + getTotalExpiries() + " expired, " + getLastTickExpiries() + " last tick, lateness " + getLastTickLateness() + " ms, max " + getMaxLateness() + " ms";
+	}
+	
+	@Override
+	public void insertOpcodes(Map<Integer, INetworkRemoteEvent> swgOpcodes, Map<Integer, INetworkRemoteEvent> objControllerOpcodes) {
+		
+	}
+	
+	@Override
+	public void shutdown() {
+		running = false;
+		wheelThread.interrupt();
+		workers.shutdown();
+	}
+	
+	static class Bucket {
+		
+		private GameTimer head;
+		private GameTimer tail;
+		
+		void add(GameTimer timer) {
+			timer.bucket = this;
+			timer.prev = tail;
+			timer.next = null;
+			
+			if(tail == null)
+				head = timer;
+			else
+				tail.next = timer;
+			
+			tail = timer;
+		}
+		
+		void remove(GameTimer timer) {
+			if(timer.bucket != this)
+				return;
+			
+			if(timer.prev == null)
+				head = timer.next;
+			else
+				timer.prev.next = timer.next;
+			
+			if(timer.next == null)
+				tail = timer.prev;
+			else
+				timer.next.prev = timer.prev;
+			
+			timer.prev = null;
+			timer.next = null;
+			timer.bucket = null;
+		}
+		
+	}
+	
+}